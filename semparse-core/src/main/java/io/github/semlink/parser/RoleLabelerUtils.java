@@ -17,17 +17,26 @@
 package io.github.semlink.parser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import io.github.clearwsd.type.DefaultNlpFocus;
 import io.github.clearwsd.type.DepNode;
 import io.github.clearwsd.type.DepTree;
 import io.github.clearwsd.type.FeatureType;
 import io.github.clearwsd.type.NlpFocus;
+import io.github.semlink.app.CachingSequencePredictor;
+import io.github.semlink.app.RemoteSequencePredictor;
+import io.github.semlink.app.SequencePredictor;
+import io.github.semlink.app.SessionPool.Mode;
 import io.github.semlink.app.ShallowParser;
 import io.github.semlink.app.TensorflowModel;
+import io.github.semlink.app.WordPieceTokenizer;
+import io.github.semlink.extractor.BertSrlExampleExtractor;
 import io.github.semlink.type.Fields;
 import io.github.semlink.type.HasFields;
 import io.github.semlink.type.IToken;
@@ -52,6 +61,8 @@ public final class RoleLabelerUtils {
     private static final String MARKER_KEY = "marker";
     private static final String WORD_KEY = "word";
     private static final String LABEL_KEY = "gold";
+    private static final int REMOTE_MAX_IN_FLIGHT = 64;
+    private static final String SYNTHETIC_WORD = "the";
 
     /**
      * Convert an {@link NlpFocus} to an {@link ITokenSequence} for use in feature extraction.
@@ -89,6 +100,79 @@ public final class RoleLabelerUtils {
         return features;
     }
 
+    /**
+     * Populate shallow semantic parsing features for a single predicate of a dependency parse, such as for offline export.
+     *
+     * @param tree      dependency parse
+     * @param predicate index of predicate token
+     * @return feature fields
+     */
+    public static HasFields srlFeatures(@NonNull DepTree tree, int predicate) {
+        return shallowSemParseFeatures(focus2Sequence(new DefaultNlpFocus<>(predicate, tree.get(predicate), tree)));
+    }
+
+    /**
+     * Produce synthetic shallow semantic parsing features of a given length, such as for model warm-up.
+     *
+     * @param length number of tokens
+     * @return feature fields
+     */
+    public static HasFields syntheticFeatures(int length) {
+        return syntheticFeatures(length, length / 2);
+    }
+
+    /**
+     * Produce synthetic shallow semantic parsing features of a given length and predicate index.
+     *
+     * @param length         number of tokens
+     * @param predicateIndex index of predicate token
+     * @return feature fields
+     */
+    public static HasFields syntheticFeatures(int length, int predicateIndex) {
+        List<IToken> tokens = new ArrayList<>();
+        for (int i = 0; i < length; ++i) {
+            tokens.add(new Token(SYNTHETIC_WORD, i));
+        }
+        TokenSequence sequence = new TokenSequence(tokens);
+        sequence.add(PREDICATE_INDEX_KEY, predicateIndex);
+        return shallowSemParseFeatures(sequence);
+    }
+
+    /**
+     * Cache key of shallow semantic parsing features, identifying predictions by words and predicate index.
+     */
+    private static List<Object> shallowSemParseKey(HasFields features) {
+        return Arrays.asList(features.field(WORD_KEY), features.field(PREDICATE_INDEX_KEY));
+    }
+
+    /**
+     * Wrap a predictor over shallow semantic parsing features with a cache of predictions keyed by words and predicate index.
+     *
+     * @param predictor      sequence predictor over shallow semantic parsing features
+     * @param maxCacheLabels maximum total number of labels held in the cache
+     * @return caching predictor
+     */
+    public static CachingSequencePredictor<HasFields, List<Object>> cachingPredictor(
+            @NonNull SequencePredictor<HasFields> predictor, long maxCacheLabels) {
+        return new CachingSequencePredictor<>(predictor, RoleLabelerUtils::shallowSemParseKey, maxCacheLabels);
+    }
+
+    /**
+     * Wrap a predictor over shallow semantic parsing features with a cache of predictions keyed by model version, words and
+     * predicate index. The version is read when each input is looked up, so once a new version is reported, predictions of
+     * previous versions are never served, without relying on invalidation.
+     *
+     * @param predictor      sequence predictor over shallow semantic parsing features
+     * @param maxCacheLabels maximum total number of labels held in the cache
+     * @param version        current model version, such as {@link io.github.semlink.app.ModelRegistry#version()}
+     * @return caching predictor
+     */
+    public static CachingSequencePredictor<HasFields, List<Object>> cachingPredictor(
+            @NonNull SequencePredictor<HasFields> predictor, long maxCacheLabels, @NonNull Supplier<String> version) {
+        return new CachingSequencePredictor<>(predictor, features -> Arrays.<Object>asList(version.get(),
+                features.field(WORD_KEY), features.field(PREDICATE_INDEX_KEY)), maxCacheLabels);
+    }
+
     /**
      * Initialize a shallow semantic parser from a Tensorflow model at a given directory.
      *
@@ -96,7 +180,46 @@ public final class RoleLabelerUtils {
      * @return shallow semantic parser
      */
     public static ShallowParser shallowSemanticParser(@NonNull String modelDir) {
-        return new ShallowParser(TensorflowModel.bertFromDirectory(modelDir), RoleLabelerUtils::shallowSemParseFeatures);
+        return shallowSemanticParser(modelDir, 1, Mode.EXCLUSIVE);
+    }
+
+    /**
+     * Initialize a shallow semantic parser from a Tensorflow model at a given directory, dispatching concurrent calls over a pool
+     * of sessions.
+     *
+     * @param modelDir Tensorflow saved model directory
+     * @param poolSize number of copies of the model to load
+     * @param mode     session concurrency mode
+     * @return shallow semantic parser
+     */
+    public static ShallowParser shallowSemanticParser(@NonNull String modelDir, int poolSize, @NonNull Mode mode) {
+        return shallowSemanticParser(TensorflowModel.bertFromDirectory(modelDir, poolSize, mode));
+    }
+
+    /**
+     * Initialize a shallow semantic parser backed by a remote TF-Serving compatible prediction service.
+     *
+     * @param target    prediction service address, e.g. {@code localhost:8500}
+     * @param modelName name of the served SRL model
+     * @param vocabPath path to the BERT WordPiece vocabulary of the served model
+     * @param channels  number of channels to open to the service
+     * @return shallow semantic parser
+     */
+    public static ShallowParser remoteShallowSemanticParser(@NonNull String target, @NonNull String modelName,
+                                                            @NonNull String vocabPath, int channels) {
+        return shallowSemanticParser(RemoteSequencePredictor.forTarget(target, modelName,
+                new BertSrlExampleExtractor(new WordPieceTokenizer(vocabPath)), channels, REMOTE_MAX_IN_FLIGHT));
+    }
+
+    /**
+     * Initialize a shallow semantic parser from a given sequence predictor, such as a {@link TensorflowModel} wrapped in a
+     * {@link io.github.semlink.app.BatchingSequencePredictor}.
+     *
+     * @param predictor sequence predictor over shallow semantic parsing features
+     * @return shallow semantic parser
+     */
+    public static ShallowParser shallowSemanticParser(@NonNull SequencePredictor<HasFields> predictor) {
+        return new ShallowParser(predictor, RoleLabelerUtils::shallowSemParseFeatures);
     }
 
 }
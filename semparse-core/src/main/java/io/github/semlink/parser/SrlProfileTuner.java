@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.parser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.github.semlink.app.ExecutionProfile;
+import io.github.semlink.app.ExecutionProfileTuner;
+import io.github.semlink.app.ExecutionProfileTuner.Objective;
+import io.github.semlink.app.TensorflowModel;
+import io.github.semlink.type.HasFields;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Command-line utility sweeping {@link ExecutionProfile execution profiles} of an SRL model on the current machine, and writing
+ * the best profile for a given objective to a JSON file that can be loaded by the service.
+ * <p>
+ * Usage: {@code SrlProfileTuner <model-dir> <output-file> [THROUGHPUT|P99_LATENCY] [clients]}
+ *
+ * @author jgung
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SrlProfileTuner {
+
+    private static final int WORKLOAD_SENTENCES = 200;
+    private static final int MIN_LENGTH = 5;
+    private static final int MAX_LENGTH = 60;
+    private static final int MAX_PREDICATES = 6;
+
+    /**
+     * Synthetic SRL workload with one batch per sentence, each containing one input per predicate, as produced by the role
+     * labeler. Sentence lengths are skewed towards shorter sentences, and the number of predicates grows with sentence length.
+     *
+     * @param sentences number of sentences
+     * @param seed      random seed
+     * @return batches of SRL inputs
+     */
+    public static List<List<HasFields>> workload(int sentences, long seed) {
+        Random random = new Random(seed);
+        List<List<HasFields>> batches = new ArrayList<>();
+        for (int i = 0; i < sentences; ++i) {
+            double skewed = random.nextDouble() * random.nextDouble();
+            int length = MIN_LENGTH + (int) (skewed * (MAX_LENGTH - MIN_LENGTH));
+            int predicates = 1 + random.nextInt(Math.min(MAX_PREDICATES, 1 + length / 8));
+            List<HasFields> batch = new ArrayList<>();
+            for (int p = 0; p < predicates; ++p) {
+                batch.add(RoleLabelerUtils.syntheticFeatures(length, random.nextInt(length)));
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: SrlProfileTuner <model-dir> <output-file> [THROUGHPUT|P99_LATENCY] [clients]");
+            System.exit(1);
+        }
+        String modelDir = args[0];
+        File output = new File(args[1]);
+        Objective objective = args.length > 2 ? Objective.valueOf(args[2].toUpperCase()) : Objective.THROUGHPUT;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : cores;
+
+        ExecutionProfileTuner<HasFields> tuner = new ExecutionProfileTuner<HasFields>(
+                profile -> TensorflowModel.bertFromDirectory(modelDir, profile), workload(WORKLOAD_SENTENCES, 0))
+                .clients(clients);
+        ExecutionProfileTuner.Result best = tuner.tune(ExecutionProfileTuner.candidates(cores), objective);
+        log.info("Best profile for {}: {}", objective, best);
+        best.profile().write(output);
+    }
+
+}
@@ -16,15 +16,24 @@
 
 package io.github.semlink.parser;
 
+import com.google.common.base.Stopwatch;
+
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import io.github.clearwsd.SensePrediction;
 import io.github.clearwsd.parser.NlpParser;
 import io.github.clearwsd.type.DepTree;
 import io.github.clearwsd.type.FeatureType;
+import io.github.semlink.app.SequenceExampleShardWriter;
+import io.github.semlink.app.SequencePredictor;
+import io.github.semlink.app.SessionPool.Mode;
 import io.github.semlink.propbank.type.PropBankArg;
 import io.github.semlink.semlink.VerbNetAligner;
+import io.github.semlink.type.HasFields;
 import io.github.semlink.verbnet.VnClass;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -41,6 +50,12 @@ import lombok.extern.slf4j.Slf4j;
 @AllArgsConstructor
 public class VerbNetParser {
 
+    private static final List<String> WARM_UP_SENTENCES = Arrays.asList(
+            "John gave Mary a book yesterday.",
+            "The committee's decision to postpone the vote surprised everyone.",
+            "She was afraid that the bridge would collapse under the weight of the trucks.",
+            "After the storm passed, the villagers began rebuilding their homes and repairing the roads.");
+
     private VnPredicateDetector vnPredicateDetector;
     private NlpParser parser;
     private VerbNetSemParser verbNetRoleLabeler;
@@ -99,6 +114,56 @@ public class VerbNetParser {
         return parse(depTree);
     }
 
+    /**
+     * Run tokenization, dependency parsing and VerbNet classification once over a corpus, writing the SRL features of each detected
+     * predicate to TFRecord shards, keyed by sentence index and predicate index. The shards can then be re-scored by any SRL model
+     * sharing the writer's feature extractor with {@link io.github.semlink.app.TFRecordScorer}.
+     *
+     * @param sentences raw input sentences
+     * @param writer    shard writer
+     * @return number of exported predicates
+     */
+    public int exportSrlFeatures(@NonNull Iterable<String> sentences, @NonNull SequenceExampleShardWriter writer)
+            throws IOException {
+        int sentenceIndex = 0;
+        int predicates = 0;
+        for (String sentence : sentences) {
+            DepTree depTree = parser.parse(parser.tokenize(sentence));
+            for (SensePrediction<VnClass> sense : vnPredicateDetector.detectPredicates(depTree)) {
+                writer.write(String.valueOf(sentenceIndex), sense.index(), RoleLabelerUtils.srlFeatures(depTree, sense.index()));
+                ++predicates;
+            }
+            ++sentenceIndex;
+        }
+        return predicates;
+    }
+
+    /**
+     * Warm up all parsing components (tokenization, dependency parsing, VerbNet classification, semantic role labeling and
+     * alignment) by parsing a set of sentences, logging the latency of each.
+     *
+     * @param sentences raw input sentences
+     * @return total warm-up time in milliseconds
+     */
+    public long warmUp(@NonNull List<String> sentences) {
+        Stopwatch total = Stopwatch.createStarted();
+        for (String sentence : sentences) {
+            Stopwatch sw = Stopwatch.createStarted();
+            VerbNetParse parse = parse(sentence);
+            log.info("Warm-up parse of \"{}\" ({} props) in {}", sentence, parse.props().size(), sw.stop());
+        }
+        return total.stop().elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Warm up all parsing components using a default set of sentences covering verbal, nominal and adjectival predicates.
+     *
+     * @return total warm-up time in milliseconds
+     */
+    public long warmUp() {
+        return warmUp(WARM_UP_SENTENCES);
+    }
+
     /**
      * Instantiate a new {@link SemanticRoleLabeler} for PropBank from a given model path.
      */
@@ -106,4 +171,20 @@ public class VerbNetParser {
         return new DefaultSemanticRoleLabeler<>(RoleLabelerUtils.shallowSemanticParser(modelPath), PropBankArg::fromLabel);
     }
 
+    /**
+     * Instantiate a new {@link SemanticRoleLabeler} for PropBank from a given model path, loading a pool of sessions to serve
+     * concurrent requests.
+     */
+    public static SemanticRoleLabeler<PropBankArg> pbRoleLabeler(@NonNull String modelPath, int poolSize, @NonNull Mode mode) {
+        return new DefaultSemanticRoleLabeler<>(RoleLabelerUtils.shallowSemanticParser(modelPath, poolSize, mode),
+                PropBankArg::fromLabel);
+    }
+
+    /**
+     * Instantiate a new {@link SemanticRoleLabeler} for PropBank from a given sequence predictor.
+     */
+    public static SemanticRoleLabeler<PropBankArg> pbRoleLabeler(@NonNull SequencePredictor<HasFields> predictor) {
+        return new DefaultSemanticRoleLabeler<>(RoleLabelerUtils.shallowSemanticParser(predictor), PropBankArg::fromLabel);
+    }
+
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link SequencePredictor} decorator running calls to an underlying blocking predictor on a fixed number of worker threads,
+ * fed by a bounded submission queue. When the queue is full, new calls are either rejected or block the caller until space
+ * becomes available.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Slf4j
+public class AsyncSequencePredictor<T> implements SequencePredictor<T> {
+
+    /**
+     * Behavior when the submission queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Fail the returned future with a {@link RejectedExecutionException}.
+         */
+        REJECT,
+        /**
+         * Block the calling thread until the call can be queued.
+         */
+        BLOCK
+    }
+
+    private final SequencePredictor<T> predictor;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<Request<T>> queue;
+    private final ExecutorService workers;
+    private volatile boolean closed;
+
+    /**
+     * Initialize an asynchronous predictor.
+     *
+     * @param predictor      underlying blocking predictor
+     * @param workers        number of calls run concurrently on the underlying predictor
+     * @param queueCapacity  maximum number of calls waiting for a worker
+     * @param overflowPolicy behavior when the queue is full
+     */
+    public AsyncSequencePredictor(@NonNull SequencePredictor<T> predictor, int workers, int queueCapacity,
+                                  @NonNull OverflowPolicy overflowPolicy) {
+        Preconditions.checkArgument(workers > 0, "Workers must be positive: %s", workers);
+        Preconditions.checkArgument(queueCapacity > 0, "Queue capacity must be positive: %s", queueCapacity);
+        this.predictor = predictor;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("predictor-worker-%d")
+                .setDaemon(true)
+                .build());
+        for (int i = 0; i < workers; ++i) {
+            this.workers.execute(this::work);
+        }
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        try {
+            return predictBatchAsync(inputs).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for prediction", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Prediction failed", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<T> inputs) {
+        Request<T> request = new Request<>(inputs);
+        if (closed) {
+            request.result.completeExceptionally(new RejectedExecutionException("Predictor has been closed"));
+            return request.result;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                request.result.completeExceptionally(e);
+            }
+        } else if (!queue.offer(request)) {
+            request.result.completeExceptionally(new RejectedExecutionException(
+                    "Prediction queue is full (" + queue.size() + " pending calls)"));
+        }
+        if (closed && queue.remove(request)) {
+            // closed while queueing, after pending requests were drained
+            request.result.completeExceptionally(new RejectedExecutionException("Predictor has been closed"));
+        }
+        return request.result;
+    }
+
+    /**
+     * Number of calls waiting for a worker.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Request<T>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(request -> request.result.completeExceptionally(
+                new RejectedExecutionException("Predictor closed before request was processed")));
+        predictor.close();
+    }
+
+    private void work() {
+        try {
+            while (!closed) {
+                Request<T> request = queue.take();
+                try {
+                    request.result.complete(predictor.predictBatch(request.inputs));
+                } catch (Exception e) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Prediction worker interrupted, stopping");
+        }
+    }
+
+    private static class Request<T> {
+
+        private final List<T> inputs;
+        private final CompletableFuture<List<List<String>>> result = new CompletableFuture<>();
+
+        private Request(List<T> inputs) {
+            this.inputs = inputs;
+        }
+
+    }
+
+}
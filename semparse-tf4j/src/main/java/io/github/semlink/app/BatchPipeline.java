@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import lombok.NonNull;
+
+/**
+ * Runs a large batch through feature extraction, inference and decoding in fixed-size chunks, overlapping the stages of
+ * successive chunks: while chunk {@code k} is being run, features of chunk {@code k + 1} are extracted and outputs of chunk
+ * {@code k - 1} are decoded on worker threads. Inference calls are made one chunk at a time, in order, and at most two chunks of
+ * extracted features are held ahead of inference.
+ *
+ * @param <I> input type
+ * @param <F> extracted features of a chunk
+ * @param <O> inference outputs of a chunk
+ * @param <R> decoded result type, one per input
+ * @author jgung
+ */
+public class BatchPipeline<I, F, O, R> {
+
+    private final Function<List<I>, F> extract;
+    private final Function<F, O> infer;
+    private final Function<O, List<R>> decode;
+
+    /**
+     * Initialize a pipeline.
+     *
+     * @param extract feature extraction for a chunk of inputs
+     * @param infer   inference over extracted features
+     * @param decode  decoding of inference outputs into one result per input, responsible for releasing the outputs
+     */
+    public BatchPipeline(@NonNull Function<List<I>, F> extract, @NonNull Function<F, O> infer,
+                         @NonNull Function<O, List<R>> decode) {
+        this.extract = extract;
+        this.infer = infer;
+        this.decode = decode;
+    }
+
+    /**
+     * Run a batch of inputs through the pipeline.
+     *
+     * @param inputs    inputs
+     * @param chunkSize number of inputs per chunk
+     * @param executor  executor running extraction, inference and decoding, which should have at least three threads
+     * @return results, in input order
+     */
+    public List<R> run(@NonNull List<I> inputs, int chunkSize, @NonNull Executor executor) {
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive: %s", chunkSize);
+        List<List<I>> chunks = Lists.partition(inputs, chunkSize);
+
+        List<CompletableFuture<O>> outputs = new ArrayList<>(chunks.size());
+        List<CompletableFuture<List<R>>> results = new ArrayList<>(chunks.size());
+        CompletableFuture<O> previous = CompletableFuture.completedFuture(null);
+        for (int k = 0; k < chunks.size(); ++k) {
+            List<I> chunk = chunks.get(k);
+            // double buffering: extract chunk k once chunk k - 2 has been run
+            CompletableFuture<?> ready = k < 2 ? CompletableFuture.completedFuture(null) : outputs.get(k - 2);
+            CompletableFuture<F> features = ready.thenApplyAsync(ignored -> extract.apply(chunk), executor);
+            CompletableFuture<O> output = features.thenCombine(previous, (chunkFeatures, ignored) -> chunkFeatures)
+                    .thenApplyAsync(infer, executor);
+            outputs.add(output);
+            results.add(output.thenApplyAsync(decode, executor));
+            previous = output;
+        }
+
+        List<R> result = new ArrayList<>(inputs.size());
+        try {
+            for (CompletableFuture<List<R>> chunkResult : results) {
+                result.addAll(chunkResult.join());
+            }
+        } catch (CompletionException e) {
+            // let decoding of chunks already run finish, releasing their outputs
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+}
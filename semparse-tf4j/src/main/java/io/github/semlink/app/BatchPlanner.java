@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+
+/**
+ * Splits a batch of variable-length inputs into buckets of similar length. Since every row in a batch is padded to the longest
+ * row, buckets are capped by their total padded token count (rows times longest row) rather than by row count, which bounds both
+ * wasted computation on padding and the memory used by a single batch.
+ *
+ * @author jgung
+ */
+@Getter
+@Accessors(fluent = true)
+public class BatchPlanner {
+
+    private final int maxTokens;
+    private final int maxRows;
+
+    /**
+     * Initialize a batch planner.
+     *
+     * @param maxTokens maximum number of padded tokens in a bucket (rows that alone exceed this are placed in their own bucket)
+     * @param maxRows   maximum number of rows in a bucket
+     */
+    public BatchPlanner(int maxTokens, int maxRows) {
+        Preconditions.checkArgument(maxTokens > 0, "Max tokens must be positive: %s", maxTokens);
+        Preconditions.checkArgument(maxRows > 0, "Max rows must be positive: %s", maxRows);
+        this.maxTokens = maxTokens;
+        this.maxRows = maxRows;
+    }
+
+    public BatchPlanner(int maxTokens) {
+        this(maxTokens, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plan buckets for a batch of inputs with given lengths.
+     *
+     * @param lengths length of each input in the batch
+     * @return buckets of indices into the original batch, ordered by length
+     */
+    public List<int[]> plan(@NonNull int[] lengths) {
+        int[] order = IntStream.range(0, lengths.length)
+                .boxed()
+                .sorted(Comparator.comparingInt(index -> lengths[index]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        List<int[]> buckets = new ArrayList<>();
+        int start = 0;
+        for (int end = 0; end < order.length; ++end) {
+            int rows = end - start + 1;
+            // inputs are sorted, so the current row is the longest in the bucket
+            long padded = (long) rows * lengths[order[end]];
+            if (rows > 1 && (padded > maxTokens || rows > maxRows)) {
+                buckets.add(slice(order, start, end));
+                start = end;
+            }
+        }
+        if (start < order.length) {
+            buckets.add(slice(order, start, order.length));
+        }
+        return buckets;
+    }
+
+    /**
+     * Run a batch split into planned buckets, and restore the original input order of the results.
+     *
+     * @param inputs   batch of inputs
+     * @param length   input length function
+     * @param runner   function running a single bucket, producing one result per input
+     * @param executor optional executor used to run buckets in parallel, or {@code null} to run them in the calling thread
+     * @param <F>      input type
+     * @param <R>      result type
+     * @return results, in input order
+     */
+    public <F, R> List<R> run(@NonNull List<F> inputs, @NonNull ToIntFunction<F> length,
+                              @NonNull Function<List<F>, List<R>> runner, Executor executor) {
+        if (inputs.size() < 2) {
+            return runner.apply(inputs);
+        }
+
+        List<int[]> buckets = plan(inputs.stream()
+                .mapToInt(length)
+                .toArray());
+        if (buckets.size() == 1) {
+            return runner.apply(inputs);
+        }
+
+        List<CompletableFuture<List<R>>> bucketResults = new ArrayList<>();
+        for (int[] bucket : buckets) {
+            List<F> bucketInputs = Arrays.stream(bucket)
+                    .mapToObj(inputs::get)
+                    .collect(Collectors.toList());
+            bucketResults.add(null == executor
+                    ? CompletableFuture.completedFuture(runner.apply(bucketInputs))
+                    : CompletableFuture.supplyAsync(() -> runner.apply(bucketInputs), executor));
+        }
+
+        List<R> result = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+        for (int i = 0; i < buckets.size(); ++i) {
+            int[] bucket = buckets.get(i);
+            List<R> results = bucketResults.get(i).join();
+            for (int j = 0; j < bucket.length; ++j) {
+                result.set(bucket[j], results.get(j));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Total number of tokens, including padding, needed to run a batch split into the given buckets.
+     *
+     * @param lengths length of each input
+     * @param buckets buckets of indices into the inputs
+     * @return total padded token count
+     */
+    public static long paddedTokens(@NonNull int[] lengths, @NonNull List<int[]> buckets) {
+        long total = 0;
+        for (int[] bucket : buckets) {
+            int max = 0;
+            for (int index : bucket) {
+                max = Math.max(max, lengths[index]);
+            }
+            total += (long) max * bucket.length;
+        }
+        return total;
+    }
+
+    private static int[] slice(int[] order, int start, int end) {
+        int[] result = new int[end - start];
+        System.arraycopy(order, start, result, 0, result.length);
+        return result;
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link SequencePredictor} that coalesces concurrent calls into larger batches for an underlying predictor. Queued calls are
+ * flushed as a single batch once either the maximum batch size or the maximum wait time since the oldest queued call is reached.
+ * A single call larger than the maximum batch size is never split.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class BatchingSequencePredictor<T> implements SequencePredictor<T> {
+
+    private final SequencePredictor<T> predictor;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<Request<T>> queue = new LinkedBlockingQueue<>();
+    private final Semaphore batchPermits;
+    private final ExecutorService dispatcher;
+    private final ExecutorService workers;
+    private volatile boolean closed;
+    private Request<T> carry; // only accessed by the dispatcher thread
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * Maximum time in milliseconds a blocking call waits for its batch to complete.
+     */
+    @Setter
+    private long timeoutMs = 60000;
+
+    /**
+     * Initialize a batching predictor.
+     *
+     * @param predictor            underlying predictor
+     * @param maxBatchSize         maximum number of rows to combine into a single batch
+     * @param maxWait              maximum time to wait for additional calls after the first call in a batch is queued
+     * @param unit                 time unit of maximum wait time
+     * @param maxConcurrentBatches maximum number of batches run concurrently on the underlying predictor
+     */
+    public BatchingSequencePredictor(@NonNull SequencePredictor<T> predictor, int maxBatchSize, long maxWait,
+                                     @NonNull TimeUnit unit, int maxConcurrentBatches) {
+        Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive: %s", maxBatchSize);
+        Preconditions.checkArgument(maxConcurrentBatches > 0, "Max concurrent batches must be positive: %s",
+                maxConcurrentBatches);
+        this.predictor = predictor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.batchPermits = new Semaphore(maxConcurrentBatches);
+        this.dispatcher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("batch-dispatcher-%d")
+                .setDaemon(true)
+                .build());
+        this.workers = Executors.newFixedThreadPool(maxConcurrentBatches, new ThreadFactoryBuilder()
+                .setNameFormat("batch-worker-%d")
+                .setDaemon(true)
+                .build());
+        dispatcher.execute(this::dispatch);
+    }
+
+    public BatchingSequencePredictor(@NonNull SequencePredictor<T> predictor, int maxBatchSize, long maxWait,
+                                     @NonNull TimeUnit unit) {
+        this(predictor, maxBatchSize, maxWait, unit, 1);
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        CompletableFuture<List<List<String>>> result = predictBatchAsync(inputs);
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            throw new IllegalStateException("Timed out after " + timeoutMs + " ms waiting for batched prediction", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batched prediction", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Batched prediction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Queue a batch of inputs for prediction, returning a future completed once the batch containing them has been run.
+     *
+     * @param inputs input sequence batch
+     * @return future batched sequence labels
+     */
+    @Override
+    public CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<T> inputs) {
+        Request<T> request = new Request<>(inputs);
+        if (inputs.isEmpty()) {
+            request.result.complete(Collections.emptyList());
+            return request.result;
+        }
+        Preconditions.checkState(!closed, "Predictor has been closed");
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            // closed while queueing, after pending requests were drained
+            request.result.completeExceptionally(new RejectedExecutionException("Predictor has been closed"));
+        }
+        return request.result;
+    }
+
+    /**
+     * Average number of rows per batch sent to the underlying predictor.
+     */
+    public double averageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) rows.get() / count;
+    }
+
+    /**
+     * Number of calls waiting to be batched.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.shutdownNow();
+        workers.shutdown();
+        try {
+            dispatcher.awaitTermination(1, TimeUnit.MINUTES);
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Request<T>> pending = new ArrayList<>();
+        if (null != carry) {
+            pending.add(carry);
+        }
+        queue.drainTo(pending);
+        pending.forEach(request -> request.result.completeExceptionally(
+                new IllegalStateException("Predictor closed before request was processed")));
+        predictor.close();
+    }
+
+    private void dispatch() {
+        try {
+            while (!closed) {
+                batchPermits.acquire();
+                List<Request<T>> batch = nextBatch();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            run(batch);
+                        } finally {
+                            batchPermits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    batch.forEach(request -> request.result.completeExceptionally(e));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Batch dispatcher interrupted, stopping");
+        }
+    }
+
+    private List<Request<T>> nextBatch() throws InterruptedException {
+        List<Request<T>> batch = new ArrayList<>();
+        Request<T> first = null == carry ? queue.take() : carry;
+        carry = null;
+        batch.add(first);
+        int size = first.inputs.size();
+
+        long deadline = first.created + maxWaitNanos;
+        while (size < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            Request<T> next;
+            try {
+                next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            } catch (InterruptedException e) {
+                batch.forEach(request -> request.result.completeExceptionally(
+                        new IllegalStateException("Predictor closed before request was processed")));
+                throw e;
+            }
+            if (null == next) {
+                break;
+            }
+            if (size + next.inputs.size() > maxBatchSize) {
+                // start the next batch with this request rather than exceeding the maximum batch size
+                carry = next;
+                break;
+            }
+            batch.add(next);
+            size += next.inputs.size();
+        }
+        return batch;
+    }
+
+    private void run(List<Request<T>> batch) {
+        // skip requests whose callers timed out while they were queued
+        batch.removeIf(request -> request.result.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> inputs = new ArrayList<>();
+        batch.forEach(request -> inputs.addAll(request.inputs));
+        try {
+            List<List<String>> labels = predictor.predictBatch(inputs);
+            Preconditions.checkState(labels.size() == inputs.size(),
+                    "Predictor produced an unexpected number of batches: %d vs. %d", labels.size(), inputs.size());
+            batches.incrementAndGet();
+            rows.addAndGet(inputs.size());
+
+            int offset = 0;
+            for (Request<T> request : batch) {
+                int end = offset + request.inputs.size();
+                request.result.complete(new ArrayList<>(labels.subList(offset, end)));
+                offset = end;
+            }
+        } catch (Throwable e) {
+            // fail the batch rather than the worker, so that queued and later calls are still served
+            if (e instanceof Error) {
+                log.error("Batched prediction failed with an error", e);
+            }
+            batch.forEach(request -> request.result.completeExceptionally(e));
+        }
+    }
+
+    private static class Request<T> {
+
+        private final List<T> inputs;
+        private final long created = System.nanoTime();
+        private final CompletableFuture<List<List<String>>> result = new CompletableFuture<>();
+
+        private Request(List<T> inputs) {
+            this.inputs = inputs;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import io.github.semlink.extractor.BertSrlExampleExtractor;
+import io.github.semlink.extractor.BertSrlInput;
+import io.github.semlink.tensor.LabelTable;
+import io.github.semlink.type.HasFields;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * BERT SRL sequence prediction model, extracting {@link BertSrlInput primitive inputs} from each input and running them on a
+ * pluggable {@link InferenceEngine}.
+ *
+ * @author jgung
+ */
+public class BertSrlModel implements AutoCloseable, LabelIdPredictor<HasFields> {
+
+    private static final String IGNORE_LABEL = "X";
+
+    private final BertSrlExampleExtractor featureExtractor;
+    private final InferenceEngine engine;
+
+    /**
+     * Interned output labels, with the ignored label at ID 0.
+     */
+    @Getter
+    @Accessors(fluent = true)
+    private final LabelTable labels = new LabelTable(IGNORE_LABEL);
+    private final int ignoreId = labels.id(IGNORE_LABEL);
+
+    /**
+     * Optional planner used to split large batches into length-bucketed sub-batches.
+     */
+    @Setter
+    @Accessors(fluent = true)
+    private BatchPlanner batchPlanner;
+    /**
+     * Optional executor used to run planned sub-batches in parallel.
+     */
+    @Setter
+    @Accessors(fluent = true)
+    private Executor bucketExecutor;
+
+    public BertSrlModel(@NonNull BertSrlExampleExtractor featureExtractor, @NonNull InferenceEngine engine) {
+        this.featureExtractor = featureExtractor;
+        this.engine = engine;
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<HasFields> inputs) {
+        List<List<String>> result = new ArrayList<>(inputs.size());
+        for (int[] ids : predictBatchIds(inputs)) {
+            List<String> row = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                row.add(labels.label(id));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    @Override
+    public List<int[]> predictBatchIds(@NonNull List<HasFields> inputs) {
+        List<BertSrlInput> bertInputs = inputs.stream()
+                .map(featureExtractor::extractInput)
+                .collect(Collectors.toList());
+        if (null == batchPlanner) {
+            return engine.run(bertInputs, labels, ignoreId);
+        }
+        return batchPlanner.run(bertInputs, BertSrlInput::length, batch -> engine.run(batch, labels, ignoreId),
+                bucketExecutor);
+    }
+
+    /**
+     * Create a warm-up for this model, making concurrent calls so that every loaded session is warmed up.
+     *
+     * @param inputFactory function producing a synthetic input of a given sequence length
+     * @return model warm-up
+     */
+    public ModelWarmup<HasFields> warmup(@NonNull IntFunction<HasFields> inputFactory) {
+        return new ModelWarmup<>(this, inputFactory).concurrency(engine.concurrency());
+    }
+
+    @Override
+    public void close() {
+        engine.close();
+    }
+
+    /**
+     * Path of the WordPiece vocabulary of a model directory: the saved model assets ({@code model/assets/vocab.txt}) when
+     * present, and otherwise {@code vocab.txt}.
+     */
+    public static String vocabularyPath(@NonNull String modelDir) {
+        Path vocab = Paths.get(modelDir, "model", "assets", "vocab.txt");
+        if (!Files.exists(vocab)) {
+            vocab = Paths.get(modelDir, "vocab.txt");
+        }
+        return vocab.toString();
+    }
+
+    /**
+     * Load a BERT SRL model from a directory with a given inference engine, reading its WordPiece vocabulary from
+     * {@link #vocabularyPath(String)}.
+     *
+     * @param modelDir model directory
+     * @param type     inference engine type
+     * @param profile  execution profile
+     * @return loaded model
+     */
+    public static BertSrlModel fromDirectory(@NonNull String modelDir, @NonNull InferenceEngine.Type type,
+                                             @NonNull ExecutionProfile profile) {
+        return fromDirectory(modelDir, type, profile, new WordPieceTokenizer(vocabularyPath(modelDir)));
+    }
+
+    /**
+     * Initialize a BERT SRL model with a given tokenizer, such as a tokenizer shared with {@link WindowedSequencePredictor}.
+     */
+    public static BertSrlModel fromDirectory(@NonNull String modelDir, @NonNull InferenceEngine.Type type,
+                                             @NonNull ExecutionProfile profile, @NonNull WordPieceTokenizer tokenizer) {
+        BertSrlExampleExtractor extractor = new BertSrlExampleExtractor(tokenizer);
+        InferenceEngine engine = type == InferenceEngine.Type.ONNX
+                ? OnnxEngine.fromDirectory(modelDir, profile)
+                : TensorflowEngine.fromDirectory(modelDir, profile, extractor);
+        return new BertSrlModel(extractor, engine);
+    }
+
+}
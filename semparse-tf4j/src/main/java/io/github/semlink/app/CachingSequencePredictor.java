@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import lombok.NonNull;
+
+/**
+ * {@link SequencePredictor} decorator caching predicted labels in a bounded LRU cache. Each input of a batch is looked up
+ * individually, only misses are sent to the underlying predictor (in a single batch), and results are merged back in order.
+ * <p>
+ * Entries are tagged with the cache generation current when their lookup started. {@link #invalidateAll()} starts a new
+ * generation, so labels predicted by a call still in flight during invalidation are never served, even if they are stored after
+ * it.
+ *
+ * @param <T> input type
+ * @param <K> cache key type, which must identify the predicted labels of an input
+ * @author jgung
+ */
+public class CachingSequencePredictor<T, K> implements SequencePredictor<T> {
+
+    private final SequencePredictor<T> predictor;
+    private final Function<T, K> keyFunction;
+    private final Cache<K, Entry> cache;
+    private final AtomicLong generation = new AtomicLong();
+    // counted here rather than by the cache, which would count stale entries as hits
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Initialize a caching predictor.
+     *
+     * @param predictor      underlying predictor
+     * @param keyFunction    function producing cache keys from inputs
+     * @param maxCacheLabels maximum total number of labels held in the cache
+     */
+    public CachingSequencePredictor(@NonNull SequencePredictor<T> predictor, @NonNull Function<T, K> keyFunction,
+                                    long maxCacheLabels) {
+        this(predictor, keyFunction, maxCacheLabels, 4);
+    }
+
+    /**
+     * Initialize a caching predictor with a given number of cache segments. The maximum weight is divided evenly between
+     * segments, so a single segment gives exact retention for tests.
+     */
+    CachingSequencePredictor(@NonNull SequencePredictor<T> predictor, @NonNull Function<T, K> keyFunction,
+                             long maxCacheLabels, int concurrencyLevel) {
+        Preconditions.checkArgument(maxCacheLabels > 0, "Max cache size must be positive: %s", maxCacheLabels);
+        this.predictor = predictor;
+        this.keyFunction = keyFunction;
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(concurrencyLevel)
+                .maximumWeight(maxCacheLabels)
+                .weigher((K key, Entry entry) -> Math.max(1, entry.labels.size()))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        Lookup lookup = new Lookup(inputs);
+        if (lookup.misses.isEmpty()) {
+            return lookup.result;
+        }
+        return lookup.merge(predictor.predictBatch(new ArrayList<>(lookup.misses.values())));
+    }
+
+    @Override
+    public CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<T> inputs) {
+        Lookup lookup = new Lookup(inputs);
+        if (lookup.misses.isEmpty()) {
+            return CompletableFuture.completedFuture(lookup.result);
+        }
+        return predictor.predictBatchAsync(new ArrayList<>(lookup.misses.values())).thenApply(lookup::merge);
+    }
+
+    /**
+     * Cache hit and miss statistics, counting entries predicted before the last {@link #invalidateAll() invalidation} as misses.
+     */
+    public CacheStats stats() {
+        return new CacheStats(hitCount.get(), missCount.get(), 0, 0, 0, cache.stats().evictionCount());
+    }
+
+    /**
+     * Number of cached predictions.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discard all cached predictions, including those of calls in flight, e.g. after the underlying model has been reloaded.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        predictor.close();
+    }
+
+    /**
+     * Cached labels, along with the generation of the lookup that predicted them.
+     */
+    private static class Entry {
+
+        private final long generation;
+        private final List<String> labels;
+
+        private Entry(long generation, List<String> labels) {
+            this.generation = generation;
+            this.labels = labels;
+        }
+
+    }
+
+    /**
+     * Cached labels of a batch of inputs, and distinct missed inputs to predict.
+     */
+    private class Lookup {
+
+        private final long generation = CachingSequencePredictor.this.generation.get();
+        private final List<List<String>> result;
+        private final List<K> keys;
+        // distinct missed keys, mapped to the input to predict
+        private final Map<K, T> misses = new LinkedHashMap<>();
+
+        private Lookup(List<T> inputs) {
+            result = new ArrayList<>(inputs.size());
+            keys = new ArrayList<>(inputs.size());
+            for (T input : inputs) {
+                K key = keyFunction.apply(input);
+                Entry entry = cache.getIfPresent(key);
+                if (null != entry && entry.generation != generation) {
+                    // stored by a call in flight during invalidation
+                    cache.asMap().remove(key, entry);
+                    entry = null;
+                }
+                List<String> labels = null == entry ? null : entry.labels;
+                if (null == labels) {
+                    missCount.incrementAndGet();
+                    misses.putIfAbsent(key, input);
+                } else {
+                    hitCount.incrementAndGet();
+                }
+                keys.add(key);
+                result.add(labels);
+            }
+        }
+
+        private List<List<String>> merge(List<List<String>> predicted) {
+            Preconditions.checkState(predicted.size() == misses.size(),
+                    "Predictor produced an unexpected number of batches: %d vs. %d", predicted.size(), misses.size());
+            Map<K, List<String>> missed = new LinkedHashMap<>();
+            int index = 0;
+            for (K key : misses.keySet()) {
+                List<String> labels = Collections.unmodifiableList(predicted.get(index++));
+                missed.put(key, labels);
+                cache.put(key, new Entry(generation, labels));
+            }
+            for (int i = 0; i < result.size(); ++i) {
+                if (null == result.get(i)) {
+                    result.set(i, missed.get(keys.get(i)));
+                }
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.github.semlink.tensor.LabelTable;
+import io.github.semlink.tensor.ScoredLabelIds;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * {@link SequencePredictor} cascading from a cheap model to an expensive one. Every input is first labeled by the cheap model,
+ * and only inputs with too many low-confidence labels are sent (in a single batch) to the expensive model.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Accessors(fluent = true)
+public class CascadingSequencePredictor<T> implements SequencePredictor<T> {
+
+    /**
+     * Snapshot of cascade counters.
+     */
+    @Getter
+    @ToString
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+    public static class Stats {
+        private final long rows;
+        private final long lightRows;
+        private final long heavyRows;
+        private final double heavyFraction;
+    }
+
+    /**
+     * Row counters, which may be shared by successive cascades, such as over reloaded model versions.
+     */
+    public static class Counters {
+
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong heavyRows = new AtomicLong();
+
+        /**
+         * Number of rows handled by each model so far.
+         */
+        public Stats stats() {
+            long rows = this.rows.get();
+            long heavyRows = this.heavyRows.get();
+            return new Stats(rows, rows - heavyRows, heavyRows, rows == 0 ? 0 : (double) heavyRows / rows);
+        }
+
+    }
+
+    private final ScoredSequencePredictor<T> light;
+    private final SequencePredictor<T> heavy;
+    @Getter
+    private final Counters counters;
+
+    /**
+     * Labels with confidence below this threshold are considered low-confidence.
+     */
+    @Setter
+    private float threshold;
+    /**
+     * Maximum number of low-confidence labels accepted from the light model before an input is sent to the heavy model.
+     */
+    @Setter
+    private int maxLowConfidenceLabels = 0;
+
+    /**
+     * Initialize a cascade.
+     *
+     * @param light     cheap model, reporting per-label confidence
+     * @param heavy     expensive model, used for inputs with low-confidence labels
+     * @param threshold confidence below which a label is low-confidence
+     * @param counters  row counters
+     */
+    public CascadingSequencePredictor(@NonNull ScoredSequencePredictor<T> light, @NonNull SequencePredictor<T> heavy,
+                                      float threshold, @NonNull Counters counters) {
+        Preconditions.checkArgument(threshold >= 0 && threshold <= 1, "Threshold must be in [0, 1]: %s", threshold);
+        this.light = light;
+        this.heavy = heavy;
+        this.threshold = threshold;
+        this.counters = counters;
+    }
+
+    public CascadingSequencePredictor(@NonNull ScoredSequencePredictor<T> light, @NonNull SequencePredictor<T> heavy,
+                                      float threshold) {
+        this(light, heavy, threshold, new Counters());
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        List<ScoredLabelIds> scored = light.predictBatchScored(inputs);
+        LabelTable labels = light.labels();
+
+        List<List<String>> result = new ArrayList<>(inputs.size());
+        List<Integer> escalated = new ArrayList<>();
+        for (int i = 0; i < scored.size(); ++i) {
+            ScoredLabelIds row = scored.get(i);
+            if (row.countBelow(threshold) > maxLowConfidenceLabels) {
+                escalated.add(i);
+                result.add(null);
+                continue;
+            }
+            List<String> rowLabels = new ArrayList<>(row.ids().length);
+            for (int id : row.ids()) {
+                rowLabels.add(labels.label(id));
+            }
+            result.add(rowLabels);
+        }
+
+        if (!escalated.isEmpty()) {
+            List<List<String>> heavyLabels = heavy.predictBatch(escalated.stream()
+                    .map(inputs::get)
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < escalated.size(); ++i) {
+                result.set(escalated.get(i), heavyLabels.get(i));
+            }
+        }
+        counters.rows.addAndGet(inputs.size());
+        counters.heavyRows.addAndGet(escalated.size());
+        return result;
+    }
+
+    @Override
+    public void close() {
+        light.close();
+        heavy.close();
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import io.github.semlink.app.SessionPool.Mode;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Execution profile of a Tensorflow model: number and concurrency mode of loaded sessions, and the threading options of each
+ * session. Zero thread counts leave the choice to Tensorflow (typically one thread per core).
+ * <p>
+ * Unless {@link #usePerSessionThreads()} is set, Tensorflow creates process-wide thread pools sized by the first session
+ * created, and ignores the thread counts of sessions created afterwards.
+ *
+ * @author jgung
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@Accessors(fluent = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+public class ExecutionProfile {
+
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    // ConfigProto
+    private static final int INTRA_OP_THREADS_FIELD = 2;
+    private static final int INTER_OP_THREADS_FIELD = 5;
+    private static final int ALLOW_SOFT_PLACEMENT_FIELD = 7;
+    private static final int USE_PER_SESSION_THREADS_FIELD = 9;
+    private static final int OPERATION_TIMEOUT_FIELD = 11;
+
+    /**
+     * Number of sessions (copies of the model) to load.
+     */
+    private int sessions = 1;
+    /**
+     * Concurrency mode of loaded sessions.
+     */
+    private Mode mode = Mode.EXCLUSIVE;
+    /**
+     * Number of threads used to parallelize a single operation, such as a matrix multiplication.
+     */
+    private int intraOpThreads;
+    /**
+     * Number of threads used to run independent operations concurrently.
+     */
+    private int interOpThreads;
+    /**
+     * Give each session its own thread pools instead of sharing process-wide pools.
+     */
+    private boolean usePerSessionThreads;
+    /**
+     * Place operations on a supported device when the requested device is unavailable.
+     */
+    private boolean allowSoftPlacement;
+    /**
+     * Timeout for blocking operations of a session call, or 0 for no timeout.
+     */
+    private long operationTimeoutMs;
+
+    /**
+     * Serialize the session options of this profile as a {@code ConfigProto}.
+     */
+    public byte[] toConfigProto() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+            if (intraOpThreads > 0) {
+                output.writeInt32(INTRA_OP_THREADS_FIELD, intraOpThreads);
+            }
+            if (interOpThreads > 0) {
+                output.writeInt32(INTER_OP_THREADS_FIELD, interOpThreads);
+            }
+            if (allowSoftPlacement) {
+                output.writeBool(ALLOW_SOFT_PLACEMENT_FIELD, true);
+            }
+            if (usePerSessionThreads) {
+                output.writeBool(USE_PER_SESSION_THREADS_FIELD, true);
+            }
+            if (operationTimeoutMs > 0) {
+                output.writeInt64(OPERATION_TIMEOUT_FIELD, operationTimeoutMs);
+            }
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize session configuration", e);
+        }
+    }
+
+    /**
+     * Read a profile from a JSON file.
+     */
+    public static ExecutionProfile read(@NonNull File file) {
+        try {
+            return OM.readValue(file, ExecutionProfile.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read execution profile at " + file, e);
+        }
+    }
+
+    /**
+     * Write this profile to a JSON file.
+     */
+    public void write(@NonNull File file) {
+        try {
+            OM.writerWithDefaultPrettyPrinter().writeValue(file, this);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write execution profile to " + file, e);
+        }
+    }
+
+}
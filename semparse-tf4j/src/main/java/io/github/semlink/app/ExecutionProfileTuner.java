@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.github.semlink.app.SessionPool.Mode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sweeps {@link ExecutionProfile execution profiles} on the current machine, loading a model with each candidate profile and
+ * measuring throughput and tail latency of a fixed workload issued by a number of concurrent clients.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class ExecutionProfileTuner<T> {
+
+    /**
+     * Criterion used to select the best profile.
+     */
+    public enum Objective {
+        /**
+         * Highest number of batches per second.
+         */
+        THROUGHPUT,
+        /**
+         * Lowest 99th percentile latency of a batch.
+         */
+        P99_LATENCY
+    }
+
+    /**
+     * Measurements of a single profile.
+     */
+    @Getter
+    @ToString
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    public static class Result {
+        private final ExecutionProfile profile;
+        private final double batchesPerSecond;
+        private final double p50Ms;
+        private final double p99Ms;
+    }
+
+    private final Function<ExecutionProfile, SequencePredictor<T>> loader;
+    private final List<List<T>> workload;
+
+    /**
+     * Number of concurrent clients issuing the workload.
+     */
+    @Setter
+    private int clients = 4;
+    /**
+     * Number of passes over the workload, after a single untimed warm-up pass.
+     */
+    @Setter
+    private int passes = 3;
+
+    /**
+     * Initialize a tuner.
+     *
+     * @param loader   function loading a model with a given profile
+     * @param workload batches issued to each loaded model
+     */
+    public ExecutionProfileTuner(@NonNull Function<ExecutionProfile, SequencePredictor<T>> loader,
+                                 @NonNull List<List<T>> workload) {
+        Preconditions.checkArgument(!workload.isEmpty(), "Workload must not be empty");
+        this.loader = loader;
+        this.workload = workload;
+    }
+
+    /**
+     * Candidate profiles for a machine with a given number of cores, varying the number of sessions, their concurrency mode and
+     * intra/inter-op threads, such that total intra-op threads do not exceed the number of cores. All candidates use per-session
+     * thread pools, as otherwise only the thread counts of the first session created in the process would take effect.
+     *
+     * @param cores number of available cores
+     * @return candidate profiles
+     */
+    public static List<ExecutionProfile> candidates(int cores) {
+        Set<ExecutionProfile> candidates = new LinkedHashSet<>();
+        for (int sessions = 1; sessions <= cores; sessions *= 2) {
+            for (int intraOp = 1; intraOp * sessions <= cores; intraOp *= 2) {
+                for (int interOp : new int[]{1, 2}) {
+                    for (Mode mode : Mode.values()) {
+                        candidates.add(new ExecutionProfile()
+                                .sessions(sessions)
+                                .mode(mode)
+                                .intraOpThreads(intraOp)
+                                .interOpThreads(interOp)
+                                .usePerSessionThreads(true));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * Measure each candidate profile and return the best according to a given objective.
+     *
+     * @param candidates candidate profiles
+     * @param objective  selection criterion
+     * @return best result
+     */
+    public Result tune(@NonNull List<ExecutionProfile> candidates, @NonNull Objective objective) {
+        Preconditions.checkArgument(!candidates.isEmpty(), "At least one candidate profile is required");
+        List<Result> results = new ArrayList<>();
+        for (ExecutionProfile profile : candidates) {
+            Result result = measure(profile);
+            log.info("{}: {} batches/s, p50 {} ms, p99 {} ms", profile, String.format("%.2f", result.batchesPerSecond()),
+                    String.format("%.1f", result.p50Ms()), String.format("%.1f", result.p99Ms()));
+            results.add(result);
+        }
+        Comparator<Result> comparator = objective == Objective.THROUGHPUT
+                ? Comparator.comparingDouble(Result::batchesPerSecond).reversed()
+                : Comparator.comparingDouble(Result::p99Ms);
+        return results.stream()
+                .min(comparator)
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    /**
+     * Load a model with a given profile and measure it over the workload.
+     *
+     * @param profile execution profile
+     * @return measurements
+     */
+    public Result measure(@NonNull ExecutionProfile profile) {
+        try (SequencePredictor<T> predictor = loader.apply(profile)) {
+            run(predictor, workload.size());
+
+            int calls = workload.size() * passes;
+            long start = System.nanoTime();
+            double[] latencies = run(predictor, calls);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            return new Result(profile, calls / seconds, percentile(latencies, 0.5), percentile(latencies, 0.99));
+        }
+    }
+
+    private double[] run(SequencePredictor<T> predictor, int calls) {
+        double[] latencies = new double[calls];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; ++i) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    int call;
+                    while ((call = next.getAndIncrement()) < calls) {
+                        long start = System.nanoTime();
+                        predictor.predictBatch(workload.get(call % workload.size()));
+                        latencies[call] = (System.nanoTime() - start) / 1e6;
+                    }
+                }, executor));
+            }
+            futures.forEach(CompletableFuture::join);
+            return latencies;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double percentile(double[] values, double percentile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+}
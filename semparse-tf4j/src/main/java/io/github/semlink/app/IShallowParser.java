@@ -17,6 +17,7 @@
 package io.github.semlink.app;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import lombok.NonNull;
 
@@ -43,4 +44,21 @@ public interface IShallowParser<T, S extends List<T>> extends AutoCloseable {
      */
     List<Chunking<String>> shallowParseBatch(@NonNull List<S> sequence);
 
+    /**
+     * Produce a list of phrases from a given batch of sequences of tokens asynchronously. By default, parsing runs on the calling
+     * thread and the returned future is already complete.
+     *
+     * @param sequence token sequences
+     * @return future batched lists of phrases
+     */
+    default CompletableFuture<List<Chunking<String>>> shallowParseBatchAsync(@NonNull List<S> sequence) {
+        CompletableFuture<List<Chunking<String>>> result = new CompletableFuture<>();
+        try {
+            result.complete(shallowParseBatch(sequence));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.util.List;
+
+import io.github.semlink.extractor.BertSrlInput;
+import io.github.semlink.tensor.LabelTable;
+import lombok.NonNull;
+
+/**
+ * Inference backend for BERT SRL models, running batches of {@link BertSrlInput primitive inputs} and decoding predicted labels
+ * to IDs of a {@link LabelTable}.
+ *
+ * @author jgung
+ */
+public interface InferenceEngine extends AutoCloseable {
+
+    /**
+     * Available engine implementations.
+     */
+    enum Type {
+        /**
+         * Tensorflow saved model, see {@link TensorflowEngine}.
+         */
+        TENSORFLOW,
+        /**
+         * ONNX Runtime CPU model, see {@link OnnxEngine}.
+         */
+        ONNX
+    }
+
+    /**
+     * Predict labels for a batch of inputs.
+     *
+     * @param inputs   batch of inputs
+     * @param labels   table used to intern predicted labels
+     * @param ignoreId ID of the label predicted for non-initial subtokens, which are dropped from the result
+     * @return label IDs for each input, one per word
+     */
+    List<int[]> run(@NonNull List<BertSrlInput> inputs, @NonNull LabelTable labels, int ignoreId);
+
+    /**
+     * Number of calls that can run in parallel without queueing, e.g. the number of loaded sessions.
+     */
+    int concurrency();
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.util.List;
+
+import io.github.semlink.tensor.LabelTable;
+import lombok.NonNull;
+
+/**
+ * {@link SequencePredictor} that can also produce compact label IDs from a {@link LabelTable}, avoiding per-label strings.
+ *
+ * @author jgung
+ */
+public interface LabelIdPredictor<T> extends SequencePredictor<T> {
+
+    /**
+     * Label table used to interpret predicted label IDs.
+     */
+    LabelTable labels();
+
+    /**
+     * Predict label IDs for a given batch of input sequences.
+     *
+     * @param inputs input sequence batch
+     * @return batched sequence label IDs
+     */
+    List<int[]> predictBatchIds(@NonNull List<T> inputs);
+
+}
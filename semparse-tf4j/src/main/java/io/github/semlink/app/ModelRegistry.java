@@ -0,0 +1,250 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link SequencePredictor} delegating to the current version of a model that can be replaced without downtime. New versions are
+ * loaded and warmed up in the background, then swapped in atomically; the previous version is closed once all calls in flight on
+ * it have completed.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Slf4j
+public class ModelRegistry<T> implements SequencePredictor<T> {
+
+    /**
+     * Result of a call, along with the model version that produced it.
+     */
+    @Getter
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    public static class Versioned<R> {
+        private final String version;
+        private final R result;
+    }
+
+    /**
+     * Loaded model version, closed once released by the registry and by every call that acquired it.
+     */
+    private static class Version<T> {
+
+        private final String id;
+        private final SequencePredictor<T> predictor;
+        // one reference held by the registry while current, plus one per call in flight
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(String id, SequencePredictor<T> predictor) {
+            this.id = id;
+            this.predictor = predictor;
+        }
+
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                log.info("Closing model version {}", id);
+                predictor.close();
+            }
+        }
+
+    }
+
+    private final Function<String, SequencePredictor<T>> loader;
+    private final Consumer<SequencePredictor<T>> warmup;
+    private final AtomicReference<Version<T>> current = new AtomicReference<>();
+    private final AtomicInteger versions = new AtomicInteger();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<String> loaded = new CompletableFuture<>();
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("model-loader-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * Initialize an empty registry.
+     *
+     * @param loader function loading a model from a given location, such as a saved model directory
+     * @param warmup warm-up applied to each loaded model before it is swapped in
+     */
+    public ModelRegistry(@NonNull Function<String, SequencePredictor<T>> loader,
+                         @NonNull Consumer<SequencePredictor<T>> warmup) {
+        this.loader = loader;
+        this.warmup = warmup;
+    }
+
+    public ModelRegistry(@NonNull Function<String, SequencePredictor<T>> loader) {
+        this(loader, predictor -> {
+        });
+    }
+
+    /**
+     * Load and warm up a model from a given location in the background, then make it the current version. Loads are run one at a
+     * time, in order.
+     *
+     * @param location model location, passed to the loader
+     * @return future version ID of the loaded model, completed once it is serving calls
+     */
+    public CompletableFuture<String> load(@NonNull String location) {
+        return CompletableFuture.supplyAsync(() -> {
+            String id = location + "#" + versions.incrementAndGet();
+            log.info("Loading model version {}", id);
+            SequencePredictor<T> predictor = loader.apply(location);
+            try {
+                warmup.accept(predictor);
+            } catch (RuntimeException e) {
+                predictor.close();
+                throw e;
+            }
+            swap(new Version<>(id, predictor));
+            return id;
+        }, loadExecutor).whenComplete((id, error) -> {
+            if (null != error) {
+                log.error("Failed to load model at {}", location, error);
+                if (null == current.get()) {
+                    loaded.completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    private void swap(Version<T> version) {
+        Version<T> previous = current.getAndSet(version);
+        log.info("Model version {} is now serving{}", version.id, null == previous ? "" : ", draining " + previous.id);
+        loaded.complete(version.id);
+        for (Consumer<String> listener : listeners) {
+            listener.accept(version.id);
+        }
+        if (null != previous) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Register a listener called with the version ID each time a new version is swapped in, e.g. to invalidate caches. Listeners
+     * run after the new version is serving, so calls may still read entries of the previous version until they complete: caches
+     * that must never serve a previous version should key entries by {@link #version()} instead.
+     */
+    public ModelRegistry<T> addListener(@NonNull Consumer<String> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Future completed with the ID of the first version once it is serving calls, or failed if the first load fails.
+     */
+    public CompletableFuture<String> loaded() {
+        return loaded;
+    }
+
+    /**
+     * ID of the current version, or {@code null} if no version has been loaded yet.
+     */
+    public String version() {
+        Version<T> version = current.get();
+        return null == version ? null : version.id;
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        return predictBatchWithVersion(inputs).result();
+    }
+
+    /**
+     * Predict labels for a given batch of input sequences, returning the ID of the model version used.
+     *
+     * @param inputs input sequence batch
+     * @return batched sequence labels and model version
+     */
+    public Versioned<List<List<String>>> predictBatchWithVersion(@NonNull List<T> inputs) {
+        Version<T> version = acquire();
+        try {
+            return new Versioned<>(version.id, version.predictor.predictBatch(inputs));
+        } finally {
+            version.release();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<T> inputs) {
+        Version<T> version = acquire();
+        CompletableFuture<List<List<String>>> result;
+        try {
+            result = version.predictor.predictBatchAsync(inputs);
+        } catch (RuntimeException e) {
+            version.release();
+            throw e;
+        }
+        return result.whenComplete((labels, error) -> version.release());
+    }
+
+    private Version<T> acquire() {
+        while (true) {
+            Version<T> version = current.get();
+            if (null == version) {
+                throw new IllegalStateException("No model version has been loaded");
+            }
+            // fails only if the version was swapped out and fully drained since it was read, in which case retry on the new one
+            if (version.retain()) {
+                return version;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        loadExecutor.shutdownNow();
+        try {
+            loadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Version<T> version = current.getAndSet(null);
+        if (null != version) {
+            version.release();
+        }
+    }
+
+}
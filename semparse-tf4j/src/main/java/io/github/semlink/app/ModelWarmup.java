@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warms up a {@link SequencePredictor} by running synthetic batches over a grid of batch sizes and sequence lengths, so that
+ * one-time costs of each input shape (kernel selection, memory allocation, lazy initialization) are paid before serving traffic.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class ModelWarmup<T> {
+
+    /**
+     * Latencies observed for a single input shape.
+     */
+    @Getter
+    @ToString
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    public static class ShapeLatency {
+        private final int batchSize;
+        private final int length;
+        /**
+         * Latency of the first (cold) call in milliseconds.
+         */
+        private final double firstMs;
+        /**
+         * Average latency of subsequent (warm) calls in milliseconds.
+         */
+        private final double warmMs;
+    }
+
+    private final SequencePredictor<T> predictor;
+    private final IntFunction<T> inputFactory;
+
+    @Setter
+    private int[] batchSizes = {1, 8, 32};
+    @Setter
+    private int[] lengths = {8, 16, 32, 64};
+    /**
+     * Number of calls per shape, including the first call.
+     */
+    @Setter
+    private int iterations = 3;
+    /**
+     * Number of concurrent calls made at each iteration, e.g. to reach every session of a {@link SessionPool}.
+     */
+    @Setter
+    private int concurrency = 1;
+
+    /**
+     * Initialize a warm-up over a given predictor.
+     *
+     * @param predictor    predictor to warm up
+     * @param inputFactory function producing a synthetic input of a given sequence length
+     */
+    public ModelWarmup(@NonNull SequencePredictor<T> predictor, @NonNull IntFunction<T> inputFactory) {
+        this.predictor = predictor;
+        this.inputFactory = inputFactory;
+    }
+
+    /**
+     * Run warm-up over all batch sizes and lengths, logging latencies of each shape.
+     *
+     * @return latencies for each shape
+     */
+    public List<ShapeLatency> run() {
+        Preconditions.checkState(iterations > 0, "Iterations must be positive: %s", iterations);
+        Preconditions.checkState(concurrency > 0, "Concurrency must be positive: %s", concurrency);
+
+        ExecutorService executor = concurrency > 1 ? Executors.newFixedThreadPool(concurrency) : null;
+        try {
+            List<ShapeLatency> latencies = new ArrayList<>();
+            for (int length : lengths) {
+                for (int batchSize : batchSizes) {
+                    List<T> batch = new ArrayList<>(Collections.nCopies(batchSize, inputFactory.apply(length)));
+                    double first = time(batch, executor);
+                    double warm = 0;
+                    for (int i = 1; i < iterations; ++i) {
+                        warm += time(batch, executor);
+                    }
+                    ShapeLatency latency = new ShapeLatency(batchSize, length, first,
+                            iterations > 1 ? warm / (iterations - 1) : first);
+                    log.info("Warm-up batch size {}, length {}: first call {} ms, warm {} ms", batchSize, length,
+                            String.format("%.1f", latency.firstMs()), String.format("%.1f", latency.warmMs()));
+                    latencies.add(latency);
+                }
+            }
+            return latencies;
+        } finally {
+            if (null != executor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private double time(List<T> batch, ExecutorService executor) {
+        long start = System.nanoTime();
+        if (null == executor) {
+            predictor.predictBatch(batch);
+        } else {
+            List<CompletableFuture<List<List<String>>>> calls = new ArrayList<>();
+            for (int i = 0; i < concurrency; ++i) {
+                calls.add(CompletableFuture.supplyAsync(() -> predictor.predictBatch(batch), executor));
+            }
+            calls.forEach(CompletableFuture::join);
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+}
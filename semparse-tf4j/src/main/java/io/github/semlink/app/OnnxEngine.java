@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import io.github.semlink.extractor.BertSrlInput;
+import io.github.semlink.tensor.BertFeeds;
+import io.github.semlink.tensor.LabelTable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link InferenceEngine} running an ONNX export of a BERT SRL model with ONNX Runtime on CPU. The model takes the same
+ * {@code int64} inputs as {@link BertFeeds} ({@value BertFeeds#IDS_KEY}, {@value BertFeeds#MASK_KEY},
+ * {@value BertFeeds#MARKER_KEY} and {@value BertFeeds#LENGTH_KEY}, optionally suffixed with an output index such as
+ * {@code :0}), and outputs either label strings, or {@code int64} label indices into a label vocabulary.
+ *
+ * @author jgung
+ */
+@Slf4j
+public class OnnxEngine implements InferenceEngine {
+
+    /**
+     * Name of the ONNX model file in a model directory.
+     */
+    public static final String MODEL_FILE = "model.onnx";
+    /**
+     * Name of the optional label vocabulary in a model directory, one label per line, for models outputting label indices.
+     */
+    public static final String LABELS_FILE = "labels.txt";
+
+    private final OrtEnvironment environment;
+    private final SessionPool<OrtSession> sessions;
+    private final List<String> labelVocabulary;
+    private final String idsName;
+    private final String maskName;
+    private final String markerName;
+    private final String lengthName;
+
+    /**
+     * Initialize an engine over loaded sessions.
+     *
+     * @param environment     ONNX Runtime environment
+     * @param sessions        loaded sessions
+     * @param labelVocabulary labels indexed by predicted label indices, or {@code null} for models predicting label strings
+     * @throws IllegalArgumentException if the model is missing a numeric BERT input, after closing the sessions
+     */
+    public OnnxEngine(@NonNull OrtEnvironment environment, @NonNull SessionPool<OrtSession> sessions,
+                      List<String> labelVocabulary) {
+        this.environment = environment;
+        this.sessions = sessions;
+        this.labelVocabulary = labelVocabulary;
+        try {
+            Set<String> inputNames = sessions.first().getInputNames();
+            this.idsName = inputName(inputNames, BertFeeds.IDS_KEY);
+            this.maskName = inputName(inputNames, BertFeeds.MASK_KEY);
+            this.markerName = inputName(inputNames, BertFeeds.MARKER_KEY);
+            this.lengthName = inputName(inputNames, BertFeeds.LENGTH_KEY);
+        } catch (RuntimeException e) {
+            sessions.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Load an ONNX model from a model directory, with the session count, concurrency mode and thread counts of a given profile.
+     *
+     * @param modelDir model directory, containing {@value #MODEL_FILE} and optionally {@value #LABELS_FILE}
+     * @param profile  execution profile
+     * @return loaded engine
+     */
+    public static OnnxEngine fromDirectory(@NonNull String modelDir, @NonNull ExecutionProfile profile) {
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+        String modelPath = Paths.get(modelDir, MODEL_FILE).toString();
+        SessionPool<OrtSession> sessions = SessionPool.create(() -> {
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                if (profile.intraOpThreads() > 0) {
+                    options.setIntraOpNumThreads(profile.intraOpThreads());
+                }
+                if (profile.interOpThreads() > 0) {
+                    options.setInterOpNumThreads(profile.interOpThreads());
+                }
+                return environment.createSession(modelPath, options);
+            } catch (OrtException e) {
+                throw new IllegalStateException("Unable to load ONNX model at " + modelPath, e);
+            }
+        }, profile.sessions(), profile.mode(), OnnxEngine::closeSession);
+
+        Path labelsPath = Paths.get(modelDir, LABELS_FILE);
+        List<String> labelVocabulary = null;
+        if (Files.exists(labelsPath)) {
+            try {
+                labelVocabulary = Files.readAllLines(labelsPath, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                sessions.close();
+                throw new RuntimeException("Unable to read label vocabulary at " + labelsPath, e);
+            }
+        }
+        return new OnnxEngine(environment, sessions, labelVocabulary);
+    }
+
+    @Override
+    public List<int[]> run(@NonNull List<BertSrlInput> inputs, @NonNull LabelTable labels, int ignoreId) {
+        BertFeeds.Batch batch = new BertFeeds.Batch(inputs);
+        Map<String, OnnxTensor> feeds = new HashMap<>();
+        try (SessionPool.Lease<OrtSession> lease = sessions.acquire()) {
+            feeds.put(idsName, OnnxTensor.createTensor(environment, batch.ids(), batch.shape()));
+            feeds.put(maskName, OnnxTensor.createTensor(environment, batch.mask(), batch.shape()));
+            feeds.put(markerName, OnnxTensor.createTensor(environment, batch.markers(), batch.shape()));
+            feeds.put(lengthName, OnnxTensor.createTensor(environment, batch.lengths(), batch.lengthShape()));
+            try (OrtSession.Result result = lease.get().run(feeds)) {
+                return decode(result.get(0), inputs, labels, ignoreId);
+            }
+        } catch (OrtException e) {
+            throw new IllegalStateException("ONNX Runtime inference failed", e);
+        } finally {
+            feeds.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    private List<int[]> decode(OnnxValue output, List<BertSrlInput> inputs, LabelTable labels, int ignoreId)
+            throws OrtException {
+        Object value = output.getValue();
+        List<int[]> result = new ArrayList<>(inputs.size());
+        for (int row = 0; row < inputs.size(); ++row) {
+            // skip padding past the end of each input
+            int length = inputs.get(row).length();
+            int[] ids = new int[length];
+            int size = 0;
+            for (int i = 0; i < length; ++i) {
+                int id = labels.id(label(value, row, i));
+                if (id != ignoreId) {
+                    ids[size++] = id;
+                }
+            }
+            result.add(size == ids.length ? ids : Arrays.copyOf(ids, size));
+        }
+        return result;
+    }
+
+    private String label(Object value, int row, int index) {
+        if (value instanceof String[][]) {
+            return ((String[][]) value)[row][index];
+        }
+        if (value instanceof long[][]) {
+            if (null == labelVocabulary) {
+                throw new IllegalStateException("Model predicts label indices, but no label vocabulary was provided");
+            }
+            return labelVocabulary.get((int) ((long[][]) value)[row][index]);
+        }
+        throw new IllegalStateException("Unsupported ONNX model output: " + value.getClass().getSimpleName()
+                + ", was expecting [batch, length] strings or int64 label indices");
+    }
+
+    private static String inputName(Set<String> inputNames, String key) {
+        for (String name : inputNames) {
+            if (name.equals(key) || name.startsWith(key + ":")) {
+                return name;
+            }
+        }
+        throw new IllegalArgumentException("ONNX model is missing input \"" + key + "\": " + inputNames);
+    }
+
+    private static void closeSession(OrtSession session) {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("Error while closing ONNX Runtime session", e);
+        }
+    }
+
+    @Override
+    public int concurrency() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        sessions.close();
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.type.HasFields;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import tensorflow.serving.Model;
+import tensorflow.serving.Predict;
+import tensorflow.serving.PredictionServiceGrpc;
+
+/**
+ * {@link SequencePredictor} that sends batches of sequence examples to a remote TF-Serving compatible {@code Predict} endpoint.
+ * Calls are spread round-robin over a pool of channels, and the number of in-flight calls is bounded (calls beyond the limit
+ * fail immediately). Calls failing with transient errors are retried on the next channel after an exponential backoff with
+ * jitter, within a single deadline covering all attempts.
+ *
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class RemoteSequencePredictor implements SequencePredictor<HasFields> {
+
+    private static final String IGNORE_LABEL = "X";
+    // DEADLINE_EXCEEDED is not retried, as the deadline covers every attempt
+    private static final Set<Status.Code> RETRYABLE = EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.RESOURCE_EXHAUSTED);
+
+    private final SequenceExampleExtractor featureExtractor;
+    private final List<ManagedChannel> channels;
+    private final Model.ModelSpec modelSpec;
+    private final Semaphore inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("remote-retry-%d")
+                    .setDaemon(true)
+                    .build());
+
+    /**
+     * Deadline of each call in milliseconds, including retries.
+     */
+    @Setter
+    private long deadlineMs = 10000;
+    /**
+     * Maximum number of retries of a call that failed with a transient error.
+     */
+    @Setter
+    private int maxRetries = 2;
+    /**
+     * Maximum backoff before the first retry in milliseconds, doubled on each further retry. The actual backoff is drawn
+     * uniformly up to this maximum, so that clients failing together do not retry together.
+     */
+    @Setter
+    private long initialBackoffMs = 50;
+    /**
+     * Upper bound on the backoff before any retry in milliseconds.
+     */
+    @Setter
+    private long maxBackoffMs = 1000;
+    /**
+     * Signature input alias of the serialized example tensor.
+     */
+    @Setter
+    private String inputKey = "examples";
+    /**
+     * Signature output alias of the label tensor.
+     */
+    @Setter
+    private String outputKey = "output";
+
+    /**
+     * Initialize a remote predictor.
+     *
+     * @param featureExtractor extractor used to build sequence examples sent to the remote model
+     * @param channels         pool of channels to the prediction service
+     * @param modelSpec        model name, version and signature used in requests
+     * @param maxInFlight      maximum number of concurrent calls
+     */
+    public RemoteSequencePredictor(@NonNull SequenceExampleExtractor featureExtractor, @NonNull List<ManagedChannel> channels,
+                                   @NonNull Model.ModelSpec modelSpec, int maxInFlight) {
+        Preconditions.checkArgument(!channels.isEmpty(), "At least one channel is required");
+        Preconditions.checkArgument(maxInFlight > 0, "Max in-flight calls must be positive: %s", maxInFlight);
+        this.featureExtractor = featureExtractor;
+        this.channels = new ArrayList<>(channels);
+        this.modelSpec = modelSpec;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Initialize a remote predictor connecting over plaintext to a given target, such as {@code localhost:8500}.
+     *
+     * @param target           target address of the prediction service
+     * @param modelName        name of the served model
+     * @param featureExtractor extractor used to build sequence examples sent to the remote model
+     * @param channels         number of channels to open
+     * @param maxInFlight      maximum number of concurrent calls
+     * @return remote predictor
+     */
+    public static RemoteSequencePredictor forTarget(@NonNull String target, @NonNull String modelName,
+                                                    @NonNull SequenceExampleExtractor featureExtractor,
+                                                    int channels, int maxInFlight) {
+        List<ManagedChannel> pool = new ArrayList<>();
+        for (int i = 0; i < channels; ++i) {
+            pool.add(ManagedChannelBuilder.forTarget(target).usePlaintext().build());
+        }
+        return new RemoteSequencePredictor(featureExtractor, pool, Model.ModelSpec.newBuilder()
+                .setName(modelName)
+                .setSignatureName("serving_default")
+                .build(), maxInFlight);
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<HasFields> inputs) {
+        try {
+            return predictBatchAsync(inputs).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for remote prediction", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Remote prediction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Send a batch of inputs for prediction without waiting for the response.
+     *
+     * @param inputs input sequence batch
+     * @return future batched sequence labels, failed with a {@link RejectedExecutionException} if the maximum number of
+     * in-flight calls has been reached
+     */
+    @Override
+    public CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<HasFields> inputs) {
+        if (inputs.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        TensorProto.Builder examples = TensorProto.newBuilder()
+                .setDtype(DataType.DT_STRING)
+                .setTensorShape(TensorShapeProto.newBuilder()
+                        .addDim(TensorShapeProto.Dim.newBuilder().setSize(inputs.size())));
+        for (HasFields input : inputs) {
+            // each serialized example is freshly allocated and never modified, so it can be wrapped without copying
+            examples.addStringVal(UnsafeByteOperations.unsafeWrap(featureExtractor.extractBytes(input)));
+        }
+        Predict.PredictRequest request = Predict.PredictRequest.newBuilder()
+                .setModelSpec(modelSpec)
+                .putInputs(inputKey, examples.build())
+                .addOutputFilter(outputKey)
+                .build();
+
+        CompletableFuture<List<List<String>>> result = new CompletableFuture<>();
+        if (!inFlight.tryAcquire()) {
+            // fail fast rather than blocking the caller, e.g. a request thread, behind a saturated service
+            result.completeExceptionally(new RejectedExecutionException("Too many remote predictions in flight"));
+            return result;
+        }
+        result.whenComplete((labels, error) -> inFlight.release());
+        call(request, inputs.size(), 0, Deadline.after(deadlineMs, TimeUnit.MILLISECONDS), result);
+        return result;
+    }
+
+    private void call(Predict.PredictRequest request, int batchSize, int attempt, Deadline deadline,
+                      CompletableFuture<List<List<String>>> result) {
+        ManagedChannel channel = channels.get(Math.floorMod(next.getAndIncrement(), channels.size()));
+        PredictionServiceGrpc.PredictionServiceFutureStub stub = PredictionServiceGrpc.newFutureStub(channel)
+                .withDeadline(deadline);
+        Futures.addCallback(stub.predict(request), new FutureCallback<Predict.PredictResponse>() {
+            @Override
+            public void onSuccess(Predict.PredictResponse response) {
+                try {
+                    result.complete(decode(response, batchSize));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                Status.Code code = Status.fromThrowable(error).getCode();
+                long backoffMs = backoffMs(attempt);
+                if (attempt >= maxRetries || !RETRYABLE.contains(code)
+                        || backoffMs >= deadline.timeRemaining(TimeUnit.MILLISECONDS)) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+                log.debug("Retrying remote prediction after {} in {} ms (attempt {} of {})", code, backoffMs, attempt + 1,
+                        maxRetries);
+                try {
+                    retryScheduler.schedule(() -> call(request, batchSize, attempt + 1, deadline, result), backoffMs,
+                            TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // closed while retrying
+                    error.addSuppressed(e);
+                    result.completeExceptionally(error);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private long backoffMs(int attempt) {
+        long max = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(max + 1);
+    }
+
+    private List<List<String>> decode(Predict.PredictResponse response, int batchSize) {
+        TensorProto output = response.getOutputsOrThrow(outputKey);
+        List<TensorShapeProto.Dim> dims = output.getTensorShape().getDimList();
+        int rows = dims.size() == 2 ? (int) dims.get(0).getSize() : 1;
+        Preconditions.checkState(rows == batchSize,
+                "Remote model produced an unexpected number of batches: %d vs. %d", rows, batchSize);
+        int columns = rows == 0 ? 0 : output.getStringValCount() / rows;
+
+        List<List<String>> result = new ArrayList<>();
+        for (int row = 0; row < rows; ++row) {
+            List<String> labels = new ArrayList<>();
+            for (ByteString value : output.getStringValList().subList(row * columns, (row + 1) * columns)) {
+                String label = value.toStringUtf8();
+                if (!label.equals(IGNORE_LABEL)) {
+                    labels.add(label);
+                }
+            }
+            result.add(labels);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+        channels.forEach(ManagedChannel::shutdown);
+        for (ManagedChannel channel : channels) {
+            try {
+                channel.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.util.List;
+
+import io.github.semlink.tensor.ScoredLabelIds;
+import lombok.NonNull;
+
+/**
+ * {@link LabelIdPredictor} that can also report its confidence in each predicted label.
+ *
+ * @author jgung
+ */
+public interface ScoredSequencePredictor<T> extends LabelIdPredictor<T> {
+
+    /**
+     * Predict label IDs and per-label confidences for a given batch of input sequences.
+     *
+     * @param inputs input sequence batch
+     * @return batched scored sequence label IDs
+     */
+    List<ScoredLabelIds> predictBatchScored(@NonNull List<T> inputs);
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+
+import org.tensorflow.example.BytesList;
+import org.tensorflow.example.Feature;
+import org.tensorflow.example.Int64List;
+import org.tensorflow.example.SequenceExample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.tensor.TFRecordWriter;
+import io.github.semlink.type.HasFields;
+import lombok.NonNull;
+
+/**
+ * Writes extracted {@link SequenceExample sequence examples} to numbered TFRecord shards, so that a corpus can be re-scored by
+ * {@link TFRecordScorer} without re-running upstream processing (tokenization, parsing, sense classification and feature
+ * extraction). Each example is keyed by a sentence ID and predicate index, stored as context features.
+ *
+ * @author jgung
+ */
+public class SequenceExampleShardWriter implements AutoCloseable {
+
+    /**
+     * Context feature holding the sentence ID of an example.
+     */
+    public static final String SENTENCE_KEY = "scoring_sentence";
+    /**
+     * Context feature holding the predicate index of an example.
+     */
+    public static final String PREDICATE_KEY = "scoring_predicate";
+
+    private final SequenceExampleExtractor extractor;
+    private final String prefix;
+    private final int recordsPerShard;
+    private final List<String> shards = new ArrayList<>();
+
+    private TFRecordWriter writer;
+    private int records;
+
+    /**
+     * Initialize a shard writer.
+     *
+     * @param extractor       feature extractor of the model that will score the shards
+     * @param prefix          shard path prefix, followed by a shard number and {@code .tfrecord}
+     * @param recordsPerShard maximum number of examples per shard
+     */
+    public SequenceExampleShardWriter(@NonNull SequenceExampleExtractor extractor, @NonNull String prefix,
+                                      int recordsPerShard) {
+        Preconditions.checkArgument(recordsPerShard > 0, "Records per shard must be positive: %s", recordsPerShard);
+        this.extractor = extractor;
+        this.prefix = prefix;
+        this.recordsPerShard = recordsPerShard;
+    }
+
+    /**
+     * Extract and write the features of a single predicate.
+     *
+     * @param sentenceId     sentence ID
+     * @param predicateIndex index of the predicate in the sentence
+     * @param features       model input features
+     */
+    public void write(@NonNull String sentenceId, int predicateIndex, @NonNull HasFields features) throws IOException {
+        SequenceExample.Builder example = extractor.extractSequence(features).toBuilder();
+        example.getContextBuilder()
+                .putFeature(SENTENCE_KEY, Feature.newBuilder()
+                        .setBytesList(BytesList.newBuilder().addValue(ByteString.copyFromUtf8(sentenceId)))
+                        .build())
+                .putFeature(PREDICATE_KEY, Feature.newBuilder()
+                        .setInt64List(Int64List.newBuilder().addValue(predicateIndex))
+                        .build());
+        if (null == writer || records == recordsPerShard) {
+            nextShard();
+        }
+        writer.write(example.build());
+        ++records;
+    }
+
+    private void nextShard() throws IOException {
+        if (null != writer) {
+            writer.close();
+        }
+        String shard = String.format("%s-%05d.tfrecord", prefix, shards.size());
+        writer = new TFRecordWriter(shard);
+        shards.add(shard);
+        records = 0;
+    }
+
+    /**
+     * Paths of shards written so far.
+     */
+    public List<String> shards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != writer) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Sentence ID of an example written by this class.
+     */
+    public static String sentenceId(@NonNull SequenceExample example) {
+        return example.getContext().getFeatureOrThrow(SENTENCE_KEY).getBytesList().getValue(0).toStringUtf8();
+    }
+
+    /**
+     * Predicate index of an example written by this class.
+     */
+    public static int predicateIndex(@NonNull SequenceExample example) {
+        return (int) example.getContext().getFeatureOrThrow(PREDICATE_KEY).getInt64List().getValue(0);
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import tensorflow.serving.Model;
+import tensorflow.serving.Predict;
+import tensorflow.serving.PredictionServiceGrpc;
+
+/**
+ * TF-Serving compatible {@code Predict} endpoint serving a local model, so that several processes on a host can share a single
+ * loaded copy of a model through {@link RemoteSequencePredictor}. Requests carry batches of serialized sequence examples, which
+ * are passed on as received, without being parsed; concurrent requests are coalesced into larger batches by a
+ * {@link BatchingSequencePredictor}, and labels are returned as a string tensor padded with an ignored label.
+ * <p>
+ * Usage: {@code SequencePredictionService <model-dir> <model-name> <port>}
+ *
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class SequencePredictionService extends PredictionServiceGrpc.PredictionServiceImplBase implements AutoCloseable {
+
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long MAX_WAIT_MS = 5;
+
+    private final String modelName;
+    private final SequencePredictor<ByteString> predictor;
+
+    /**
+     * Signature input alias of the serialized example tensor.
+     */
+    @Setter
+    private String inputKey = "examples";
+    /**
+     * Signature output alias of the label tensor.
+     */
+    @Setter
+    private String outputKey = "output";
+    /**
+     * Label used to pad rows of the label tensor, ignored by {@link RemoteSequencePredictor}.
+     */
+    @Setter
+    private String paddingLabel = "X";
+
+    /**
+     * Initialize a prediction service.
+     *
+     * @param modelName name of the served model, matched against the model spec of each request
+     * @param predictor predictor over serialized sequence examples
+     */
+    public SequencePredictionService(@NonNull String modelName, @NonNull SequencePredictor<ByteString> predictor) {
+        this.modelName = modelName;
+        this.predictor = predictor;
+    }
+
+    /**
+     * Initialize a prediction service on top of a local model, coalescing concurrent requests into batches.
+     *
+     * @param modelName    name of the served model
+     * @param model        local model, closed with the service
+     * @param maxBatchSize maximum number of examples to combine into a single session call
+     * @param maxWaitMs    maximum time in milliseconds to wait for concurrent requests before running a batch
+     * @return prediction service
+     */
+    public static SequencePredictionService forModel(@NonNull String modelName, @NonNull TensorflowModel model,
+                                                     int maxBatchSize, long maxWaitMs) {
+        return forModel(modelName, new ExamplePredictor(model), maxBatchSize, maxWaitMs);
+    }
+
+    /**
+     * Initialize a prediction service on top of a predictor over serialized sequence examples, coalescing concurrent requests
+     * into batches.
+     *
+     * @param modelName    name of the served model
+     * @param predictor    predictor over serialized sequence examples, closed with the service
+     * @param maxBatchSize maximum number of examples to combine into a single batch
+     * @param maxWaitMs    maximum time in milliseconds to wait for concurrent requests before running a batch
+     * @return prediction service
+     */
+    public static SequencePredictionService forModel(@NonNull String modelName, @NonNull SequencePredictor<ByteString> predictor,
+                                                     int maxBatchSize, long maxWaitMs) {
+        return new SequencePredictionService(modelName, new BatchingSequencePredictor<>(predictor, maxBatchSize, maxWaitMs,
+                TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void predict(Predict.PredictRequest request, StreamObserver<Predict.PredictResponse> responseObserver) {
+        if (!request.getModelSpec().getName().equals(modelName)) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Unknown model: " + request.getModelSpec().getName())
+                    .asRuntimeException());
+            return;
+        }
+        List<ByteString> examples;
+        try {
+            examples = examples(request);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            return;
+        }
+        if (examples.isEmpty()) {
+            responseObserver.onNext(response(request, Collections.emptyList()));
+            responseObserver.onCompleted();
+            return;
+        }
+        predictor.predictBatchAsync(examples).whenComplete((labels, error) -> {
+            if (null != error) {
+                Throwable cause = error instanceof CompletionException && null != error.getCause() ? error.getCause() : error;
+                Status status = cause instanceof RejectedExecutionException ? Status.UNAVAILABLE : Status.INTERNAL;
+                log.warn("Prediction of {} examples failed", examples.size(), cause);
+                responseObserver.onError(status.withDescription(cause.getMessage()).withCause(cause).asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(response(request, labels));
+            responseObserver.onCompleted();
+        });
+    }
+
+    private List<ByteString> examples(Predict.PredictRequest request) {
+        TensorProto input = request.getInputsMap().get(inputKey);
+        Preconditions.checkArgument(null != input, "Missing input: %s", inputKey);
+        Preconditions.checkArgument(input.getDtype() == DataType.DT_STRING, "Expected string input, got %s", input.getDtype());
+        for (String filter : request.getOutputFilterList()) {
+            Preconditions.checkArgument(filter.equals(outputKey), "Unknown output: %s", filter);
+        }
+        return input.getStringValList();
+    }
+
+    private Predict.PredictResponse response(Predict.PredictRequest request, List<List<String>> labels) {
+        int columns = labels.stream().mapToInt(List::size).max().orElse(0);
+        TensorProto.Builder output = TensorProto.newBuilder()
+                .setDtype(DataType.DT_STRING)
+                .setTensorShape(TensorShapeProto.newBuilder()
+                        .addDim(TensorShapeProto.Dim.newBuilder().setSize(labels.size()))
+                        .addDim(TensorShapeProto.Dim.newBuilder().setSize(columns)));
+        ByteString padding = ByteString.copyFromUtf8(paddingLabel);
+        for (List<String> row : labels) {
+            row.forEach(label -> output.addStringVal(ByteString.copyFromUtf8(label)));
+            for (int i = row.size(); i < columns; ++i) {
+                output.addStringVal(padding);
+            }
+        }
+        return Predict.PredictResponse.newBuilder()
+                .setModelSpec(Model.ModelSpec.newBuilder()
+                        .setName(modelName)
+                        .setSignatureName(request.getModelSpec().getSignatureName()))
+                .putOutputs(outputKey, output.build())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        predictor.close();
+    }
+
+    /**
+     * {@link SequencePredictor} over serialized sequence examples, delegating to {@link TensorflowModel#predictSerialized}.
+     */
+    private static class ExamplePredictor implements SequencePredictor<ByteString> {
+
+        private final TensorflowModel model;
+
+        private ExamplePredictor(TensorflowModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public List<List<String>> predictBatch(@NonNull List<ByteString> inputs) {
+            return model.predictSerialized(inputs);
+        }
+
+        @Override
+        public void close() {
+            model.close();
+        }
+
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 3) {
+            System.err.println("Usage: SequencePredictionService <model-dir> <model-name> <port>");
+            System.exit(1);
+        }
+        SequencePredictionService service = forModel(args[1], TensorflowModel.bertFromDirectory(args[0]),
+                MAX_BATCH_SIZE, MAX_WAIT_MS);
+        Server server = ServerBuilder.forPort(Integer.parseInt(args[2])).addService(service).build().start();
+        log.info("Serving {} on port {}", args[1], server.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.shutdown();
+            try {
+                server.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            service.close();
+        }));
+        server.awaitTermination();
+    }
+
+}
@@ -16,7 +16,9 @@
 
 package io.github.semlink.app;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import lombok.NonNull;
 
@@ -25,7 +27,7 @@ import lombok.NonNull;
  *
  * @author jgung
  */
-public interface SequencePredictor<T> {
+public interface SequencePredictor<T> extends AutoCloseable {
 
     /**
      * Predict labels for a given input sequence.
@@ -33,7 +35,9 @@ public interface SequencePredictor<T> {
      * @param input target input
      * @return list of labels
      */
-    List<String> predict(@NonNull T input);
+    default List<String> predict(@NonNull T input) {
+        return predictBatch(Collections.singletonList(input)).get(0);
+    }
 
     /**
      * Predict labels for a given batch of input sequences.
@@ -43,4 +47,38 @@ public interface SequencePredictor<T> {
      */
     List<List<String>> predictBatch(@NonNull List<T> inputs);
 
+    /**
+     * Predict labels for a given input sequence asynchronously.
+     *
+     * @param input target input
+     * @return future list of labels
+     */
+    default CompletableFuture<List<String>> predictAsync(@NonNull T input) {
+        return predictBatchAsync(Collections.singletonList(input)).thenApply(labels -> labels.get(0));
+    }
+
+    /**
+     * Predict labels for a given batch of input sequences asynchronously. By default, prediction runs on the calling thread and
+     * the returned future is already complete; implementations that queue or dispatch calls should override this.
+     *
+     * @param inputs input sequence batch
+     * @return future batched sequence labels
+     */
+    default CompletableFuture<List<List<String>>> predictBatchAsync(@NonNull List<T> inputs) {
+        CompletableFuture<List<List<String>>> result = new CompletableFuture<>();
+        try {
+            result.complete(predictBatch(inputs));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Release any resources held by this predictor.
+     */
+    @Override
+    default void close() {
+    }
+
 }
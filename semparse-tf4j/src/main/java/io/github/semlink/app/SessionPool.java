@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+
+/**
+ * Pool of sessions (e.g. loaded copies of a saved model) used to run concurrent inference. Each call leases a single session,
+ * chosen as the least loaded session in the pool (ties are broken round-robin).
+ * <p>
+ * In {@link Mode#SHARED} mode, a session may serve any number of concurrent calls, relying on the thread-safety of the
+ * underlying session (the TF C API documents {@code TF_SessionRun} as thread-safe). In {@link Mode#EXCLUSIVE} mode, each session
+ * serves at most one call at a time, so at most {@link #size()} calls run concurrently and further calls block.
+ *
+ * @param <T> session type
+ * @author jgung
+ */
+public class SessionPool<T> implements AutoCloseable {
+
+    public enum Mode {
+        SHARED,
+        EXCLUSIVE
+    }
+
+    private final List<Slot<T>> slots;
+    @Getter
+    @Accessors(fluent = true)
+    private final Mode mode;
+    private final Consumer<T> closer;
+    private final Semaphore permits;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public SessionPool(@NonNull List<T> sessions, @NonNull Mode mode, @NonNull Consumer<T> closer) {
+        Preconditions.checkArgument(!sessions.isEmpty(), "Session pool requires at least one session");
+        this.slots = new ArrayList<>();
+        for (T session : sessions) {
+            slots.add(new Slot<>(session));
+        }
+        this.mode = mode;
+        this.closer = closer;
+        this.permits = new Semaphore(sessions.size(), true);
+    }
+
+    /**
+     * Initialize a pool of a given size from a session factory.
+     *
+     * @param factory session factory, called once per pooled session
+     * @param size    number of sessions in the pool
+     * @param mode    concurrency mode
+     * @param closer  function used to release sessions when the pool is closed
+     * @param <T>     session type
+     * @return session pool
+     */
+    public static <T> SessionPool<T> create(@NonNull Supplier<T> factory, int size, @NonNull Mode mode,
+                                            @NonNull Consumer<T> closer) {
+        Preconditions.checkArgument(size > 0, "Session pool size must be positive: %s", size);
+        List<T> sessions = new ArrayList<>();
+        try {
+            for (int i = 0; i < size; ++i) {
+                sessions.add(factory.get());
+            }
+        } catch (RuntimeException | Error e) {
+            // release sessions loaded before the failure
+            for (T session : sessions) {
+                try {
+                    closer.accept(session);
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return new SessionPool<>(sessions, mode, closer);
+    }
+
+    /**
+     * Lease a session from this pool, blocking in {@link Mode#EXCLUSIVE} mode until a session is free. The returned lease must be
+     * closed to return the session to the pool.
+     *
+     * @return session lease
+     * @throws IllegalStateException if the pool has been closed, including while waiting for a session
+     */
+    public Lease<T> acquire() {
+        Preconditions.checkState(!closed.get(), "Session pool has been closed");
+        Slot<T> slot = mode == Mode.SHARED ? claimShared() : claimExclusive();
+        if (closed.get()) {
+            // closed while claiming, the session may already be closed or will be closed on release
+            release(slot);
+            throw new IllegalStateException("Session pool has been closed");
+        }
+        return new Lease<>(this, slot);
+    }
+
+    private Slot<T> claimShared() {
+        Slot<T> slot = leastLoaded();
+        slot.inFlight.incrementAndGet();
+        return slot;
+    }
+
+    private Slot<T> claimExclusive() {
+        permits.acquireUninterruptibly();
+        // a permit guarantees at least one idle slot, but other threads may race us to claim it
+        while (true) {
+            if (closed.get()) {
+                // permits are released on close to wake waiting threads, and may not be backed by an idle slot
+                permits.release();
+                throw new IllegalStateException("Session pool has been closed");
+            }
+            int start = Math.floorMod(next.getAndIncrement(), slots.size());
+            for (int i = 0; i < slots.size(); ++i) {
+                Slot<T> slot = slots.get((start + i) % slots.size());
+                if (slot.inFlight.compareAndSet(0, 1)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the first session in the pool without leasing it (e.g. to inspect the graph of a loaded model).
+     */
+    public T first() {
+        return slots.get(0).session;
+    }
+
+    /**
+     * Number of sessions in this pool.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Total number of calls currently holding a session lease.
+     */
+    public int inFlight() {
+        return slots.stream().mapToInt(slot -> slot.inFlight.get()).sum();
+    }
+
+    /**
+     * Close this pool, refusing new leases. Idle sessions are closed immediately, and sessions with calls in flight are closed
+     * once their last lease is released.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            if (mode == Mode.EXCLUSIVE) {
+                // wake threads waiting for a session
+                permits.release(slots.size());
+            }
+            slots.forEach(this::closeIfIdle);
+        }
+    }
+
+    private void closeIfIdle(Slot<T> slot) {
+        if (slot.inFlight.get() == 0 && slot.closed.compareAndSet(false, true)) {
+            closer.accept(slot.session);
+        }
+    }
+
+    private Slot<T> leastLoaded() {
+        int start = Math.floorMod(next.getAndIncrement(), slots.size());
+        Slot<T> best = slots.get(start);
+        for (int i = 1; i < slots.size(); ++i) {
+            Slot<T> slot = slots.get((start + i) % slots.size());
+            if (slot.inFlight.get() < best.inFlight.get()) {
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    private void release(Slot<T> slot) {
+        slot.inFlight.decrementAndGet();
+        if (mode == Mode.EXCLUSIVE) {
+            permits.release();
+        }
+        if (closed.get()) {
+            closeIfIdle(slot);
+        }
+    }
+
+    private static class Slot<T> {
+
+        private final T session;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Slot(T session) {
+            this.session = session;
+        }
+
+    }
+
+    /**
+     * Lease on a single pooled session, returned to the pool on {@link #close()}.
+     *
+     * @param <T> session type
+     */
+    public static class Lease<T> implements AutoCloseable {
+
+        private final SessionPool<T> pool;
+        private final Slot<T> slot;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(SessionPool<T> pool, Slot<T> slot) {
+            this.pool = pool;
+            this.slot = slot;
+        }
+
+        /**
+         * The leased session.
+         */
+        public T get() {
+            return slot.session;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                pool.release(slot);
+            }
+        }
+
+    }
+
+}
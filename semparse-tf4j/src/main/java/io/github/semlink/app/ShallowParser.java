@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,7 +42,7 @@ import static io.github.semlink.app.ShallowParserUtils.tags2Spans;
 @AllArgsConstructor
 public class ShallowParser implements IShallowParser<IToken, ITokenSequence> {
 
-    private TensorflowModel predictor;
+    private SequencePredictor<HasFields> predictor;
     private Function<ITokenSequence, HasFields> featureExtractor;
 
     @Override
@@ -55,7 +56,18 @@ public class ShallowParser implements IShallowParser<IToken, ITokenSequence> {
                 .map(featureExtractor)
                 .collect(Collectors.toList());
 
-        List<List<String>> labels = predictor.predictBatch(features);
+        return chunk(sequence, predictor.predictBatch(features));
+    }
+
+    @Override
+    public CompletableFuture<List<Chunking<String>>> shallowParseBatchAsync(@NonNull List<ITokenSequence> sequence) {
+        List<HasFields> features = sequence.stream()
+                .map(featureExtractor)
+                .collect(Collectors.toList());
+        return predictor.predictBatchAsync(features).thenApply(labels -> chunk(sequence, labels));
+    }
+
+    private static List<Chunking<String>> chunk(List<ITokenSequence> sequence, List<List<String>> labels) {
         Preconditions.checkState(labels.size() == sequence.size(),
                 "Predictor produced an unexpected number of batches: %d vs. %d", labels.size(), sequence.size());
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import org.tensorflow.example.SequenceExample;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.semlink.tensor.TFRecordReader;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams sequence examples from TFRecord shards written by {@link SequenceExampleShardWriter} through a predictor over serialized
+ * examples, such as {@link TensorflowModel#predictSerialized}, writing one tab-separated line per example: sentence ID, predicate
+ * index, and space-separated labels.
+ * <p>
+ * Usage: {@code TFRecordScorer <model-dir> <output-file> <shard>...}
+ *
+ * @author jgung
+ */
+@Slf4j
+public class TFRecordScorer {
+
+    private final SequencePredictor<ByteString> predictor;
+    private final int batchSize;
+
+    /**
+     * Initialize a scorer.
+     *
+     * @param predictor predictor over serialized sequence examples, fed records exactly as read from shards
+     * @param batchSize number of examples per prediction call
+     */
+    public TFRecordScorer(@NonNull SequencePredictor<ByteString> predictor, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive: %s", batchSize);
+        this.predictor = predictor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Score every example of the given shards, in order.
+     *
+     * @param shards shard paths
+     * @param output output for scored labels
+     * @return number of scored examples
+     */
+    public long score(@NonNull List<String> shards, @NonNull Writer output) throws IOException {
+        long scored = 0;
+        List<ByteString> batch = new ArrayList<>(batchSize);
+        for (String shard : shards) {
+            try (TFRecordReader reader = new TFRecordReader(shard)) {
+                byte[] record;
+                while (null != (record = reader.read())) {
+                    // each record is freshly allocated and never modified, so it can be wrapped without copying
+                    batch.add(UnsafeByteOperations.unsafeWrap(record));
+                    if (batch.size() == batchSize) {
+                        scored += score(batch, output);
+                    }
+                }
+            }
+            log.info("Scored {} ({} examples so far)", shard, scored + batch.size());
+        }
+        scored += score(batch, output);
+        output.flush();
+        return scored;
+    }
+
+    private int score(List<ByteString> batch, Writer output) throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<List<String>> labels = predictor.predictBatch(batch);
+        Preconditions.checkState(labels.size() == batch.size(),
+                "Predictor produced an unexpected number of batches: %d vs. %d", labels.size(), batch.size());
+        for (int i = 0; i < batch.size(); ++i) {
+            SequenceExample example = SequenceExample.parseFrom(batch.get(i));
+            output.write(SequenceExampleShardWriter.sentenceId(example));
+            output.write('\t');
+            output.write(String.valueOf(SequenceExampleShardWriter.predicateIndex(example)));
+            output.write('\t');
+            output.write(String.join(" ", labels.get(i)));
+            output.write('\n');
+        }
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: TFRecordScorer <model-dir> <output-file> <shard>...");
+            System.exit(1);
+        }
+        String modelDir = args[0];
+        List<String> shards = Arrays.asList(args).subList(2, args.length);
+        // BERT models ship their WordPiece vocabulary as a saved model asset
+        boolean bert = Files.exists(Paths.get(modelDir, "model", "assets", "vocab.txt"));
+        try (TensorflowModel model = bert ? TensorflowModel.bertFromDirectory(modelDir) : TensorflowModel.fromDirectory(modelDir);
+             Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8))) {
+            long scored = new TFRecordScorer(model::predictSerialized, 64).score(shards, output);
+            log.info("Scored {} examples from {} shards", scored, shards.size());
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.tensorflow.SavedModelBundle;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.github.semlink.extractor.BertSrlExampleExtractor;
+import io.github.semlink.extractor.BertSrlInput;
+import io.github.semlink.tensor.BertFeeds;
+import io.github.semlink.tensor.LabelTable;
+import io.github.semlink.tensor.StringTensorArena;
+import io.github.semlink.tensor.TensorList;
+import io.github.semlink.tensor.TensorTracker;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import static io.github.semlink.tensor.Tensors.toLabelIds;
+
+/**
+ * {@link InferenceEngine} running a Tensorflow saved model over a {@link SessionPool} of one or more loaded copies of the
+ * model. Inputs are fed as {@link BertFeeds numeric BERT inputs} when the model is exported with them, and otherwise serialized
+ * as sequence examples to the model's serialized example input.
+ *
+ * @author jgung
+ */
+@Slf4j
+public class TensorflowEngine implements InferenceEngine {
+
+    private final SessionPool<SavedModelBundle> sessions;
+    private final String fetchName;
+    // numeric feeds, or null when feeding serialized examples
+    private final BertFeeds feeds;
+    private final BertSrlExampleExtractor exampleWriter;
+    private final String inputName;
+
+    /**
+     * Tracker accounting for native memory of input and output tensors.
+     */
+    @Setter
+    @NonNull
+    @Accessors(fluent = true)
+    private TensorTracker tracker = TensorTracker.forModel(TensorflowModel.DEFAULT_TRACKER);
+
+    /**
+     * Initialize an engine feeding numeric BERT inputs.
+     *
+     * @param sessions  loaded sessions
+     * @param feeds     numeric input tensor names, as discovered from the model signature
+     * @param fetchName name of the label output
+     */
+    public TensorflowEngine(@NonNull SessionPool<SavedModelBundle> sessions, @NonNull BertFeeds feeds,
+                            @NonNull String fetchName) {
+        this.sessions = sessions;
+        this.fetchName = fetchName;
+        this.feeds = feeds;
+        this.exampleWriter = null;
+        this.inputName = null;
+    }
+
+    /**
+     * Initialize an engine feeding inputs serialized as sequence examples, for models exported without numeric BERT inputs.
+     *
+     * @param sessions      loaded sessions
+     * @param exampleWriter extractor used to serialize inputs
+     * @param inputName     name of the serialized example input
+     * @param fetchName     name of the label output
+     */
+    public TensorflowEngine(@NonNull SessionPool<SavedModelBundle> sessions, @NonNull BertSrlExampleExtractor exampleWriter,
+                            @NonNull String inputName, @NonNull String fetchName) {
+        this.sessions = sessions;
+        this.fetchName = fetchName;
+        this.feeds = null;
+        this.exampleWriter = exampleWriter;
+        this.inputName = inputName;
+    }
+
+    /**
+     * Load a saved model, feeding numeric BERT inputs when its signature accepts them, and serialized sequence examples
+     * otherwise.
+     *
+     * @param modelDir      model directory, containing the saved model in a {@code model} subdirectory
+     * @param profile       execution profile
+     * @param exampleWriter extractor used to serialize inputs to models without numeric BERT inputs
+     * @return loaded engine
+     */
+    public static TensorflowEngine fromDirectory(@NonNull String modelDir, @NonNull ExecutionProfile profile,
+                                                 @NonNull BertSrlExampleExtractor exampleWriter) {
+        SessionPool<SavedModelBundle> sessions = TensorflowModel.loadSessions(modelDir, profile);
+        Optional<BertFeeds> feeds = BertFeeds.discover(sessions.first().metaGraphDef());
+        if (!feeds.isPresent()) {
+            log.info("Saved model at {} does not accept numeric BERT inputs, feeding serialized sequence examples", modelDir);
+            return new TensorflowEngine(sessions, exampleWriter, TensorflowModel.OP_NAME, TensorflowModel.FETCH_NAME);
+        }
+        return new TensorflowEngine(sessions, feeds.get(), TensorflowModel.FETCH_NAME);
+    }
+
+    @Override
+    public List<int[]> run(@NonNull List<BertSrlInput> inputs, @NonNull LabelTable labels, int ignoreId) {
+        if (null == feeds) {
+            return runSerialized(inputs, labels, ignoreId);
+        }
+        try (TensorList inputTensors = tracker.track(feeds.createTensors(inputs));
+             SessionPool.Lease<SavedModelBundle> lease = sessions.acquire();
+             TensorList results = tracker.track(feeds.feed(lease.get().session().runner(), inputTensors)
+                     .fetch(fetchName)
+                     .run())) {
+            return toLabelIds(results.get(0), labels, ignoreId);
+        }
+    }
+
+    private List<int[]> runSerialized(List<BertSrlInput> inputs, LabelTable labels, int ignoreId) {
+        // serialize examples back to back into this thread's arena, fed to the model as a single string tensor
+        StringTensorArena arena = StringTensorArena.local().reset(inputs.size());
+        for (BertSrlInput input : inputs) {
+            exampleWriter.writeTo(input, arena);
+        }
+        try (TensorList inputTensors = tracker.track(arena.toTensor());
+             SessionPool.Lease<SavedModelBundle> lease = sessions.acquire();
+             TensorList results = tracker.track(lease.get().session().runner()
+                     .feed(inputName, inputTensors.get(0))
+                     .fetch(fetchName)
+                     .run())) {
+            return toLabelIds(results.get(0), labels, ignoreId);
+        }
+    }
+
+    @Override
+    public int concurrency() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        sessions.close();
+    }
+
+}
@@ -16,109 +16,430 @@
 
 package io.github.semlink.app;
 
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+
 import org.tensorflow.SavedModelBundle;
-import org.tensorflow.Session;
 import org.tensorflow.Tensor;
-import org.tensorflow.example.SequenceExample;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
+import io.github.semlink.app.SessionPool.Mode;
 import io.github.semlink.extractor.BertSrlExampleExtractor;
+import io.github.semlink.extractor.BertSrlInput;
 import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.extractor.WireSequenceExample;
 import io.github.semlink.extractor.config.ConfigSpec;
 import io.github.semlink.extractor.config.Extractors;
+import io.github.semlink.tensor.BertFeeds;
+import io.github.semlink.tensor.LabelTable;
+import io.github.semlink.tensor.ScoredLabelIds;
+import io.github.semlink.tensor.StringTensorArena;
 import io.github.semlink.tensor.TensorList;
+import io.github.semlink.tensor.TensorTracker;
 import io.github.semlink.type.HasFields;
-import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 
-import static io.github.semlink.tensor.Tensors.batchExamples;
-import static io.github.semlink.tensor.Tensors.toStringLists;
+import static io.github.semlink.tensor.Tensors.toLabelIds;
+import static io.github.semlink.tensor.Tensors.toScoredLabelIds;
 
 /**
- * Tensorflow sequence prediction model.
+ * Tensorflow sequence prediction model. Concurrent calls are dispatched over a {@link SessionPool} of one or more loaded copies
+ * of the saved model.
  *
  * @author jgung
  */
-@AllArgsConstructor
-public class TensorflowModel implements AutoCloseable, SequencePredictor<HasFields> {
+public class TensorflowModel implements AutoCloseable, ScoredSequencePredictor<HasFields> {
 
-    private static final String OP_NAME = "input_example_tensor";
-    private static final String FETCH_NAME = "gold/labels";
+    static final String OP_NAME = "input_example_tensor";
+    static final String FETCH_NAME = "gold/labels";
     private static final String IGNORE_LABEL = "X";
+    private static final String SERVE_TAG = "serve";
+    private static final String LENGTH_KEY = "len";
+    static final String DEFAULT_TRACKER = "default";
 
     private SequenceExampleExtractor featureExtractor;
-    private SavedModelBundle model;
+    private SessionPool<SavedModelBundle> sessions;
 
     private String inputName;
     private String fetchName;
 
+    /**
+     * Interned output labels, with the ignored label at ID 0.
+     */
+    @Getter
+    @Accessors(fluent = true)
+    private final LabelTable labels = new LabelTable(IGNORE_LABEL);
+    private final int ignoreId = labels.id(IGNORE_LABEL);
+
+    /**
+     * Optional planner used to split large batches into length-bucketed sub-batches.
+     */
+    @Setter
+    @Accessors(fluent = true)
+    private BatchPlanner batchPlanner;
+    /**
+     * Optional executor used to run planned sub-batches in parallel.
+     */
+    @Setter
+    @Accessors(fluent = true)
+    private Executor bucketExecutor;
+    /**
+     * Optional name of a float output holding the confidence of each predicted label, such as its marginal probability.
+     */
+    @Setter
+    @Accessors(fluent = true)
+    private String confidenceName;
+    /**
+     * Tracker accounting for native memory of input and output tensors.
+     */
+    private TensorTracker tracker = TensorTracker.forModel(DEFAULT_TRACKER);
+    /**
+     * Engine feeding numeric BERT inputs, used in place of the serialized example input when present.
+     */
+    private TensorflowEngine engine;
+
+    public TensorflowModel(@NonNull SequenceExampleExtractor featureExtractor, @NonNull SessionPool<SavedModelBundle> sessions,
+                           @NonNull String inputName, @NonNull String fetchName) {
+        this.featureExtractor = featureExtractor;
+        this.sessions = sessions;
+        this.inputName = inputName;
+        this.fetchName = fetchName;
+    }
+
+    public TensorflowModel(@NonNull SequenceExampleExtractor featureExtractor, @NonNull SessionPool<SavedModelBundle> sessions) {
+        this(featureExtractor, sessions, OP_NAME, FETCH_NAME);
+    }
+
     public TensorflowModel(@NonNull SequenceExampleExtractor featureExtractor, @NonNull SavedModelBundle model) {
-        this(featureExtractor, model, OP_NAME, FETCH_NAME);
+        this(featureExtractor, new SessionPool<>(Collections.singletonList(model), Mode.EXCLUSIVE, SavedModelBundle::close));
     }
 
     @Override
-    public List<String> predict(@NonNull HasFields input) {
-        return predictBatch(Collections.singletonList(input)).get(0);
+    public List<List<String>> predictBatch(@NonNull List<HasFields> inputs) {
+        List<List<String>> result = new ArrayList<>(inputs.size());
+        for (int[] ids : predictBatchIds(inputs)) {
+            List<String> row = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                row.add(labels.label(id));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Predict labels for serialized sequence examples, such as examples received in a request or read back from TFRecord shards,
+     * which are copied into the input tensor without being parsed. Examples are always fed serialized, even to models accepting numeric BERT inputs.
+     *
+     * @param sequenceExamples serialized sequence examples, extracted with this model's feature extractor
+     * @return batched sequence labels
+     */
+    public List<List<String>> predictSerialized(@NonNull List<ByteString> sequenceExamples) {
+        List<List<String>> result = new ArrayList<>(sequenceExamples.size());
+        for (int[] ids : predictPlanned(sequenceExamples, example -> WireSequenceExample.length(example, LENGTH_KEY),
+                this::runSerialized)) {
+            List<String> row = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                row.add(labels.label(id));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Predict labels for a large batch in chunks, overlapping feature extraction, inference and decoding of successive chunks on
+     * a given executor (see {@link BatchPipeline}). Each chunk is run as a single session call, without batch planning.
+     *
+     * @param inputs    input sequence batch
+     * @param chunkSize number of inputs per session call
+     * @param executor  executor with at least three threads
+     * @return batched sequence labels, in input order
+     */
+    public List<List<String>> predictBatchPipelined(@NonNull List<HasFields> inputs, int chunkSize,
+                                                    @NonNull Executor executor) {
+        List<List<String>> result = new ArrayList<>(inputs.size());
+        for (int[] ids : predictBatchIdsPipelined(inputs, chunkSize, executor)) {
+            List<String> row = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                row.add(labels.label(id));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Predict label IDs for a large batch in chunks, overlapping feature extraction, inference and decoding of successive chunks.
+     *
+     * @see #predictBatchPipelined(List, int, Executor)
+     */
+    public List<int[]> predictBatchIdsPipelined(@NonNull List<HasFields> inputs, int chunkSize, @NonNull Executor executor) {
+        if (null != engine) {
+            BertSrlExampleExtractor bertExtractor = (BertSrlExampleExtractor) featureExtractor;
+            // engines decode their outputs within the inference call
+            return new BatchPipeline<HasFields, List<BertSrlInput>, List<int[]>, int[]>(
+                    chunk -> chunk.stream().map(bertExtractor::extractInput).collect(Collectors.toList()),
+                    chunk -> engine.run(chunk, labels, ignoreId),
+                    Function.identity())
+                    .run(inputs, chunkSize, executor);
+        }
+        return new BatchPipeline<HasFields, List<byte[]>, TensorList, int[]>(
+                chunk -> chunk.stream().map(featureExtractor::extractBytes).collect(Collectors.toList()),
+                this::infer,
+                results -> {
+                    try (TensorList closed = results) {
+                        return decode(closed);
+                    }
+                })
+                .run(inputs, chunkSize, executor);
     }
 
     @Override
-    public List<List<String>> predictBatch(@NonNull List<HasFields> inputs) {
+    public List<int[]> predictBatchIds(@NonNull List<HasFields> inputs) {
+        if (null != engine) {
+            BertSrlExampleExtractor bertExtractor = (BertSrlExampleExtractor) featureExtractor;
+            List<BertSrlInput> bertInputs = inputs.stream()
+                    .map(bertExtractor::extractInput)
+                    .collect(Collectors.toList());
+            return predictPlanned(bertInputs, BertSrlInput::length, batch -> engine.run(batch, labels, ignoreId));
+        }
+
+        if (null == batchPlanner) {
+            // serialize examples back to back into this thread's arena, fed to the model as a single string tensor
+            StringTensorArena arena = StringTensorArena.local().reset(inputs.size());
+            for (HasFields input : inputs) {
+                featureExtractor.extractTo(input, arena);
+            }
+            try (TensorList results = infer(arena.toTensor())) {
+                return decode(results);
+            }
+        }
+        List<byte[]> sequenceExamples = inputs.stream()
+                .map(featureExtractor::extractBytes)
+                .collect(Collectors.toList());
+        return batchPlanner.run(sequenceExamples, TensorflowModel::length, this::run, bucketExecutor);
+    }
 
-        List<SequenceExample> sequenceExamples = inputs.stream()
-                .map(featureExtractor::extractSequence)
+    /**
+     * Predict label IDs along with their confidences. Requires a {@link #confidenceName(String) confidence output}, and is only
+     * supported for models fed serialized sequence examples.
+     */
+    @Override
+    public List<ScoredLabelIds> predictBatchScored(@NonNull List<HasFields> inputs) {
+        Preconditions.checkState(null != confidenceName, "No confidence output configured for this model");
+        Preconditions.checkState(null == engine, "Confidences are not supported with numeric BERT inputs");
+        List<byte[]> sequenceExamples = inputs.stream()
+                .map(featureExtractor::extractBytes)
                 .collect(Collectors.toList());
+        if (null == batchPlanner) {
+            return runScored(sequenceExamples);
+        }
+        return batchPlanner.run(sequenceExamples, TensorflowModel::length, this::runScored, bucketExecutor);
+    }
 
-        try (Tensor<?> inputTensor = Tensor.create(batchExamples(sequenceExamples), String.class)) {
-            Session.Runner runner = model.session().runner()
-                    .feed(inputName, inputTensor)
-                    .fetch(fetchName);
-            TensorList results;
+    /**
+     * Feed numeric BERT inputs directly instead of serialized sequence examples. Requires a {@link BertSrlExampleExtractor}.
+     *
+     * @param bertFeeds numeric input tensor names, as discovered from the model signature
+     * @return this model
+     */
+    public TensorflowModel bertFeeds(@NonNull BertFeeds bertFeeds) {
+        Preconditions.checkState(featureExtractor instanceof BertSrlExampleExtractor,
+                "Numeric BERT inputs require a BERT feature extractor");
+        this.engine = new TensorflowEngine(sessions, bertFeeds, fetchName).tracker(tracker);
+        return this;
+    }
 
-            // TODO: figure out why Session is not thread safe, fix, unsynchronize
-            synchronized (this) {
-                results = TensorList.of(runner.run());
-            }
+    /**
+     * Set the tracker accounting for native memory of input and output tensors.
+     *
+     * @param tracker tensor tracker
+     * @return this model
+     */
+    public TensorflowModel tracker(@NonNull TensorTracker tracker) {
+        this.tracker = tracker;
+        if (null != engine) {
+            engine.tracker(tracker);
+        }
+        return this;
+    }
 
-            List<List<String>> result = toStringLists(results.get(0)).stream()
-                    .map(labels -> labels.stream().filter(l -> !l.equals(IGNORE_LABEL)).collect(Collectors.toList()))
-                    .collect(Collectors.toList());
+    /**
+     * Create a warm-up for this model, making concurrent calls so that every loaded session is warmed up.
+     *
+     * @param inputFactory function producing a synthetic input of a given sequence length
+     * @return model warm-up
+     */
+    public ModelWarmup<HasFields> warmup(@NonNull IntFunction<HasFields> inputFactory) {
+        return new ModelWarmup<>(this, inputFactory).concurrency(sessions.size());
+    }
 
-            results.close();
-            return result;
+    private <F> List<int[]> predictPlanned(List<F> features, ToIntFunction<F> length, Function<List<F>, List<int[]>> runner) {
+        if (null == batchPlanner) {
+            return runner.apply(features);
         }
+        return batchPlanner.run(features, length, runner, bucketExecutor);
+    }
+
+    private List<int[]> run(List<byte[]> sequenceExamples) {
+        try (TensorList results = infer(sequenceExamples)) {
+            return decode(results);
+        }
+    }
+
+    private List<int[]> runSerialized(List<ByteString> sequenceExamples) {
+        StringTensorArena arena = StringTensorArena.local().reset(sequenceExamples.size());
+        sequenceExamples.forEach(arena::add);
+        try (TensorList results = infer(arena.toTensor())) {
+            return decode(results);
+        }
+    }
+
+    private TensorList infer(List<byte[]> sequenceExamples) {
+        return infer(toTensor(sequenceExamples));
+    }
+
+    private TensorList infer(Tensor<String> sequenceExamples) {
+        try (TensorList inputTensors = tracker.track(sequenceExamples);
+             SessionPool.Lease<SavedModelBundle> lease = sessions.acquire()) {
+            return tracker.track(lease.get().session().runner()
+                    .feed(inputName, inputTensors.get(0))
+                    .fetch(fetchName)
+                    .run());
+        }
+    }
+
+    private List<ScoredLabelIds> runScored(List<byte[]> sequenceExamples) {
+        try (TensorList inputTensors = tracker.track(toTensor(sequenceExamples));
+             SessionPool.Lease<SavedModelBundle> lease = sessions.acquire();
+             TensorList results = tracker.track(lease.get().session().runner()
+                     .feed(inputName, inputTensors.get(0))
+                     .fetch(fetchName)
+                     .fetch(confidenceName)
+                     .run())) {
+            return toScoredLabelIds(results.get(0), results.get(1), labels, ignoreId);
+        }
+    }
+
+    private static Tensor<String> toTensor(List<byte[]> sequenceExamples) {
+        return StringTensorArena.local().reset(sequenceExamples.size()).addAll(sequenceExamples).toTensor();
+    }
+
+    private List<int[]> decode(TensorList results) {
+        return toLabelIds(results.get(0), labels, ignoreId);
+    }
+
+    /**
+     * Length of an extracted example, as used for padding (the number of WordPiece tokens for BERT models).
+     */
+    private static int length(byte[] example) {
+        return WireSequenceExample.length(example, LENGTH_KEY);
     }
 
     @Override
     public void close() {
-        model.close();
+        sessions.close();
+    }
+
+    /**
+     * Load one or more copies of a saved model into a {@link SessionPool}, with session options of a given execution profile.
+     *
+     * @param modelDir saved model directory
+     * @param profile  execution profile, specifying the number of sessions, their concurrency mode and threading options
+     * @return session pool
+     */
+    public static SessionPool<SavedModelBundle> loadSessions(@NonNull String modelDir, @NonNull ExecutionProfile profile) {
+        String path = Paths.get(modelDir, "model").toString();
+        byte[] configProto = profile.toConfigProto();
+        return SessionPool.create(() -> SavedModelBundle.loader(path)
+                .withTags(SERVE_TAG)
+                .withConfigProto(configProto)
+                .load(), profile.sessions(), profile.mode(), SavedModelBundle::close);
+    }
+
+    /**
+     * Load one or more copies of a saved model into a {@link SessionPool}.
+     *
+     * @param modelDir saved model directory
+     * @param poolSize number of sessions (copies of the model) to load
+     * @param mode     concurrency mode of loaded sessions
+     * @return session pool
+     */
+    public static SessionPool<SavedModelBundle> loadSessions(@NonNull String modelDir, int poolSize, @NonNull Mode mode) {
+        return loadSessions(modelDir, new ExecutionProfile().sessions(poolSize).mode(mode));
+    }
+
+    public static TensorflowModel fromDirectory(@NonNull String modelDir, @NonNull SequenceExampleExtractor featureExtractor,
+                                                @NonNull ExecutionProfile profile) {
+        return new TensorflowModel(featureExtractor, loadSessions(modelDir, profile));
+    }
+
+    public static TensorflowModel fromDirectory(@NonNull String modelDir, @NonNull SequenceExampleExtractor featureExtractor,
+                                                int poolSize, @NonNull Mode mode) {
+        return new TensorflowModel(featureExtractor, loadSessions(modelDir, poolSize, mode));
     }
 
     public static TensorflowModel fromDirectory(@NonNull String modelDir, @NonNull SequenceExampleExtractor featureExtractor) {
-        SavedModelBundle model = SavedModelBundle.load(Paths.get(modelDir, "model").toString(), "serve");
-        return new TensorflowModel(featureExtractor, model);
+        return fromDirectory(modelDir, featureExtractor, 1, Mode.EXCLUSIVE);
     }
 
-    public static TensorflowModel fromDirectory(@NonNull String modelDir) {
+    public static TensorflowModel fromDirectory(@NonNull String modelDir, @NonNull ExecutionProfile profile) {
         try (FileInputStream in = new FileInputStream(Paths.get(modelDir, "config.json").toString())) {
             ConfigSpec spec = ConfigSpec.fromInputStream(in);
             SequenceExampleExtractor extractor = Extractors.createExtractor(spec.features(),
-                    Paths.get(modelDir, "vocab").toString(), true);
+                    Paths.get(modelDir, "vocab").toString(), true, true);
 
-            return fromDirectory(modelDir, extractor);
+            return fromDirectory(modelDir, extractor, profile);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static TensorflowModel fromDirectory(@NonNull String modelDir, int poolSize, @NonNull Mode mode) {
+        return fromDirectory(modelDir, new ExecutionProfile().sessions(poolSize).mode(mode));
+    }
+
+    public static TensorflowModel fromDirectory(@NonNull String modelDir) {
+        return fromDirectory(modelDir, 1, Mode.EXCLUSIVE);
+    }
+
+    public static TensorflowModel bertFromDirectory(@NonNull String modelDir, @NonNull ExecutionProfile profile) {
+        return bertFromDirectory(modelDir, profile, new WordPieceTokenizer(BertSrlModel.vocabularyPath(modelDir)));
+    }
+
+    /**
+     * Initialize a BERT model with a given tokenizer, such as a tokenizer shared with {@link WindowedSequencePredictor} so that
+     * both use the same memoized word pieces.
+     */
+    public static TensorflowModel bertFromDirectory(@NonNull String modelDir, @NonNull ExecutionProfile profile,
+                                                    @NonNull WordPieceTokenizer tokenizer) {
+        TensorflowModel model = fromDirectory(modelDir, new BertSrlExampleExtractor(tokenizer), profile);
+        // prefer numeric inputs when exported, falling back to serialized sequence examples
+        BertFeeds.discover(model.sessions.first().metaGraphDef()).ifPresent(model::bertFeeds);
+        return model;
+    }
+
+    public static TensorflowModel bertFromDirectory(@NonNull String modelDir, int poolSize, @NonNull Mode mode) {
+        return bertFromDirectory(modelDir, new ExecutionProfile().sessions(poolSize).mode(mode));
+    }
+
     public static TensorflowModel bertFromDirectory(@NonNull String modelDir) {
-        return fromDirectory(modelDir, new BertSrlExampleExtractor(
-                new WordPieceTokenizer(Paths.get(modelDir, "model", "assets", "vocab.txt").toString())));
+        return bertFromDirectory(modelDir, 1, Mode.EXCLUSIVE);
     }
 
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * {@link SequencePredictor} decorator capping the WordPiece length of inputs to a BERT SRL model. Inputs whose sentence and
+ * predicate segments exceed the cap are split into overlapping windows of words that each contain the predicate, starting from a
+ * window centered on the predicate and shifted left and right by a fixed stride. Windows from all inputs are predicted in a single
+ * batch, and each word takes its label from the window whose center is nearest. Words outside every window are labeled
+ * {@link #outsideLabel}.
+ *
+ * @author jgung
+ */
+@Accessors(fluent = true)
+public class WindowedSequencePredictor implements SequencePredictor<HasFields> {
+
+    // [CLS] sentence [SEP] predicate [SEP]
+    private static final int SPECIAL_TOKENS = 3;
+    private static final String BEGIN_PREFIX = "B-";
+    private static final String IN_PREFIX = "I-";
+
+    private final SequencePredictor<HasFields> predictor;
+    private final ToIntFunction<String> wordPieces;
+    private final int maxLength;
+    private final int stride;
+
+    @Setter
+    private String wordsKey = "word";
+    @Setter
+    private String predicateIndexKey = "predicate_index";
+    /**
+     * Word-aligned fields sliced along with words for each window.
+     */
+    @Setter
+    private List<String> sequenceKeys = Arrays.asList("word", "gold", "marker");
+    /**
+     * Label of words not covered by any window, i.e. too far from the predicate.
+     */
+    @Setter
+    private String outsideLabel = "O";
+
+    /**
+     * Initialize a windowed predictor.
+     *
+     * @param predictor  underlying BERT model
+     * @param wordPieces function counting the WordPiece tokens of a word for the model's tokenizer, such as
+     *                   {@link WordPieceTokenizer#countWordPieces(String)}
+     * @param maxLength  maximum number of WordPiece tokens of an input, including special tokens and the predicate segment
+     * @param stride     number of words between successive windows
+     */
+    public WindowedSequencePredictor(@NonNull SequencePredictor<HasFields> predictor, @NonNull ToIntFunction<String> wordPieces,
+                                     int maxLength, int stride) {
+        Preconditions.checkArgument(maxLength > SPECIAL_TOKENS, "Max length must exceed %s: %s", SPECIAL_TOKENS, maxLength);
+        Preconditions.checkArgument(stride > 0, "Stride must be positive: %s", stride);
+        this.predictor = predictor;
+        this.wordPieces = wordPieces;
+        this.maxLength = maxLength;
+        this.stride = stride;
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<HasFields> inputs) {
+        List<List<int[]>> windows = new ArrayList<>(inputs.size());
+        List<HasFields> batch = new ArrayList<>();
+        for (HasFields input : inputs) {
+            List<int[]> inputWindows = windows(input);
+            windows.add(inputWindows);
+            if (null == inputWindows) {
+                batch.add(input);
+                continue;
+            }
+            for (int[] window : inputWindows) {
+                batch.add(slice(input, window[0], window[1]));
+            }
+        }
+
+        List<List<String>> predicted = predictor.predictBatch(batch);
+        List<List<String>> result = new ArrayList<>(inputs.size());
+        int offset = 0;
+        for (int i = 0; i < inputs.size(); ++i) {
+            List<int[]> inputWindows = windows.get(i);
+            if (null == inputWindows) {
+                result.add(predicted.get(offset++));
+                continue;
+            }
+            List<String> words = inputs.get(i).field(wordsKey);
+            result.add(merge(words.size(), inputWindows, predicted.subList(offset, offset + inputWindows.size())));
+            offset += inputWindows.size();
+        }
+        return result;
+    }
+
+    /**
+     * Compute windows of a given input as {@code [start, end)} word ranges, or {@code null} if the input fits within the maximum
+     * length.
+     */
+    List<int[]> windows(HasFields input) {
+        List<String> words = input.field(wordsKey);
+        List<String> predicateIndices = input.field(predicateIndexKey);
+        int predicate = Integer.parseInt(predicateIndices.get(0));
+
+        int[] lengths = new int[words.size()];
+        int total = 0;
+        for (int i = 0; i < words.size(); ++i) {
+            lengths[i] = wordPieces.applyAsInt(words.get(i));
+            total += lengths[i];
+        }
+        int budget = maxLength - SPECIAL_TOKENS - lengths[predicate];
+        if (total <= budget) {
+            return null;
+        }
+
+        // grow a window centered on the predicate, alternating sides
+        int start = predicate;
+        int end = predicate + 1;
+        int used = lengths[predicate];
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            if (end < lengths.length && used + lengths[end] <= budget) {
+                used += lengths[end++];
+                grown = true;
+            }
+            if (start > 0 && used + lengths[start - 1] <= budget) {
+                used += lengths[--start];
+                grown = true;
+            }
+        }
+
+        List<int[]> windows = new ArrayList<>();
+        windows.add(new int[]{start, end});
+        // shift left while the words up to the predicate still fit
+        for (int left = start - stride; left + stride > 0; left -= stride) {
+            int[] window = fit(lengths, Math.max(0, left), budget);
+            if (window[1] <= predicate) {
+                break;
+            }
+            windows.add(window);
+        }
+        // shift right, keeping the predicate in each window
+        int last = end;
+        for (int right = start + stride; right <= predicate && last < lengths.length; right += stride) {
+            int[] window = fit(lengths, right, budget);
+            if (window[1] > last) {
+                windows.add(window);
+                last = window[1];
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Longest window starting at a given word that fits in a budget.
+     */
+    private static int[] fit(int[] lengths, int start, int budget) {
+        int used = 0;
+        int end = start;
+        while (end < lengths.length && used + lengths[end] <= budget) {
+            used += lengths[end++];
+        }
+        return new int[]{start, end};
+    }
+
+    private HasFields slice(HasFields input, int start, int end) {
+        Fields fields = new Fields();
+        for (String key : sequenceKeys) {
+            if (input.hasFields(key)) {
+                List<?> values = input.field(key);
+                fields.add(key, new ArrayList<>(values.subList(start, end)));
+            }
+        }
+        List<String> predicateIndices = input.field(predicateIndexKey);
+        int predicate = Integer.parseInt(predicateIndices.get(0));
+        fields.add(predicateIndexKey, Collections.singletonList(String.valueOf(predicate - start)));
+        return fields;
+    }
+
+    private List<String> merge(int length, List<int[]> windows, List<List<String>> labels) {
+        List<String> result = new ArrayList<>(length);
+        String previous = outsideLabel;
+        for (int i = 0; i < length; ++i) {
+            String label = outsideLabel;
+            double nearest = Double.MAX_VALUE;
+            for (int w = 0; w < windows.size(); ++w) {
+                int[] window = windows.get(w);
+                if (i < window[0] || i >= window[1]) {
+                    continue;
+                }
+                double distance = Math.abs(i - (window[0] + window[1] - 1) / 2.0);
+                if (distance < nearest) {
+                    nearest = distance;
+                    label = labels.get(w).get(i - window[0]);
+                }
+            }
+            // repair spans continued across a switch between windows
+            if (label.startsWith(IN_PREFIX) && !label.substring(IN_PREFIX.length()).equals(type(previous))) {
+                label = BEGIN_PREFIX + label.substring(IN_PREFIX.length());
+            }
+            result.add(label);
+            previous = label;
+        }
+        return result;
+    }
+
+    private static String type(String label) {
+        if (label.startsWith(BEGIN_PREFIX) || label.startsWith(IN_PREFIX)) {
+            return label.substring(BEGIN_PREFIX.length());
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        predictor.close();
+    }
+
+}
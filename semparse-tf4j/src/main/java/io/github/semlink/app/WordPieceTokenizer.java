@@ -16,6 +16,11 @@
 
 package io.github.semlink.app;
 
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -23,13 +28,17 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
+
+import io.github.semlink.extractor.MappedStringIndex;
+import io.github.semlink.extractor.StringIndex;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,9 +50,16 @@ import lombok.extern.slf4j.Slf4j;
  * @see <a href="https://arxiv.org/abs/1609.08144">https://arxiv.org/abs/1609.08144</a>
  */
 @Slf4j
-@AllArgsConstructor
 public class WordPieceTokenizer {
 
+    /**
+     * Default maximum number of words whose word piece IDs are memoized.
+     */
+    public static final long DEFAULT_CACHE_WORDS = 65536;
+
+    // scratch buffer of countWordPieces, grown to the longest text counted on each thread
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[64]);
+
     public static List<String> whitespaceTokenize(@NonNull String text) {
         text = text.trim();
         if (text.isEmpty()) {
@@ -74,16 +90,45 @@ public class WordPieceTokenizer {
         }
     }
 
-    private Map<String, Integer> vocabulary;
+    /**
+     * Read a wordpiece vocabulary index from a given path, preferring a compiled vocabulary on the file system (see
+     * {@link MappedStringIndex#find(String)}), and otherwise falling back to {@link #readVocabulary(String)}.
+     *
+     * @param path vocabulary path
+     * @return wordpiece vocabulary index
+     */
+    public static StringIndex readIndex(@NonNull String path) {
+        Optional<Path> compiled = MappedStringIndex.find(path);
+        if (compiled.isPresent()) {
+            return MappedStringIndex.open(compiled.get());
+        }
+        return StringIndex.of(readVocabulary(path));
+    }
+
+    private StringIndex vocabulary;
     private String unkToken;
     private int maxInputCharsPerWord;
+    private WordPieceTrie trie;
+    private Cache<String, int[]> cache;
+
+    public WordPieceTokenizer(StringIndex vocabulary, String unkToken, int maxInputCharsPerWord) {
+        this.vocabulary = vocabulary;
+        this.unkToken = unkToken;
+        this.maxInputCharsPerWord = maxInputCharsPerWord;
+        this.trie = new WordPieceTrie(vocabulary, unkToken, maxInputCharsPerWord);
+        cacheSize(DEFAULT_CACHE_WORDS);
+    }
+
+    public WordPieceTokenizer(Map<String, Integer> vocabulary, String unkToken, int maxInputCharsPerWord) {
+        this(StringIndex.of(vocabulary), unkToken, maxInputCharsPerWord);
+    }
 
     public WordPieceTokenizer(Map<String, Integer> vocabulary) {
         this(vocabulary, "[UNK]", 200);
     }
 
     public WordPieceTokenizer(@NonNull String path) {
-        this(readVocabulary(path));
+        this(readIndex(path), "[UNK]", 200);
     }
 
     /**
@@ -94,10 +139,110 @@ public class WordPieceTokenizer {
      */
     public List<Integer> convertTokensToIds(@NonNull List<String> tokens) {
         return tokens.stream()
-            .map(vocabulary::get)
+            .map(token -> {
+                int id = vocabulary.get(token);
+                return id < 0 ? null : id;
+            })
             .collect(Collectors.toList());
     }
 
+    /**
+     * Convert a list of word piece tokens to corresponding vocabulary IDs, without boxing.
+     *
+     * @param tokens word piece tokens
+     * @return vocabulary indices, or -1 for tokens not in the vocabulary
+     */
+    public int[] convertTokensToIdArray(@NonNull List<String> tokens) {
+        return vocabulary.get(tokens, -1);
+    }
+
+    /**
+     * Return the vocabulary ID of a given word piece, such as a special token.
+     *
+     * @param token word piece
+     * @return vocabulary index
+     */
+    public int id(@NonNull String token) {
+        int id = vocabulary.get(token);
+        if (id < 0) {
+            throw new IllegalArgumentException("Token is not in the vocabulary: " + token);
+        }
+        return id;
+    }
+
+    /**
+     * Tokenize input text directly into vocabulary IDs of its word pieces, written to a buffer. Produces the same IDs as
+     * {@link #convertTokensToIds(List) converting} the output of {@link #tokenize(String)}, without intermediate strings.
+     *
+     * @param text   input text, a single token or whitespace separated sentence
+     * @param buffer output buffer, with room for at least {@code text.length()} IDs past the offset
+     * @param offset index of first ID written in the buffer
+     * @return number of IDs written
+     * @see WordPieceTrie
+     */
+    public int tokenizeIds(@NonNull String text, @NonNull int[] buffer, int offset) {
+        if (null == cache) {
+            return trie.tokenize(text, buffer, offset);
+        }
+        int[] ids = cache.getIfPresent(text);
+        if (null == ids) {
+            int count = trie.tokenize(text, buffer, offset);
+            cache.put(text, Arrays.copyOfRange(buffer, offset, offset + count));
+            return count;
+        }
+        System.arraycopy(ids, 0, buffer, offset, ids.length);
+        return ids.length;
+    }
+
+    /**
+     * Count the word pieces of input text, as written by {@link #tokenizeIds(String, int[], int)}, without creating strings or
+     * output arrays. Counts of memoized texts cost a single hash lookup.
+     *
+     * @param text input text, a single token or whitespace separated sentence
+     * @return number of word pieces
+     */
+    public int countWordPieces(@NonNull String text) {
+        int[] ids = null == cache ? null : cache.getIfPresent(text);
+        if (null != ids) {
+            return ids.length;
+        }
+        int[] buffer = SCRATCH.get();
+        if (buffer.length < text.length()) {
+            buffer = new int[text.length()];
+            SCRATCH.set(buffer);
+        }
+        int count = trie.tokenize(text, buffer, 0);
+        if (null != cache) {
+            cache.put(text, Arrays.copyOf(buffer, count));
+        }
+        return count;
+    }
+
+    /**
+     * Set the maximum number of distinct texts (typically single words) whose IDs are memoized by
+     * {@link #tokenizeIds(String, int[], int)}, replacing any current cache. Word frequencies are Zipfian, so most lookups of a
+     * small cache are hits, costing a single hash lookup and copy. Reads do not lock, so the tokenizer can be shared by all
+     * threads.
+     *
+     * @param maxWords maximum number of cached words, or 0 to disable memoization
+     * @return this tokenizer
+     */
+    public WordPieceTokenizer cacheSize(long maxWords) {
+        Preconditions.checkArgument(maxWords >= 0, "Cache size must be non-negative: %s", maxWords);
+        this.cache = maxWords == 0 ? null : CacheBuilder.newBuilder()
+            .maximumSize(maxWords)
+            .recordStats()
+            .build();
+        return this;
+    }
+
+    /**
+     * Hit and miss statistics of memoized word piece IDs, all zero if memoization is disabled.
+     */
+    public CacheStats cacheStats() {
+        return null == cache ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
     /**
      * Tokenize input text into a list of word pieces based on the vocabulary.
      *
@@ -126,7 +271,7 @@ public class WordPieceTokenizer {
                     if (start > 0) {
                         substr = "##" + substr;
                     }
-                    if (vocabulary.containsKey(substr)) {
+                    if (vocabulary.contains(substr)) {
                         curSubstr = substr;
                         break;
                     }
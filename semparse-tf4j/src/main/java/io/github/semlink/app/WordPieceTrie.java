@@ -0,0 +1,327 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import io.github.semlink.extractor.MappedStringIndex;
+import io.github.semlink.extractor.StringIndex;
+import lombok.NonNull;
+
+/**
+ * WordPiece vocabulary compiled into a character trie, tokenizing by greedy longest match as {@link WordPieceTokenizer} does, but
+ * in a single pass over each word's characters and emitting vocabulary IDs directly into a caller-provided buffer, without
+ * allocating substrings or boxed IDs. Continuation pieces are matched from the {@code ##} node of the same trie.
+ * <p>
+ * Edges of each node are stored in sorted, flattened arrays and looked up by binary search. The arrays are read in place from a
+ * {@link MappedStringIndex compiled vocabulary} that includes them (see {@link MappedStringIndex#trie()}), and otherwise built on
+ * a direct buffer from the vocabulary.
+ *
+ * @author jgung
+ */
+public class WordPieceTrie {
+
+    private static final int ROOT = 0;
+    private static final String CONTINUATION_PREFIX = "##";
+
+    private final Nodes nodes;
+    private final int continuationRoot;
+    private final int unkId;
+    private final int maxInputCharsPerWord;
+
+    /**
+     * Flattened nodes and edges of a trie in a little-endian buffer, either built from a vocabulary or read from a section of a
+     * memory-mapped compiled vocabulary.
+     * <p>
+     * Layout, written by {@link #writeTo(ByteBuffer)}:
+     * <pre>
+     * header       node count, edge count                          (2 x int32)
+     * edge starts  index of the first edge of each node, and end   (int32 per node + 1)
+     * IDs          vocabulary ID of the piece ending at each node  (int32 per node, -1 if none)
+     * targets      target node of each edge                        (int32 per edge)
+     * labels       character of each edge, sorted within a node    (uint16 per edge)
+     * </pre>
+     */
+    public static final class Nodes {
+
+        private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+        // edges of node i are at [edgeStart[i], edgeStart[i + 1]), sorted by label
+        private final IntBuffer edgeStart;
+        private final IntBuffer ids;
+        private final IntBuffer edgeTargets;
+        private final CharBuffer edgeLabels;
+
+        private Nodes(IntBuffer edgeStart, IntBuffer ids, IntBuffer edgeTargets, CharBuffer edgeLabels) {
+            this.edgeStart = edgeStart;
+            this.ids = ids;
+            this.edgeTargets = edgeTargets;
+            this.edgeLabels = edgeLabels;
+        }
+
+        /**
+         * Build the trie of a vocabulary.
+         *
+         * @param vocabulary word piece vocabulary
+         * @return trie nodes
+         */
+        public static Nodes compile(@NonNull StringIndex vocabulary) {
+            List<TreeMap<Character, Integer>> children = new ArrayList<>();
+            List<Integer> nodeIds = new ArrayList<>();
+            children.add(new TreeMap<>());
+            nodeIds.add(-1);
+            vocabulary.forEach((piece, id) -> {
+                int node = ROOT;
+                for (char c : piece.toCharArray()) {
+                    Integer child = children.get(node).get(c);
+                    if (null == child) {
+                        child = children.size();
+                        children.get(node).put(c, child);
+                        children.add(new TreeMap<>());
+                        nodeIds.add(-1);
+                    }
+                    node = child;
+                }
+                nodeIds.set(node, id);
+            });
+
+            int edges = children.stream().mapToInt(TreeMap::size).sum();
+            int[] edgeStart = new int[children.size() + 1];
+            int[] ids = new int[children.size()];
+            int[] edgeTargets = new int[edges];
+            char[] edgeLabels = new char[edges];
+            int edge = 0;
+            for (int node = 0; node < children.size(); ++node) {
+                edgeStart[node] = edge;
+                for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+                    edgeLabels[edge] = child.getKey();
+                    edgeTargets[edge] = child.getValue();
+                    ++edge;
+                }
+                ids[node] = nodeIds.get(node);
+            }
+            edgeStart[children.size()] = edge;
+            // laid out off-heap as in a compiled vocabulary, so that lookups read a single buffer type
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes(ids.length, edges)).order(ByteOrder.LITTLE_ENDIAN);
+            new Nodes(IntBuffer.wrap(edgeStart), IntBuffer.wrap(ids), IntBuffer.wrap(edgeTargets), CharBuffer.wrap(edgeLabels))
+                    .writeTo(buffer);
+            buffer.flip();
+            return read(buffer);
+        }
+
+        /**
+         * Read trie nodes in place from a buffer, without copying them.
+         *
+         * @param buffer buffer starting with trie nodes, as written by {@link #writeTo(ByteBuffer)}
+         * @return trie nodes, backed by the buffer
+         */
+        public static Nodes read(@NonNull ByteBuffer buffer) {
+            ByteBuffer section = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            Preconditions.checkArgument(section.capacity() >= HEADER_BYTES, "Truncated word piece trie");
+            int nodes = section.getInt(0);
+            int edges = section.getInt(Integer.BYTES);
+            Preconditions.checkArgument(nodes > 0 && edges >= 0
+                    && bytes(nodes, edges) <= section.capacity(), "Corrupt word piece trie");
+            int offset = HEADER_BYTES;
+            IntBuffer edgeStart = slice(section, offset, (nodes + 1) * Integer.BYTES).asIntBuffer();
+            offset += (nodes + 1) * Integer.BYTES;
+            IntBuffer ids = slice(section, offset, nodes * Integer.BYTES).asIntBuffer();
+            offset += nodes * Integer.BYTES;
+            IntBuffer edgeTargets = slice(section, offset, edges * Integer.BYTES).asIntBuffer();
+            offset += edges * Integer.BYTES;
+            CharBuffer edgeLabels = slice(section, offset, edges * Character.BYTES).asCharBuffer();
+            return new Nodes(edgeStart, ids, edgeTargets, edgeLabels);
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset).limit(offset + length);
+            // slices are big-endian regardless of the original buffer's order
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static long bytes(long nodes, long edges) {
+            return HEADER_BYTES + Integer.BYTES * (2 * nodes + 1 + edges) + Character.BYTES * edges;
+        }
+
+        /**
+         * Number of bytes written by {@link #writeTo(ByteBuffer)}.
+         */
+        public int bytes() {
+            return (int) bytes(ids.limit(), edgeTargets.limit());
+        }
+
+        /**
+         * Write trie nodes at the position of a little-endian buffer.
+         *
+         * @param buffer output buffer, with at least {@link #bytes()} remaining
+         */
+        public void writeTo(@NonNull ByteBuffer buffer) {
+            Preconditions.checkArgument(buffer.order() == ByteOrder.LITTLE_ENDIAN, "Buffer must be little-endian");
+            buffer.putInt(ids.limit()).putInt(edgeTargets.limit());
+            for (int i = 0; i < edgeStart.limit(); ++i) {
+                buffer.putInt(edgeStart.get(i));
+            }
+            for (int i = 0; i < ids.limit(); ++i) {
+                buffer.putInt(ids.get(i));
+            }
+            for (int i = 0; i < edgeTargets.limit(); ++i) {
+                buffer.putInt(edgeTargets.get(i));
+            }
+            for (int i = 0; i < edgeLabels.limit(); ++i) {
+                buffer.putChar(edgeLabels.get(i));
+            }
+        }
+
+        private int child(int node, char label) {
+            int low = edgeStart.get(node);
+            int high = edgeStart.get(node + 1) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midLabel = edgeLabels.get(mid);
+                if (midLabel < label) {
+                    low = mid + 1;
+                } else if (midLabel > label) {
+                    high = mid - 1;
+                } else {
+                    return edgeTargets.get(mid);
+                }
+            }
+            return -1;
+        }
+
+    }
+
+    /**
+     * Compile a WordPiece vocabulary, or read its trie in place from a compiled vocabulary that includes one.
+     *
+     * @param vocabulary           word piece vocabulary
+     * @param unkToken             token used for words that cannot be tokenized
+     * @param maxInputCharsPerWord words longer than this are mapped to the unknown token
+     */
+    public WordPieceTrie(@NonNull StringIndex vocabulary, @NonNull String unkToken, int maxInputCharsPerWord) {
+        this(nodes(vocabulary), vocabulary.get(unkToken), maxInputCharsPerWord);
+    }
+
+    private WordPieceTrie(Nodes nodes, int unkId, int maxInputCharsPerWord) {
+        this.nodes = nodes;
+        int continuation = ROOT;
+        for (int i = 0; i < CONTINUATION_PREFIX.length() && continuation >= 0; ++i) {
+            continuation = nodes.child(continuation, CONTINUATION_PREFIX.charAt(i));
+        }
+        this.continuationRoot = continuation;
+        this.unkId = unkId;
+        this.maxInputCharsPerWord = maxInputCharsPerWord;
+    }
+
+    private static Nodes nodes(StringIndex vocabulary) {
+        if (vocabulary instanceof MappedStringIndex) {
+            Optional<Nodes> mapped = ((MappedStringIndex) vocabulary).trie();
+            if (mapped.isPresent()) {
+                return mapped.get();
+            }
+        }
+        return Nodes.compile(vocabulary);
+    }
+
+    /**
+     * Tokenize whitespace-separated text, writing vocabulary IDs of its word pieces into a buffer. At most one ID is written per
+     * character, so a buffer with room for {@code text.length()} IDs past the offset is always sufficient.
+     *
+     * @param text   input text, a single token or whitespace separated sentence
+     * @param buffer output buffer
+     * @param offset index of first ID written in the buffer
+     * @return number of IDs written
+     */
+    public int tokenize(@NonNull CharSequence text, @NonNull int[] buffer, int offset) {
+        // same splitting as WordPieceTokenizer#whitespaceTokenize: trim, then split on runs of \s
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        int position = 0;
+        while (position < end && text.charAt(position) <= ' ') {
+            ++position;
+        }
+        int count = 0;
+        while (position < end) {
+            int wordEnd = position;
+            while (wordEnd < end && !isWhitespace(text.charAt(wordEnd))) {
+                ++wordEnd;
+            }
+            count += tokenizeWord(text, position, wordEnd, buffer, offset + count);
+            position = wordEnd;
+            while (position < end && isWhitespace(text.charAt(position))) {
+                ++position;
+            }
+        }
+        return count;
+    }
+
+    private int tokenizeWord(CharSequence text, int start, int end, int[] buffer, int offset) {
+        if (end - start > maxInputCharsPerWord) {
+            return unknown(buffer, offset);
+        }
+        int count = 0;
+        int position = start;
+        while (position < end) {
+            int node = position == start ? ROOT : continuationRoot;
+            int matchId = -1;
+            int matchEnd = -1;
+            for (int i = position; i < end && node >= 0; ++i) {
+                node = nodes.child(node, text.charAt(i));
+                int id = node < 0 ? -1 : nodes.ids.get(node);
+                if (id >= 0) {
+                    matchId = id;
+                    matchEnd = i + 1;
+                }
+            }
+            if (matchId < 0) {
+                return unknown(buffer, offset);
+            }
+            buffer[offset + count++] = matchId;
+            position = matchEnd;
+        }
+        return count;
+    }
+
+    private int unknown(int[] buffer, int offset) {
+        if (unkId < 0) {
+            throw new IllegalStateException("Unknown token is not in the vocabulary");
+        }
+        buffer[offset] = unkId;
+        return 1;
+    }
+
+    /**
+     * Characters matched by {@code \s} in Java regular expressions.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+}
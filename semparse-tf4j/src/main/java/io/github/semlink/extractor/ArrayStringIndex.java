@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import java.util.function.ObjIntConsumer;
+
+import lombok.NonNull;
+
+/**
+ * Heap {@link StringIndex}. Keys are held in an array indexed by ID, which also serves as the inverse map, and looked up through
+ * an open-addressing table of IDs, so no entry objects or boxed integers are allocated, either when building the index or on
+ * lookups.
+ *
+ * @author jgung
+ */
+final class ArrayStringIndex implements StringIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // keys by ID, null for unused IDs
+    private final String[] keys;
+    // open-addressing index over keys, holding id + 1 (0 marks an empty slot)
+    private final int[] slots;
+    private final int size;
+
+    ArrayStringIndex(String[] keys, int size) {
+        this.keys = keys;
+        this.size = size;
+        int capacity = capacity(size);
+        this.slots = new int[capacity];
+        for (int id = 0; id < keys.length; ++id) {
+            if (null == keys[id]) {
+                continue;
+            }
+            int slot = hash(keys[id]) & (capacity - 1);
+            while (slots[slot] != 0) {
+                if (keys[slots[slot] - 1].equals(keys[id])) {
+                    throw new IllegalArgumentException("Duplicate key in index: " + keys[id]);
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    @Override
+    public int get(@NonNull String key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != 0) {
+            if (keys[slots[slot] - 1].equals(key)) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public String key(int id) {
+        return id < 0 || id >= keys.length ? null : keys[id];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(@NonNull ObjIntConsumer<String> consumer) {
+        for (int id = 0; id < keys.length; ++id) {
+            if (null != keys[id]) {
+                consumer.accept(keys[id], id);
+            }
+        }
+    }
+
+    /**
+     * Power-of-two table capacity keeping the load factor of an index at or below 0.5.
+     */
+    static int capacity(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Slot hash of a key. Relies only on {@link String#hashCode()}, whose value is specified, so it is stable across JVMs and may
+     * be persisted.
+     */
+    static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+}
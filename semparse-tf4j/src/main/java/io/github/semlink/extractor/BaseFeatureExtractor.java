@@ -43,4 +43,25 @@ public abstract class BaseFeatureExtractor<T> extends KeyExtractor<T> implements
         return nlpSeq.field(key);
     }
 
+    /**
+     * Extract vocabulary indices of the mapped values of an input sequence, using the OOV index for unknown values.
+     *
+     * @param nlpSeq input sequence
+     * @return feature indices
+     */
+    public int[] extractIds(HasFields nlpSeq) {
+        if (null == vocabulary) {
+            throw new IllegalStateException(String.format("No vocabulary for feature \"%s\"", name()));
+        }
+        List<String> values = getValues(nlpSeq);
+        if (null == values) {
+            throw new IllegalArgumentException(String.format("Missing field \"%s\" in input sequence", key()));
+        }
+        int[] ids = new int[values.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = vocabulary.featToIndex(map(values.get(i)));
+        }
+        return ids;
+    }
+
 }
@@ -1,12 +1,13 @@
 package io.github.semlink.extractor;
 
 import io.github.semlink.app.WordPieceTokenizer;
+import io.github.semlink.tensor.StringTensorArena;
 import io.github.semlink.type.HasFields;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import lombok.NonNull;
 import lombok.Setter;
 import org.tensorflow.example.FeatureLists;
@@ -55,72 +56,120 @@ public class BertSrlExampleExtractor implements SequenceExampleExtractor {
 
     @Override
     public SequenceExample extractSequence(@NonNull HasFields sequence) {
+        return toSequenceExample(extractInput(sequence));
+    }
+
+    @Override
+    public byte[] extractBytes(@NonNull HasFields sequence) {
+        return toByteArray(extractInput(sequence));
+    }
+
+    @Override
+    public void extractTo(@NonNull HasFields sequence, @NonNull StringTensorArena arena) {
+        toWireExample(extractInput(sequence)).writeTo(arena);
+    }
+
+    /**
+     * Extract BERT inputs as primitive arrays, used directly for feeding numeric tensors or for building a sequence example.
+     *
+     * @param sequence input sequence
+     * @return BERT SRL input
+     */
+    public BertSrlInput extractInput(@NonNull HasFields sequence) {
         List<String> predicateIndices = sequence.field(predicateIndexKey);
         int predicateIndex = Integer.parseInt(predicateIndices.get(0));
         List<String> words = sequence.field(wordsKey);
 
-        List<String> splitTokens = new ArrayList<>();
-        List<Integer> maskValues = new ArrayList<>();
+        // each word yields at most one word piece per character, and the predicate's pieces are repeated after the first [SEP]
+        int capacity = 3;
+        for (String word : words) {
+            capacity += 2 * word.length();
+        }
+        int[] ids = new int[capacity];
+        int[] mask = new int[capacity + words.size()];
+        int size = 0;
+        int maskSize = 0;
         int predicateSplitTokenIndex = -1; // index of predicate within wordpiece tokenization
-        List<String> predicateSplitTokens = new ArrayList<>();
+        int predicateSplitTokens = 0;
 
         // [CLS], word_1, word_2, ...
-        splitTokens.add(BERT_CLS);
-        maskValues.add(0);
+        ids[size++] = wordPieceTokenizer.id(BERT_CLS);
+        mask[maskSize++] = 0;
 
         int tokenIndex = 0; // current token index
         for (String token : words) {
-            List<String> subtokens = wordPieceTokenizer.tokenize(token);
+            int subtokens = wordPieceTokenizer.tokenizeIds(token, ids, size);
 
             if (predicateIndex == tokenIndex) {
-                predicateSplitTokenIndex = splitTokens.size();
+                predicateSplitTokenIndex = size;
                 predicateSplitTokens = subtokens;
             }
 
-            splitTokens.addAll(subtokens);
-            maskValues.add(1);
-            if (subtokens.size() > 0) {
-                maskValues.addAll(Collections.nCopies(subtokens.size() - 1, 0));
-            }
+            size += subtokens;
+            // the first subtoken of each word is predicted, remaining subtokens are masked out
+            mask[maskSize++] = 1;
+            maskSize += Math.max(0, subtokens - 1);
 
             ++tokenIndex;
         }
 
         // ..., word_n-1, word_n, [SEP]
-        splitTokens.add(BERT_SEP);
-        maskValues.add(0);
+        ids[size++] = wordPieceTokenizer.id(BERT_SEP);
+        mask[maskSize++] = 0;
 
-        final int splitIndex = splitTokens.size();
+        final int splitIndex = size;
 
         // predicate_subtoken_1, predicate_subtoken2, ..., [SEP]
-        splitTokens.addAll(predicateSplitTokens);
-        maskValues.addAll(Collections.nCopies(predicateSplitTokens.size(), 0));
+        if (predicateSplitTokenIndex >= 0) {
+            System.arraycopy(ids, predicateSplitTokenIndex, ids, size, predicateSplitTokens);
+        }
+        size += predicateSplitTokens;
+        maskSize += predicateSplitTokens;
 
-        splitTokens.add(BERT_SEP);
-        maskValues.add(0);
+        ids[size++] = wordPieceTokenizer.id(BERT_SEP);
+        mask[maskSize++] = 0;
 
-        final int predIndex = predicateSplitTokenIndex;
-        List<String> markers = IntStream.range(0, splitTokens.size())
-            .mapToObj(i -> i == predIndex ? "1" : "0")
+        int[] markers = new int[size];
+        if (predicateSplitTokenIndex >= 0) {
+            markers[predicateSplitTokenIndex] = 1;
+        }
+
+        return new BertSrlInput(
+            Arrays.copyOf(ids, size),
+            Arrays.copyOf(mask, maskSize),
+            markers,
+            predicateSplitTokenIndex,
+            splitIndex);
+    }
+
+    /**
+     * Convert extracted BERT inputs to a sequence example, as expected by models serving a serialized example input tensor.
+     *
+     * @param input BERT SRL input
+     * @return TF sequence example proto
+     */
+    public SequenceExample toSequenceExample(@NonNull BertSrlInput input) {
+        List<String> markers = Arrays.stream(input.markers())
+            .mapToObj(String::valueOf)
             .collect(Collectors.toList());
 
         FeatureLists.Builder featureLists = FeatureLists.newBuilder()
             // IDs for WordPiece tokens
-            .putFeatureList(bertIdsKey, int64Features(wordPieceTokenizer.convertTokensToIds(splitTokens)))
+            .putFeatureList(bertIdsKey, int64Features(input.ids()))
             // mask used to ignore subtokens in prediction
-            .putFeatureList(maskKey, int64Features(maskValues))
+            .putFeatureList(maskKey, int64Features(input.mask()))
             // binary predicate marker embedding
             .putFeatureList(markerKey, stringFeatures(markers))
             // boiler plate
-            .putFeatureList(goldKey, stringFeatures(Collections.nCopies(splitTokens.size(), "O")));
+            .putFeatureList(goldKey, stringFeatures(Collections.nCopies(input.length(), "O")));
 
         Features.Builder features = Features.newBuilder()
             // index of first predicate subtoken within WordPiece tokens
-            .putFeature(predicateIndexKey, int64Feature(predIndex))
+            .putFeature(predicateIndexKey, int64Feature(input.predicateIndex()))
             // index in subtokens of start of predicate sequence (second sequence, not original tokens)
-            .putFeature(bertSplitIndex, int64Feature(splitIndex))
+            .putFeature(bertSplitIndex, int64Feature(input.splitIndex()))
             // boiler plate
-            .putFeature(lengthKey, int64Feature(splitTokens.size()))
+            .putFeature(lengthKey, int64Feature(input.length()))
             .putFeature(sentenceIndexKey, int64Feature(0));
 
         return SequenceExample.newBuilder()
@@ -129,4 +178,42 @@ public class BertSrlExampleExtractor implements SequenceExampleExtractor {
             .build();
     }
 
+    /**
+     * Serialize extracted BERT inputs directly as a sequence example in wire format, with the same bytes as
+     * {@link #toSequenceExample(BertSrlInput)}.
+     *
+     * @param input BERT SRL input
+     * @return TF sequence example proto in wire format
+     */
+    public byte[] toByteArray(@NonNull BertSrlInput input) {
+        return toWireExample(input).toByteArray();
+    }
+
+    /**
+     * Serialize extracted BERT inputs as a sequence example directly into a string tensor arena, with the same bytes as
+     * {@link #toByteArray(BertSrlInput)}.
+     *
+     * @param input BERT SRL input
+     * @param arena arena holding a batch of serialized examples
+     */
+    public void writeTo(@NonNull BertSrlInput input, @NonNull StringTensorArena arena) {
+        toWireExample(input).writeTo(arena);
+    }
+
+    private WireSequenceExample toWireExample(BertSrlInput input) {
+        List<String> markers = new ArrayList<>(input.markers().length);
+        for (int marker : input.markers()) {
+            markers.add(String.valueOf(marker));
+        }
+        return new WireSequenceExample()
+            .feature(predicateIndexKey, WireSequenceExample.int64Feature(input.predicateIndex()))
+            .feature(bertSplitIndex, WireSequenceExample.int64Feature(input.splitIndex()))
+            .feature(lengthKey, WireSequenceExample.int64Feature(input.length()))
+            .feature(sentenceIndexKey, WireSequenceExample.int64Feature(0))
+            .featureList(bertIdsKey, WireSequenceExample.int64Features(input.ids()))
+            .featureList(maskKey, WireSequenceExample.int64Features(input.mask()))
+            .featureList(markerKey, WireSequenceExample.stringFeatures(markers))
+            .featureList(goldKey, WireSequenceExample.stringFeatures(Collections.nCopies(input.length(), "O")));
+    }
+
 }
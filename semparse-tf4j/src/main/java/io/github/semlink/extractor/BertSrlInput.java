@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * BERT SRL model inputs for a single predicate, as primitive arrays over WordPiece tokens.
+ *
+ * @author jgung
+ */
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class BertSrlInput {
+
+    /**
+     * WordPiece vocabulary IDs: [CLS] sentence [SEP] predicate [SEP].
+     */
+    private final int[] ids;
+    /**
+     * 1 for the first subtoken of each word in the sentence, 0 elsewhere.
+     */
+    private final int[] mask;
+    /**
+     * 1 for the first subtoken of the predicate in the sentence, 0 elsewhere.
+     */
+    private final int[] markers;
+    /**
+     * Index of the first predicate subtoken within the sentence.
+     */
+    private final int predicateIndex;
+    /**
+     * Index of the start of the second (predicate) segment.
+     */
+    private final int splitIndex;
+
+    /**
+     * Number of WordPiece tokens.
+     */
+    public int length() {
+        return ids.length;
+    }
+
+}
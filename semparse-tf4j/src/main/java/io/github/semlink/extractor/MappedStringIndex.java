@@ -0,0 +1,404 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ObjIntConsumer;
+
+import io.github.semlink.app.WordPieceTrie;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link StringIndex} over a compiled vocabulary file, memory-mapped read-only. Lookups decode keys in place from the mapped
+ * pages instead of copying them into the heap, so startup skips parsing entirely, and processes mapping the same file share a
+ * single copy of it through the OS page cache.
+ * <p>
+ * File layout (little-endian), written by {@link #write(StringIndex, Path, boolean)}:
+ * <pre>
+ * header   magic, version, size, ID count, slot count,     (6 x int32, without the trie offset in version 1 files)
+ *          trie offset (0 if absent)
+ * entries  UTF-8 offset and length of each key, by ID      (2 x int32 per ID, length -1 for unused IDs)
+ * slots    open-addressing hash table of keys              (2 x int32 per slot: hash, ID + 1, or 0 for an empty slot)
+ * data     UTF-8 key bytes, in ID order
+ * trie     optional WordPiece trie nodes, 4-byte aligned   (see {@link WordPieceTrie.Nodes})
+ * </pre>
+ *
+ * @author jgung
+ */
+@Slf4j
+public final class MappedStringIndex implements StringIndex {
+
+    /**
+     * File name suffix of a compiled vocabulary, looked up next to the corresponding text vocabulary.
+     */
+    public static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x58444953; // "SIDX"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int VERSION_1_HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int idCount;
+    private final int slotCount;
+    private final int entriesOffset;
+    private final int slotsOffset;
+    private final int dataOffset;
+    private final WordPieceTrie.Nodes trie;
+
+    private MappedStringIndex(ByteBuffer buffer, String path) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < VERSION_1_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a compiled vocabulary: " + path);
+        }
+        int version = buffer.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IllegalArgumentException("Unsupported compiled vocabulary version " + version + ": " + path);
+        }
+        this.entriesOffset = version == 1 ? VERSION_1_HEADER_BYTES : HEADER_BYTES;
+        this.size = buffer.getInt(8);
+        this.idCount = buffer.getInt(12);
+        this.slotCount = buffer.getInt(16);
+        int trieOffset = version == 1 || buffer.capacity() < HEADER_BYTES ? 0 : buffer.getInt(20);
+        long dataOffset = entriesOffset + 2L * Integer.BYTES * ((long) idCount + slotCount);
+        // the table must keep at least one empty slot for lookups of absent keys to terminate
+        if (idCount < 0 || Integer.bitCount(slotCount) != 1 || slotCount <= size || dataOffset > buffer.capacity()
+                || trieOffset < 0 || trieOffset % Integer.BYTES != 0 || trieOffset > buffer.capacity()) {
+            throw new IllegalArgumentException("Corrupt compiled vocabulary: " + path);
+        }
+        this.slotsOffset = entriesOffset + 2 * Integer.BYTES * idCount;
+        this.dataOffset = (int) dataOffset;
+        if (trieOffset == 0) {
+            this.trie = null;
+        } else {
+            ByteBuffer section = buffer.duplicate();
+            section.position(trieOffset);
+            this.trie = WordPieceTrie.Nodes.read(section.slice());
+        }
+    }
+
+    /**
+     * Memory-map a compiled vocabulary file.
+     *
+     * @param path compiled vocabulary path
+     * @return mapped index
+     */
+    public static MappedStringIndex open(@NonNull Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping remains valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            MappedStringIndex index = new MappedStringIndex(buffer, path.toString());
+            log.info("Mapped {}-length compiled vocabulary from {}", index.size(), path);
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to map compiled vocabulary at path: " + path, e);
+        }
+    }
+
+    /**
+     * Return the compiled vocabulary to use in place of a given vocabulary file, if any: the file itself if it is compiled, or a
+     * compiled file next to it with the {@link #EXTENSION} suffix that is not older than it. Otherwise, the caller should fall
+     * back to parsing the text vocabulary.
+     *
+     * @param path vocabulary path
+     * @return compiled vocabulary path, if any
+     */
+    public static Optional<Path> find(@NonNull String path) {
+        Path vocabulary = Paths.get(path);
+        if (isCompiled(vocabulary)) {
+            return Optional.of(vocabulary);
+        }
+        Path compiled = Paths.get(path + EXTENSION);
+        if (!isCompiled(compiled)) {
+            return Optional.empty();
+        }
+        try {
+            if (Files.exists(vocabulary)
+                    && Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(vocabulary)) < 0) {
+                log.warn("Ignoring compiled vocabulary {}, which is older than {}", compiled, vocabulary);
+                return Optional.empty();
+            }
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.of(compiled);
+    }
+
+    /**
+     * Return true if a given file exists and starts with the compiled vocabulary magic number.
+     */
+    public static boolean isCompiled(@NonNull Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compile a string index to a given file, without a WordPiece trie.
+     *
+     * @param index  string index
+     * @param output compiled vocabulary path
+     * @see #write(StringIndex, Path, boolean)
+     */
+    public static void write(@NonNull StringIndex index, @NonNull Path output) {
+        write(index, output, false);
+    }
+
+    /**
+     * Compile a string index to a given file. The file is written next to its destination and then moved into place, so
+     * processes already mapping a previous version are unaffected.
+     *
+     * @param index    string index
+     * @param output   compiled vocabulary path
+     * @param withTrie if true, also compile the {@link WordPieceTrie} of the index, which is then mapped instead of being
+     *                 rebuilt by each tokenizer using the vocabulary
+     */
+    public static void write(@NonNull StringIndex index, @NonNull Path output, boolean withTrie) {
+        List<byte[]> keys = new ArrayList<>();
+        index.forEach((key, id) -> {
+            while (keys.size() <= id) {
+                keys.add(null);
+            }
+            keys.set(id, key.getBytes(StandardCharsets.UTF_8));
+        });
+
+        int slotCount = ArrayStringIndex.capacity(index.size());
+        int[] slots = new int[2 * slotCount];
+        int dataBytes = 0;
+        for (int id = 0; id < keys.size(); ++id) {
+            if (null == keys.get(id)) {
+                continue;
+            }
+            int hash = ArrayStringIndex.hash(index.key(id));
+            int slot = hash & (slotCount - 1);
+            while (slots[2 * slot + 1] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[2 * slot] = hash;
+            slots[2 * slot + 1] = id + 1;
+            dataBytes += keys.get(id).length;
+        }
+
+        int dataEnd = HEADER_BYTES + 2 * Integer.BYTES * (keys.size() + slotCount) + dataBytes;
+        WordPieceTrie.Nodes trie = withTrie ? WordPieceTrie.Nodes.compile(index) : null;
+        // align the trie for reads of its int32 arrays
+        int trieOffset = null == trie ? 0 : (dataEnd + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(null == trie ? dataEnd : trieOffset + trie.bytes())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(index.size()).putInt(keys.size()).putInt(slotCount).putInt(trieOffset);
+        int offset = 0;
+        for (byte[] key : keys) {
+            buffer.putInt(offset).putInt(null == key ? -1 : key.length);
+            offset += null == key ? 0 : key.length;
+        }
+        for (int value : slots) {
+            buffer.putInt(value);
+        }
+        for (byte[] key : keys) {
+            if (null != key) {
+                buffer.put(key);
+            }
+        }
+        if (null != trie) {
+            buffer.position(trieOffset);
+            trie.writeTo(buffer);
+        }
+        buffer.flip();
+
+        try {
+            Path parent = output.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write compiled vocabulary to path: " + output, e);
+        }
+    }
+
+    @Override
+    public int get(@NonNull String key) {
+        int hash = ArrayStringIndex.hash(key);
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (true) {
+            int position = slotsOffset + 2 * Integer.BYTES * slot;
+            int id = buffer.getInt(position + Integer.BYTES) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (buffer.getInt(position) == hash && matches(id, key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public String key(int id) {
+        if (id < 0 || id >= idCount) {
+            return null;
+        }
+        int length = length(id);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int offset = dataOffset + offset(id);
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * WordPiece trie nodes compiled into this vocabulary, read in place from the mapped file.
+     *
+     * @return trie nodes, or empty if the vocabulary was compiled without them
+     */
+    public Optional<WordPieceTrie.Nodes> trie() {
+        return Optional.ofNullable(trie);
+    }
+
+    @Override
+    public void forEach(@NonNull ObjIntConsumer<String> consumer) {
+        for (int id = 0; id < idCount; ++id) {
+            String key = key(id);
+            if (null != key) {
+                consumer.accept(key, id);
+            }
+        }
+    }
+
+    private int offset(int id) {
+        return buffer.getInt(entriesOffset + 2 * Integer.BYTES * id);
+    }
+
+    private int length(int id) {
+        return buffer.getInt(entriesOffset + 2 * Integer.BYTES * id + Integer.BYTES);
+    }
+
+    /**
+     * Compare the UTF-8 bytes of a given key with a string, decoding them in place.
+     */
+    private boolean matches(int id, String key) {
+        int position = dataOffset + offset(id);
+        int end = position + length(id);
+        int index = 0;
+        while (position < end) {
+            int b = buffer.get(position++) & 0xff;
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+            } else if (b < 0xe0) {
+                codePoint = (b & 0x1f) << 6 | buffer.get(position++) & 0x3f;
+            } else if (b < 0xf0) {
+                codePoint = (b & 0x0f) << 12 | (buffer.get(position++) & 0x3f) << 6 | buffer.get(position++) & 0x3f;
+            } else {
+                codePoint = (b & 0x07) << 18 | (buffer.get(position++) & 0x3f) << 12 | (buffer.get(position++) & 0x3f) << 6
+                        | buffer.get(position++) & 0x3f;
+            }
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (index >= key.length() || key.charAt(index++) != codePoint) {
+                    return false;
+                }
+            } else {
+                if (index + 1 >= key.length()
+                        || key.charAt(index++) != Character.highSurrogate(codePoint)
+                        || key.charAt(index++) != Character.lowSurrogate(codePoint)) {
+                    return false;
+                }
+            }
+        }
+        return index == key.length();
+    }
+
+    /**
+     * Compile a text vocabulary, with one entry per line in ID order.
+     *
+     * @param args text vocabulary path, compiled vocabulary path (defaults to the text path with the {@link #EXTENSION}
+     *             suffix), and {@code --wordpiece} for WordPiece vocabularies, whose entries are not trimmed and whose
+     *             {@link WordPieceTrie} is compiled along with the index
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MappedStringIndex <vocab.txt> [<output>] [--wordpiece]");
+            System.exit(1);
+        }
+        boolean wordPiece = false;
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--wordpiece")) {
+                wordPiece = true;
+            } else {
+                paths.add(arg);
+            }
+        }
+        Path input = Paths.get(paths.get(0));
+        Path output = Paths.get(paths.size() > 1 ? paths.get(1) : paths.get(0) + EXTENSION);
+
+        List<String> keys = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!wordPiece) {
+                    line = line.trim();
+                }
+                if (!line.isEmpty()) {
+                    keys.add(line);
+                }
+            }
+        }
+        write(StringIndex.of(keys), output, wordPiece);
+        log.info("Compiled {}-length vocabulary from {} to {} ({} bytes)", keys.size(), input, output, Files.size(output));
+    }
+
+}
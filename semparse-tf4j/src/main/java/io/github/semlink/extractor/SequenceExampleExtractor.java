@@ -16,6 +16,7 @@
 
 package io.github.semlink.extractor;
 
+import io.github.semlink.tensor.StringTensorArena;
 import io.github.semlink.type.HasFields;
 import lombok.NonNull;
 import org.tensorflow.example.SequenceExample;
@@ -34,4 +35,25 @@ public interface SequenceExampleExtractor {
      * @return TF sequence example proto
      */
     SequenceExample extractSequence(@NonNull HasFields sequence);
+
+    /**
+     * Extract a serialized sequence example, as fed to a TF saved model.
+     *
+     * @param sequence input sequence
+     * @return TF sequence example proto in wire format
+     */
+    default byte[] extractBytes(@NonNull HasFields sequence) {
+        return extractSequence(sequence).toByteArray();
+    }
+
+    /**
+     * Extract a serialized sequence example into the next string of a given arena, for batching into a string tensor.
+     *
+     * @param sequence input sequence
+     * @param arena    arena receiving the serialized example
+     */
+    default void extractTo(@NonNull HasFields sequence, @NonNull StringTensorArena arena) {
+        arena.add(extractBytes(sequence));
+    }
+
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import lombok.NonNull;
+
+/**
+ * Immutable map from strings to non-negative integer IDs, such as a feature or WordPiece vocabulary, with primitive lookups in
+ * both directions.
+ *
+ * @author jgung
+ */
+public interface StringIndex {
+
+    /**
+     * Index a list of distinct keys, assigning IDs in order.
+     *
+     * @param keys distinct keys
+     * @return string index
+     */
+    static StringIndex of(@NonNull List<String> keys) {
+        return new ArrayStringIndex(keys.toArray(new String[0]), keys.size());
+    }
+
+    /**
+     * Index keys by given IDs, which must be non-negative and distinct, but not necessarily contiguous.
+     *
+     * @param ids IDs by key
+     * @return string index
+     */
+    static StringIndex of(@NonNull Map<String, Integer> ids) {
+        int maxId = -1;
+        for (int id : ids.values()) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative ID in index: " + id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        String[] keys = new String[maxId + 1];
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            if (null != keys[entry.getValue()]) {
+                throw new IllegalArgumentException("Duplicate ID in index: " + entry.getValue());
+            }
+            keys[entry.getValue()] = entry.getKey();
+        }
+        return new ArrayStringIndex(keys, ids.size());
+    }
+
+    /**
+     * Return the ID of a given key, or -1 if absent.
+     */
+    int get(@NonNull String key);
+
+    /**
+     * Return the key with a given ID, or {@code null} if no key has this ID.
+     */
+    String key(int id);
+
+    /**
+     * Number of keys in the index.
+     */
+    int size();
+
+    /**
+     * Call a consumer with each key and its ID, in ID order.
+     */
+    void forEach(@NonNull ObjIntConsumer<String> consumer);
+
+    /**
+     * Return the ID of a given key, or a default ID if absent.
+     */
+    default int get(@NonNull String key, int defaultId) {
+        int id = get(key);
+        return id < 0 ? defaultId : id;
+    }
+
+    /**
+     * Return the IDs of a list of keys, using a default ID for absent keys.
+     */
+    default int[] get(@NonNull List<String> keys, int defaultId) {
+        int[] ids = new int[keys.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = get(keys.get(i), defaultId);
+        }
+        return ids;
+    }
+
+    /**
+     * Return true if a given key is in the index.
+     */
+    default boolean contains(@NonNull String key) {
+        return get(key) >= 0;
+    }
+
+}
@@ -16,21 +16,21 @@
 
 package io.github.semlink.extractor;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.ImmutableBiMap;
-
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Feature vocabulary.
+ * Feature vocabulary, backed by a {@link StringIndex}.
  *
  * @author jgung
  */
@@ -42,29 +42,44 @@ public class Vocabulary {
     public static final String START_WORD = "<BOS>";
     public static final String END_WORD = "<EOS>";
 
-    private BiMap<String, Integer> featureIndexMap;
+    private StringIndex featureIndex;
     private int oov;
 
-    public Vocabulary(Map<String, Integer> featureIndexMap, String oov) {
-        this.featureIndexMap = ImmutableBiMap.copyOf(featureIndexMap);
-        if (!this.featureIndexMap.containsKey(oov)) {
+    public Vocabulary(StringIndex featureIndex, String oov) {
+        this.featureIndex = featureIndex;
+        if (!this.featureIndex.contains(oov)) {
             log.warn("OOV feature \"{}\" not found in vocabulary.", oov);
             this.oov = 0;
         } else {
-            this.oov = this.featureIndexMap.get(oov);
+            this.oov = this.featureIndex.get(oov);
         }
     }
 
+    public Vocabulary(Map<String, Integer> featureIndexMap, String oov) {
+        this(StringIndex.of(featureIndexMap), oov);
+    }
+
     public int featToIndex(String feature) {
-        return featureIndexMap.getOrDefault(feature, oov);
+        return featureIndex.get(feature, oov);
+    }
+
+    /**
+     * Map a list of features to their indices, using the OOV index for unknown features.
+     */
+    public int[] featToIndex(List<String> features) {
+        return featureIndex.get(features, oov);
     }
 
     public String indexToFeat(int index) {
-        return featureIndexMap.inverse().get(index);
+        return featureIndex.key(index);
+    }
+
+    public int size() {
+        return featureIndex.size();
     }
 
     public static Vocabulary read(InputStream inputStream, String oov) {
-        Map<String, Integer> featureIndexMap = new HashMap<>();
+        List<String> features = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -72,18 +87,31 @@ public class Vocabulary {
                 if (line.isEmpty()) {
                     continue;
                 }
-                if (featureIndexMap.containsKey(line)) {
-                    throw new IllegalStateException("Duplicate key found in vocabulary: " + line);
-                }
-                featureIndexMap.put(line, featureIndexMap.size());
+                features.add(line);
             }
         } catch (IOException e) {
             throw new RuntimeException("Unable to load feature vocabulary", e);
         }
-        return new Vocabulary(featureIndexMap, oov);
+        try {
+            return new Vocabulary(StringIndex.of(features), oov);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Duplicate key found in vocabulary", e);
+        }
     }
 
+    /**
+     * Read a feature vocabulary from a given path, preferring a compiled vocabulary (see {@link MappedStringIndex#find(String)}),
+     * and otherwise parsing it as text.
+     *
+     * @param path vocabulary path
+     * @param oov  out-of-vocabulary feature
+     * @return feature vocabulary
+     */
     public static Vocabulary read(String path, String oov) {
+        Optional<Path> compiled = MappedStringIndex.find(path);
+        if (compiled.isPresent()) {
+            return new Vocabulary(MappedStringIndex.open(compiled.get()), oov);
+        }
         try (FileInputStream fileInputStream = new FileInputStream(path)) {
             return Vocabulary.read(fileInputStream, oov);
         } catch (IOException e) {
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.semlink.tensor.StringTensorArena;
+import lombok.NonNull;
+
+/**
+ * Serialized {@link org.tensorflow.example.SequenceExample} written directly in protobuf wire format. Features are sized up
+ * front, so the example is written in a single pass into an exactly sized array, without building intermediate
+ * {@code Feature}/{@code FeatureList} protos or copying each value into a {@code ByteString}. Features are written in the order
+ * they are added, which is also the order in which {@code SequenceExample.toByteArray()} writes features put into its builders,
+ * so both produce the same bytes.
+ *
+ * @author jgung
+ */
+public final class WireSequenceExample {
+
+    // SequenceExample.context, Features.feature, FeatureLists.feature_list, FeatureList.feature, BytesList.value, Int64List.value
+    static final int FIELD_ONE = 1;
+    // SequenceExample.feature_lists
+    private static final int FIELD_TWO = 2;
+    // Feature.bytes_list
+    static final int BYTES_LIST_FIELD = 1;
+    // Feature.int64_list
+    private static final int INT64_LIST_FIELD = 3;
+    // map entry key, or any other length-delimited field one
+    private static final int ENTRY_TAG = tag(FIELD_ONE, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    // map entry value
+    private static final int VALUE_TAG = tag(FIELD_TWO, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
+    /**
+     * Serialized {@code Feature} or {@code FeatureList} message.
+     */
+    public interface Value {
+
+        /**
+         * Serialized size of the message in bytes.
+         */
+        int size();
+
+        /**
+         * Write the message, without tag or length prefix.
+         */
+        void writeTo(CodedOutputStream output) throws IOException;
+
+    }
+
+    private final List<String> featureNames = new ArrayList<>();
+    private final List<Value> features = new ArrayList<>();
+    private final List<String> featureListNames = new ArrayList<>();
+    private final List<Value> featureLists = new ArrayList<>();
+
+    /**
+     * Add a context feature.
+     */
+    public WireSequenceExample feature(@NonNull String name, @NonNull Value feature) {
+        featureNames.add(name);
+        features.add(feature);
+        return this;
+    }
+
+    /**
+     * Add a feature list.
+     */
+    public WireSequenceExample featureList(@NonNull String name, @NonNull Value featureList) {
+        featureListNames.add(name);
+        featureLists.add(featureList);
+        return this;
+    }
+
+    /**
+     * Serialize this sequence example.
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[serializedSize()];
+        write(CodedOutputStream.newInstance(result));
+        return result;
+    }
+
+    /**
+     * Serialize this sequence example directly into the next string of a given arena.
+     */
+    public void writeTo(@NonNull StringTensorArena arena) {
+        write(arena.append(serializedSize()));
+    }
+
+    /**
+     * Size of this sequence example once serialized, in bytes.
+     */
+    public int serializedSize() {
+        return messageSize(FIELD_ONE, mapSize(featureNames, features))
+                + messageSize(FIELD_TWO, mapSize(featureListNames, featureLists));
+    }
+
+    private void write(CodedOutputStream output) {
+        try {
+            writeHeader(output, FIELD_ONE, mapSize(featureNames, features));
+            writeMap(output, featureNames, features);
+            writeHeader(output, FIELD_TWO, mapSize(featureListNames, featureLists));
+            writeMap(output, featureListNames, featureLists);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Serialized size of sequence example did not match its computed size", e);
+        }
+    }
+
+    /**
+     * Feature with a single int64 value.
+     */
+    public static Value int64Feature(long value) {
+        int size = int64FeatureSize(value);
+        return new Value() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void writeTo(CodedOutputStream output) throws IOException {
+                writeInt64Feature(output, value);
+            }
+        };
+    }
+
+    /**
+     * Feature list with one single-value int64 feature per element.
+     */
+    public static Value int64Features(@NonNull int[] values) {
+        int size = 0;
+        for (int value : values) {
+            size += messageSize(FIELD_ONE, int64FeatureSize(value));
+        }
+        int featureListSize = size;
+        return new Value() {
+            @Override
+            public int size() {
+                return featureListSize;
+            }
+
+            @Override
+            public void writeTo(CodedOutputStream output) throws IOException {
+                for (int value : values) {
+                    writeHeader(output, FIELD_ONE, int64FeatureSize(value));
+                    writeInt64Feature(output, value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Feature list with one single-value bytes feature per element, holding its UTF-8 encoding.
+     */
+    public static Value stringFeatures(@NonNull List<String> values) {
+        int[] lengths = new int[values.size()];
+        int size = 0;
+        for (int i = 0; i < lengths.length; ++i) {
+            lengths[i] = utf8Length(values.get(i));
+            size += messageSize(FIELD_ONE, bytesFeatureSize(lengths[i]));
+        }
+        int featureListSize = size;
+        return new Value() {
+            @Override
+            public int size() {
+                return featureListSize;
+            }
+
+            @Override
+            public void writeTo(CodedOutputStream output) throws IOException {
+                for (int i = 0; i < lengths.length; ++i) {
+                    writeHeader(output, FIELD_ONE, bytesFeatureSize(lengths[i]));
+                    writeHeader(output, BYTES_LIST_FIELD, messageSize(FIELD_ONE, lengths[i]));
+                    output.writeString(FIELD_ONE, values.get(i));
+                }
+            }
+        };
+    }
+
+    /**
+     * Existing {@code Feature} or {@code FeatureList} message.
+     */
+    public static Value message(@NonNull MessageLite message) {
+        int size = message.getSerializedSize();
+        return new Value() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void writeTo(CodedOutputStream output) throws IOException {
+                message.writeTo(output);
+            }
+        };
+    }
+
+    /**
+     * Read the length of a serialized sequence example: the first value of a given int64 context feature if present, and
+     * otherwise the number of features in its longest feature list.
+     *
+     * @param example   serialized sequence example
+     * @param lengthKey name of the length context feature
+     * @return sequence length
+     */
+    public static int length(@NonNull byte[] example, @NonNull String lengthKey) {
+        return length(CodedInputStream.newInstance(example), lengthKey);
+    }
+
+    /**
+     * Read the length of a serialized sequence example, as in {@link #length(byte[], String)}, without copying it to an array.
+     *
+     * @param example   serialized sequence example
+     * @param lengthKey name of the length context feature
+     * @return sequence length
+     */
+    public static int length(@NonNull ByteString example, @NonNull String lengthKey) {
+        return length(example.newCodedInput(), lengthKey);
+    }
+
+    private static int length(CodedInputStream input, String lengthKey) {
+        ByteString key = ByteString.copyFromUtf8(lengthKey);
+        try {
+            int maxFeatures = 0;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                int field = WireFormat.getTagFieldNumber(tag);
+                if ((field != FIELD_ONE && field != FIELD_TWO)
+                        || WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    input.skipField(tag);
+                    continue;
+                }
+                int limit = input.pushLimit(input.readRawVarint32());
+                while (!input.isAtEnd()) {
+                    int entryTag = input.readTag();
+                    if (entryTag != ENTRY_TAG) {
+                        input.skipField(entryTag);
+                        continue;
+                    }
+                    int entryLimit = input.pushLimit(input.readRawVarint32());
+                    boolean matches = false;
+                    long value = -1;
+                    while (!input.isAtEnd()) {
+                        int entryField = input.readTag();
+                        if (entryField == ENTRY_TAG) {
+                            matches = key.equals(input.readBytes());
+                        } else if (entryField == VALUE_TAG && field == FIELD_ONE) {
+                            value = readFirstInt64(input);
+                        } else if (entryField == VALUE_TAG) {
+                            maxFeatures = Math.max(maxFeatures, countFeatures(input));
+                        } else {
+                            input.skipField(entryField);
+                        }
+                    }
+                    input.popLimit(entryLimit);
+                    if (matches && value >= 0) {
+                        return (int) value;
+                    }
+                }
+                input.popLimit(limit);
+            }
+            return maxFeatures;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to parse serialized sequence example", e);
+        }
+    }
+
+    /**
+     * Read the first value of a {@code Feature} with an int64 list, or -1 if it has none.
+     */
+    private static long readFirstInt64(CodedInputStream input) throws IOException {
+        long result = -1;
+        int limit = input.pushLimit(input.readRawVarint32());
+        while (!input.isAtEnd()) {
+            int tag = input.readTag();
+            if (tag != tag(INT64_LIST_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED) || result >= 0) {
+                input.skipField(tag);
+                continue;
+            }
+            int listLimit = input.pushLimit(input.readRawVarint32());
+            while (!input.isAtEnd()) {
+                int valueTag = input.readTag();
+                if (valueTag == tag(FIELD_ONE, WireFormat.WIRETYPE_VARINT)) {
+                    result = input.readInt64();
+                    break;
+                } else if (valueTag == ENTRY_TAG) {
+                    // packed values
+                    int packedLimit = input.pushLimit(input.readRawVarint32());
+                    if (!input.isAtEnd()) {
+                        result = input.readInt64();
+                    }
+                    input.skipRawBytes(input.getBytesUntilLimit());
+                    input.popLimit(packedLimit);
+                    break;
+                }
+                input.skipField(valueTag);
+            }
+            input.skipRawBytes(input.getBytesUntilLimit());
+            input.popLimit(listLimit);
+        }
+        input.popLimit(limit);
+        return result;
+    }
+
+    /**
+     * Count the features of a {@code FeatureList}.
+     */
+    private static int countFeatures(CodedInputStream input) throws IOException {
+        int count = 0;
+        int limit = input.pushLimit(input.readRawVarint32());
+        while (!input.isAtEnd()) {
+            int tag = input.readTag();
+            if (tag == ENTRY_TAG) {
+                ++count;
+            }
+            input.skipField(tag);
+        }
+        input.popLimit(limit);
+        return count;
+    }
+
+    private static int int64FeatureSize(long value) {
+        // packed repeated field, holding a single value
+        return messageSize(INT64_LIST_FIELD, messageSize(FIELD_ONE, CodedOutputStream.computeInt64SizeNoTag(value)));
+    }
+
+    private static void writeInt64Feature(CodedOutputStream output, long value) throws IOException {
+        int valueSize = CodedOutputStream.computeInt64SizeNoTag(value);
+        writeHeader(output, INT64_LIST_FIELD, messageSize(FIELD_ONE, valueSize));
+        writeHeader(output, FIELD_ONE, valueSize);
+        output.writeInt64NoTag(value);
+    }
+
+    /**
+     * Size of a {@code Feature} holding a single bytes value of a given length.
+     */
+    static int bytesFeatureSize(int length) {
+        return messageSize(BYTES_LIST_FIELD, messageSize(FIELD_ONE, length));
+    }
+
+    /**
+     * Length of the UTF-8 encoding of a string, counting unpaired surrogates as one byte, as they are replaced by '?' when
+     * encoded.
+     */
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            length += utf8Length(value, i);
+            if (Character.isHighSurrogate(value.charAt(i)) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                ++i;
+            }
+        }
+        return length;
+    }
+
+    private static int utf8Length(String value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            return 4;
+        } else if (Character.isSurrogate(c)) {
+            return 1;
+        }
+        return 3;
+    }
+
+    private static int tag(int field, int wireType) {
+        return field << 3 | wireType;
+    }
+
+    /**
+     * Size of a length-delimited field with a given field number and content size.
+     */
+    static int messageSize(int field, int size) {
+        return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    static void writeHeader(CodedOutputStream output, int field, int size) throws IOException {
+        output.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(size);
+    }
+
+    private static int mapSize(List<String> names, List<Value> values) {
+        int size = 0;
+        for (int i = 0; i < names.size(); ++i) {
+            size += messageSize(FIELD_ONE, entrySize(names.get(i), values.get(i)));
+        }
+        return size;
+    }
+
+    private static int entrySize(String name, Value value) {
+        return CodedOutputStream.computeStringSize(FIELD_ONE, name) + messageSize(FIELD_TWO, value.size());
+    }
+
+    private static void writeMap(CodedOutputStream output, List<String> names, List<Value> values) throws IOException {
+        for (int i = 0; i < names.size(); ++i) {
+            String name = names.get(i);
+            Value value = values.get(i);
+            writeHeader(output, FIELD_ONE, entrySize(name, value));
+            output.writeString(FIELD_ONE, name);
+            writeHeader(output, FIELD_TWO, value.size());
+            value.writeTo(output);
+        }
+    }
+
+}
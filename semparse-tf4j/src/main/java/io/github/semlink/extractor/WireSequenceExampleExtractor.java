@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import org.tensorflow.example.Feature;
+import org.tensorflow.example.FeatureList;
+import org.tensorflow.example.SequenceExample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import io.github.semlink.tensor.StringTensorArena;
+import io.github.semlink.type.HasFields;
+import lombok.NonNull;
+
+import static io.github.semlink.extractor.WireSequenceExample.BYTES_LIST_FIELD;
+import static io.github.semlink.extractor.WireSequenceExample.FIELD_ONE;
+
+/**
+ * {@link SequenceExampleExtractor} writing sequence examples directly in protobuf wire format through
+ * {@link WireSequenceExample}, producing the same bytes as a {@link DefaultSequenceExampleExtractor} with the same extractors.
+ * Extractors created from an {@link io.github.semlink.extractor.config.ExtractorSpec} are compiled into wire-format writers;
+ * any other extractor falls back to serializing the proto it extracts.
+ *
+ * @author jgung
+ */
+public class WireSequenceExampleExtractor implements SequenceExampleExtractor {
+
+    private final List<String> featureListNames = new ArrayList<>();
+    private final List<Function<HasFields, WireSequenceExample.Value>> featureListWriters = new ArrayList<>();
+    private final List<String> featureNames = new ArrayList<>();
+    private final List<Function<HasFields, WireSequenceExample.Value>> featureWriters = new ArrayList<>();
+
+    public WireSequenceExampleExtractor(@NonNull List<Extractor<FeatureList>> featureListExtractors,
+                                        @NonNull List<Extractor<Feature>> featureExtractors) {
+        for (Extractor<FeatureList> extractor : featureListExtractors) {
+            featureListNames.add(extractor.name());
+            featureListWriters.add(featureListWriter(extractor));
+        }
+        for (Extractor<Feature> extractor : featureExtractors) {
+            featureNames.add(extractor.name());
+            featureWriters.add(featureWriter(extractor));
+        }
+    }
+
+    @Override
+    public SequenceExample extractSequence(@NonNull HasFields sequence) {
+        try {
+            return SequenceExample.parseFrom(extractBytes(sequence));
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Unable to parse serialized sequence example", e);
+        }
+    }
+
+    @Override
+    public byte[] extractBytes(@NonNull HasFields sequence) {
+        return example(sequence).toByteArray();
+    }
+
+    @Override
+    public void extractTo(@NonNull HasFields sequence, @NonNull StringTensorArena arena) {
+        example(sequence).writeTo(arena);
+    }
+
+    private WireSequenceExample example(HasFields sequence) {
+        WireSequenceExample example = new WireSequenceExample();
+        for (int i = 0; i < featureNames.size(); ++i) {
+            example.feature(featureNames.get(i), featureWriters.get(i).apply(sequence));
+        }
+        for (int i = 0; i < featureListNames.size(); ++i) {
+            example.featureList(featureListNames.get(i), featureListWriters.get(i).apply(sequence));
+        }
+        return example;
+    }
+
+    private static Function<HasFields, WireSequenceExample.Value> featureListWriter(Extractor<FeatureList> extractor) {
+        if (extractor instanceof KeyFeatureListExtractor) {
+            KeyFeatureListExtractor keyExtractor = (KeyFeatureListExtractor) extractor;
+            return sequence -> WireSequenceExample.stringFeatures(mappedValues(keyExtractor, sequence));
+        } else if (extractor instanceof TextExtractor) {
+            TextExtractor textExtractor = (TextExtractor) extractor;
+            return sequence -> WireSequenceExample.stringFeatures(mappedValues(textExtractor, sequence));
+        } else if (extractor instanceof CharacterFeatureExtractor) {
+            CharacterFeatureExtractor charExtractor = (CharacterFeatureExtractor) extractor;
+            return sequence -> new CharacterFeatures(charExtractor, mappedValues(charExtractor, sequence));
+        }
+        return sequence -> WireSequenceExample.message(extractor.extract(sequence));
+    }
+
+    private static Function<HasFields, WireSequenceExample.Value> featureWriter(Extractor<Feature> extractor) {
+        if (extractor instanceof ConstantFeatureExtractor) {
+            WireSequenceExample.Value value = WireSequenceExample.int64Feature(((ConstantFeatureExtractor) extractor).value());
+            return sequence -> value;
+        } else if (extractor instanceof LengthExtractor) {
+            String key = ((LengthExtractor) extractor).key();
+            return sequence -> {
+                List<String> values = sequence.field(key);
+                return WireSequenceExample.int64Feature(values.size());
+            };
+        }
+        return sequence -> WireSequenceExample.message(extractor.extract(sequence));
+    }
+
+    private static List<String> mappedValues(KeyExtractor<?> extractor, HasFields sequence) {
+        List<String> values = sequence.field(extractor.key());
+        if (null == values) {
+            throw new IllegalArgumentException(String.format("Missing field \"%s\" in input sequence", extractor.key()));
+        }
+        List<String> mapped = new ArrayList<>(values.size());
+        for (String value : values) {
+            mapped.add(extractor.map(value));
+        }
+        return mapped;
+    }
+
+    /**
+     * Character feature list, with one bytes feature of padded and truncated single-character values per token, as extracted by
+     * {@link CharacterFeatureExtractor}.
+     */
+    private static class CharacterFeatures implements WireSequenceExample.Value {
+
+        private final CharacterFeatureExtractor extractor;
+        private final List<String> tokens;
+        private final int[] listSizes;
+        private final int size;
+
+        private CharacterFeatures(CharacterFeatureExtractor extractor, List<String> tokens) {
+            this.extractor = extractor;
+            this.tokens = tokens;
+            this.listSizes = new int[tokens.size()];
+            int size = 0;
+            for (int i = 0; i < listSizes.length; ++i) {
+                listSizes[i] = bytesListSize(tokens.get(i));
+                size += WireSequenceExample.messageSize(FIELD_ONE, WireSequenceExample.messageSize(BYTES_LIST_FIELD, listSizes[i]));
+            }
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void writeTo(CodedOutputStream output) throws IOException {
+            for (int i = 0; i < listSizes.length; ++i) {
+                String token = tokens.get(i);
+                WireSequenceExample.writeHeader(output, FIELD_ONE, WireSequenceExample.messageSize(BYTES_LIST_FIELD, listSizes[i]));
+                WireSequenceExample.writeHeader(output, BYTES_LIST_FIELD, listSizes[i]);
+                for (int position = 0; position < extractor.maxLength(); ++position) {
+                    String padding = padding(token, position);
+                    if (null == padding) {
+                        writeChar(output, token.charAt(position - extractor.leftPadding()));
+                    } else {
+                        output.writeString(FIELD_ONE, padding);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Size of the {@code BytesList} of a given token.
+         */
+        private int bytesListSize(String token) {
+            int size = 0;
+            for (int position = 0; position < extractor.maxLength(); ++position) {
+                String padding = padding(token, position);
+                int length = null == padding ? charLength(token.charAt(position - extractor.leftPadding()))
+                        : WireSequenceExample.utf8Length(padding);
+                size += WireSequenceExample.messageSize(FIELD_ONE, length);
+            }
+            return size;
+        }
+
+        /**
+         * Padding value at a given position, or {@code null} if the position holds a character of the token.
+         */
+        private String padding(String token, int position) {
+            if (position < extractor.leftPadding()) {
+                return extractor.startWord();
+            }
+            position -= extractor.leftPadding();
+            if (position < token.length()) {
+                return null;
+            }
+            position -= token.length();
+            return position < extractor.rightPadding() ? extractor.endWord() : extractor.padWord();
+        }
+
+        private static int charLength(char c) {
+            if (c < 0x80 || Character.isSurrogate(c)) {
+                return 1;
+            }
+            return c < 0x800 ? 2 : 3;
+        }
+
+        /**
+         * Write the length-prefixed UTF-8 encoding of a single-character string.
+         */
+        private static void writeChar(CodedOutputStream output, char c) throws IOException {
+            output.writeTag(FIELD_ONE, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(charLength(c));
+            if (Character.isSurrogate(c)) {
+                // unpaired once split into single characters, so encoded as a replacement character
+                output.writeRawByte((byte) '?');
+            } else if (c < 0x80) {
+                output.writeRawByte((byte) c);
+            } else if (c < 0x800) {
+                output.writeRawByte((byte) (0xc0 | c >>> 6));
+                output.writeRawByte((byte) (0x80 | c & 0x3f));
+            } else {
+                output.writeRawByte((byte) (0xe0 | c >>> 12));
+                output.writeRawByte((byte) (0x80 | c >>> 6 & 0x3f));
+                output.writeRawByte((byte) (0x80 | c & 0x3f));
+            }
+        }
+
+    }
+
+}
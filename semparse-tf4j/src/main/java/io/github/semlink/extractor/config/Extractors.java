@@ -36,6 +36,7 @@ import io.github.semlink.extractor.ScalarExtractor;
 import io.github.semlink.extractor.SequenceExampleExtractor;
 import io.github.semlink.extractor.TextExtractor;
 import io.github.semlink.extractor.Vocabulary;
+import io.github.semlink.extractor.WireSequenceExampleExtractor;
 
 /**
  * Extractor factory.
@@ -47,6 +48,23 @@ public final class Extractors {
     public static SequenceExampleExtractor createExtractor(ExtractorSpec extractorSpec,
                                                            String vocabPath,
                                                            boolean includeTargets) {
+        return createExtractor(extractorSpec, vocabPath, includeTargets, false);
+    }
+
+    /**
+     * Create a sequence example extractor from a given configuration.
+     *
+     * @param extractorSpec  extractor configuration
+     * @param vocabPath      directory of feature vocabularies
+     * @param includeTargets include target features, such as gold labels
+     * @param wireFormat     write serialized examples directly in protobuf wire format (see
+     *                       {@link WireSequenceExampleExtractor}), instead of building them as protos
+     * @return sequence example extractor
+     */
+    public static SequenceExampleExtractor createExtractor(ExtractorSpec extractorSpec,
+                                                           String vocabPath,
+                                                           boolean includeTargets,
+                                                           boolean wireFormat) {
 
         List<Extractor<Feature>> featureExtractors = new ArrayList<>();
         List<Extractor<FeatureList>> featureListExtractors = new ArrayList<>();
@@ -59,6 +77,9 @@ public final class Extractors {
         featureExtractors.add(new ConstantFeatureExtractor("sentence_idx", 0));
         featureExtractors.add(new LengthExtractor(extractorSpec.seqFeat()));
 
+        if (wireFormat) {
+            return new WireSequenceExampleExtractor(featureListExtractors, featureExtractors);
+        }
         return new DefaultSequenceExampleExtractor(featureListExtractors, featureExtractors);
     }
 
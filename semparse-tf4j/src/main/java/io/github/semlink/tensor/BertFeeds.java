@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.DataType;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.github.semlink.extractor.BertSrlInput;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Feeds {@link BertSrlInput BERT SRL inputs} to a model as pre-padded {@code int64} tensors, bypassing construction,
+ * serialization and in-graph parsing of sequence examples.
+ *
+ * @author jgung
+ */
+@Slf4j
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class BertFeeds {
+
+    public static final String IDS_KEY = "bert";
+    public static final String MASK_KEY = "sequence_mask";
+    public static final String MARKER_KEY = "marker";
+    public static final String LENGTH_KEY = "len";
+
+    private final String idsName;
+    private final String maskName;
+    private final String markerName;
+    private final String lengthName;
+
+    /**
+     * Find a signature of a saved model accepting numeric BERT inputs, i.e. {@code int64} inputs for each of {@link #IDS_KEY},
+     * {@link #MASK_KEY}, {@link #MARKER_KEY} and {@link #LENGTH_KEY}.
+     *
+     * @param metaGraphDef serialized meta graph of a saved model
+     * @return feeds for the first matching signature, or empty if the model only accepts serialized examples
+     */
+    public static Optional<BertFeeds> discover(@NonNull byte[] metaGraphDef) {
+        for (ModelSignature signature : ModelSignature.read(metaGraphDef).values()) {
+            Map<String, ModelSignature.TensorInfo> inputs = signature.inputs();
+            if (isInt64(inputs, IDS_KEY) && isInt64(inputs, MASK_KEY) && isInt64(inputs, MARKER_KEY)
+                    && isInt64(inputs, LENGTH_KEY)) {
+                log.info("Using numeric BERT inputs from signature \"{}\"", signature.name());
+                return Optional.of(new BertFeeds(inputs.get(IDS_KEY).name(), inputs.get(MASK_KEY).name(),
+                        inputs.get(MARKER_KEY).name(), inputs.get(LENGTH_KEY).name()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isInt64(Map<String, ModelSignature.TensorInfo> inputs, String key) {
+        ModelSignature.TensorInfo info = inputs.get(key);
+        return null != info && info.dtype() == DataType.DT_INT64_VALUE;
+    }
+
+    /**
+     * Padded {@code [batch, max_length]} ID, mask and marker buffers and a {@code [batch]} length buffer for a batch of inputs,
+     * shared by inference engines consuming primitive tensors.
+     */
+    @Getter
+    @Accessors(fluent = true)
+    public static class Batch {
+
+        private final long[] shape;
+        private final LongBuffer ids;
+        private final LongBuffer mask;
+        private final LongBuffer markers;
+        private final LongBuffer lengths;
+
+        public Batch(@NonNull List<BertSrlInput> inputs) {
+            int maxLength = inputs.stream().mapToInt(BertSrlInput::length).max().orElse(0);
+            shape = new long[]{inputs.size(), maxLength};
+            ids = LongBuffer.allocate(inputs.size() * maxLength);
+            mask = LongBuffer.allocate(inputs.size() * maxLength);
+            markers = LongBuffer.allocate(inputs.size() * maxLength);
+            lengths = LongBuffer.allocate(inputs.size());
+            for (BertSrlInput input : inputs) {
+                int offset = ids.position();
+                put(ids, input.ids(), offset + maxLength);
+                put(mask, input.mask(), offset + maxLength);
+                put(markers, input.markers(), offset + maxLength);
+                lengths.put(input.length());
+            }
+            ids.rewind();
+            mask.rewind();
+            markers.rewind();
+            lengths.rewind();
+        }
+
+        /**
+         * Shape of the {@code [batch]} length buffer.
+         */
+        public long[] lengthShape() {
+            return new long[]{shape[0]};
+        }
+
+    }
+
+    /**
+     * Create padded {@code [batch, max_length]} ID, mask and marker tensors and a {@code [batch]} length tensor.
+     *
+     * @param inputs batch of inputs
+     * @return list of tensors, ordered as ids, mask, markers, lengths
+     */
+    public TensorList createTensors(@NonNull List<BertSrlInput> inputs) {
+        Batch batch = new Batch(inputs);
+        List<Tensor<?>> tensors = new ArrayList<>();
+        TensorList result = new TensorList(tensors);
+        try {
+            tensors.add(Tensor.create(batch.shape(), batch.ids()));
+            tensors.add(Tensor.create(batch.shape(), batch.mask()));
+            tensors.add(Tensor.create(batch.shape(), batch.markers()));
+            tensors.add(Tensor.create(batch.lengthShape(), batch.lengths()));
+            return result;
+        } catch (RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Feed tensors created by {@link #createTensors(List)} to a session runner.
+     */
+    public Session.Runner feed(@NonNull Session.Runner runner, @NonNull TensorList tensors) {
+        return runner.feed(idsName, tensors.get(0))
+                .feed(maskName, tensors.get(1))
+                .feed(markerName, tensors.get(2))
+                .feed(lengthName, tensors.get(3));
+    }
+
+    private static void put(LongBuffer buffer, int[] values, int end) {
+        for (int value : values) {
+            buffer.put(value);
+        }
+        // zero padding is already present in a freshly allocated buffer
+        buffer.position(end);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * Small interned table of output labels, mapping the raw UTF-8 bytes of string tensor elements to compact integer IDs without
+ * materializing a {@link String} per element. Labels are added the first time they are seen, so a table is typically shared by
+ * all calls to a single model. Lookups are lock-free; additions are synchronized and publish a new immutable snapshot.
+ *
+ * @author jgung
+ */
+public class LabelTable {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private static class Snapshot {
+
+        private final String[] labels;
+        private final byte[][] bytes;
+        // open-addressing index over label bytes, holding id + 1 (0 marks an empty slot)
+        private final int[] slots;
+
+        private Snapshot(String[] labels, byte[][] bytes) {
+            this.labels = labels;
+            this.bytes = bytes;
+            int capacity = MIN_CAPACITY;
+            while (capacity < labels.length * 2) {
+                capacity <<= 1;
+            }
+            this.slots = new int[capacity];
+            for (int id = 0; id < bytes.length; ++id) {
+                int slot = hash(bytes[id], 0, bytes[id].length) & (capacity - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        private int find(byte[] value, int offset, int length) {
+            int mask = slots.length - 1;
+            int slot = hash(value, offset, length) & mask;
+            while (slots[slot] != 0) {
+                byte[] candidate = bytes[slots[slot] - 1];
+                if (equal(candidate, value, offset, length)) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+    }
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Initialize a label table with a given list of initial labels, which are assigned IDs in order.
+     *
+     * @param labels initial labels
+     */
+    public LabelTable(@NonNull String... labels) {
+        this.snapshot = new Snapshot(new String[0], new byte[0][]);
+        for (String label : labels) {
+            id(label);
+        }
+    }
+
+    /**
+     * Return the ID for a label given by its UTF-8 bytes, adding it to the table if not already present.
+     *
+     * @param value  UTF-8 encoded label
+     * @param offset start of the label in the given array
+     * @param length length of the label in bytes
+     * @return label ID
+     */
+    public int id(@NonNull byte[] value, int offset, int length) {
+        int id = snapshot.find(value, offset, length);
+        return id >= 0 ? id : add(Arrays.copyOfRange(value, offset, offset + length));
+    }
+
+    /**
+     * Return the ID for a label given by its UTF-8 bytes, adding it to the table if not already present.
+     */
+    public int id(@NonNull byte[] value) {
+        return id(value, 0, value.length);
+    }
+
+    /**
+     * Return the ID for a label, adding it to the table if not already present.
+     */
+    public int id(@NonNull String label) {
+        return id(label.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the (interned) label for a given ID.
+     */
+    public String label(int id) {
+        return snapshot.labels[id];
+    }
+
+    /**
+     * Number of labels in this table.
+     */
+    public int size() {
+        return snapshot.labels.length;
+    }
+
+    private synchronized int add(byte[] value) {
+        Snapshot current = snapshot;
+        int id = current.find(value, 0, value.length);
+        if (id >= 0) {
+            return id;
+        }
+        id = current.labels.length;
+        String[] labels = Arrays.copyOf(current.labels, id + 1);
+        byte[][] bytes = Arrays.copyOf(current.bytes, id + 1);
+        labels[id] = new String(value, StandardCharsets.UTF_8).intern();
+        bytes[id] = value;
+        snapshot = new Snapshot(labels, bytes);
+        return id;
+    }
+
+    private static int hash(byte[] value, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            hash = 31 * hash + value[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equal(byte[] candidate, byte[] value, int offset, int length) {
+        if (candidate.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (candidate[i] != value[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Signature of a saved model, read from the serialized {@code MetaGraphDef} of a loaded bundle. Only tensor names and types of
+ * inputs and outputs are read, directly from the protobuf wire format (the {@code MetaGraphDef} protos are not compiled in this
+ * project).
+ *
+ * @author jgung
+ */
+@Getter
+@ToString
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class ModelSignature {
+
+    // MetaGraphDef
+    private static final int SIGNATURE_DEF_FIELD = 5;
+    // SignatureDef
+    private static final int INPUTS_FIELD = 1;
+    private static final int OUTPUTS_FIELD = 2;
+    // TensorInfo
+    private static final int TENSOR_NAME_FIELD = 1;
+    private static final int TENSOR_DTYPE_FIELD = 2;
+    // map entries
+    private static final int KEY_FIELD = 1;
+    private static final int VALUE_FIELD = 2;
+
+    /**
+     * Name and type of a tensor in a signature.
+     */
+    @Getter
+    @ToString
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    public static class TensorInfo {
+        /**
+         * Tensor name, of the form {@code operation:index}.
+         */
+        private final String name;
+        /**
+         * Numeric value of the tensor's {@link org.tensorflow.framework.DataType}.
+         */
+        private final int dtype;
+    }
+
+    private final String name;
+    private final Map<String, TensorInfo> inputs;
+    private final Map<String, TensorInfo> outputs;
+
+    /**
+     * Read all signatures from a serialized {@code MetaGraphDef}, such as {@link org.tensorflow.SavedModelBundle#metaGraphDef()}.
+     *
+     * @param metaGraphDef serialized meta graph
+     * @return signatures by signature key
+     */
+    public static Map<String, ModelSignature> read(@NonNull byte[] metaGraphDef) {
+        try {
+            Map<String, ModelSignature> signatures = new LinkedHashMap<>();
+            CodedInputStream input = CodedInputStream.newInstance(metaGraphDef);
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) == SIGNATURE_DEF_FIELD) {
+                    ModelSignature signature = readSignatureEntry(input.readBytes().newCodedInput());
+                    signatures.put(signature.name(), signature);
+                } else {
+                    input.skipField(tag);
+                }
+            }
+            return signatures;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read signatures from meta graph", e);
+        }
+    }
+
+    static ModelSignature readSignatureEntry(CodedInputStream input) throws IOException {
+        String key = "";
+        Map<String, TensorInfo> inputs = new LinkedHashMap<>();
+        Map<String, TensorInfo> outputs = new LinkedHashMap<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == KEY_FIELD) {
+                key = input.readString();
+            } else if (field == VALUE_FIELD) {
+                CodedInputStream signatureDef = input.readBytes().newCodedInput();
+                int signatureTag;
+                while ((signatureTag = signatureDef.readTag()) != 0) {
+                    int signatureField = WireFormat.getTagFieldNumber(signatureTag);
+                    if (signatureField == INPUTS_FIELD) {
+                        readTensorEntry(signatureDef.readBytes().newCodedInput(), inputs);
+                    } else if (signatureField == OUTPUTS_FIELD) {
+                        readTensorEntry(signatureDef.readBytes().newCodedInput(), outputs);
+                    } else {
+                        signatureDef.skipField(signatureTag);
+                    }
+                }
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return new ModelSignature(key, inputs, outputs);
+    }
+
+    private static void readTensorEntry(CodedInputStream input, Map<String, TensorInfo> tensors) throws IOException {
+        String key = "";
+        String name = "";
+        int dtype = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == KEY_FIELD) {
+                key = input.readString();
+            } else if (field == VALUE_FIELD) {
+                CodedInputStream tensorInfo = input.readBytes().newCodedInput();
+                int infoTag;
+                while ((infoTag = tensorInfo.readTag()) != 0) {
+                    int infoField = WireFormat.getTagFieldNumber(infoTag);
+                    if (infoField == TENSOR_NAME_FIELD) {
+                        name = tensorInfo.readString();
+                    } else if (infoField == TENSOR_DTYPE_FIELD) {
+                        dtype = tensorInfo.readEnum();
+                    } else {
+                        tensorInfo.skipField(infoTag);
+                    }
+                }
+            } else {
+                input.skipField(tag);
+            }
+        }
+        tensors.put(key, new TensorInfo(name, dtype));
+    }
+
+}
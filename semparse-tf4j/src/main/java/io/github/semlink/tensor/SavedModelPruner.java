@@ -0,0 +1,605 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prunes an exported saved model down to the subgraph needed for inference: the ops the label fetches depend on, plus the
+ * initialization ops run on load (such as lookup table initializers). Variables read by that subgraph are frozen into constants,
+ * so training ops, optimizer slots, savers and the checkpoint are dropped, and constant subexpressions over former variables
+ * become foldable when the pruned model is loaded. Signatures referring to pruned tensors are removed.
+ * <p>
+ * Like {@link ModelSignature}, this works directly on the protobuf wire format, as the {@code MetaGraphDef} protos are not
+ * compiled in this project.
+ * <p>
+ * Usage: {@code SavedModelPruner <model-dir> <output-dir> [fetch...]}, or {@code SavedModelPruner --measure <model-dir>} to only
+ * report load time and resident memory of a model in a fresh process.
+ *
+ * @author jgung
+ */
+@Slf4j
+@Getter
+@Accessors(fluent = true)
+public class SavedModelPruner {
+
+    public static final String SERVE_TAG = "serve";
+    public static final String DEFAULT_FETCH = "gold/labels";
+
+    private static final String SAVED_MODEL_FILE = "saved_model.pb";
+    private static final List<String> ASSET_DIRS = Arrays.asList("assets", "assets.extra");
+    // collections of ops run by the loader, kept along with the ops they depend on
+    private static final List<String> INIT_COLLECTIONS = Arrays.asList("saved_model_main_op", "legacy_init_op",
+            "table_initializer", "asset_filepaths");
+    private static final Set<String> KEPT_COLLECTIONS = new HashSet<>(Arrays.asList("saved_model_main_op", "legacy_init_op",
+            "table_initializer", "asset_filepaths", "saved_model_assets"));
+    private static final Set<String> VARIABLE_OPS = new HashSet<>(Arrays.asList("Variable", "VariableV2"));
+    private static final Set<String> ASSIGN_OPS = new HashSet<>(Arrays.asList("Assign", "AssignAdd", "AssignSub",
+            "AssignVariableOp", "AssignAddVariableOp", "AssignSubVariableOp"));
+    private static final String RESOURCE_VARIABLE_OP = "VarHandleOp";
+    private static final String READ_VARIABLE_OP = "ReadVariableOp";
+    private static final String CONST_OP = "Const";
+    private static final String COLOCATION_ATTR = "_class";
+
+    // SavedModel
+    private static final int SCHEMA_VERSION_FIELD = 1;
+    private static final int META_GRAPHS_FIELD = 2;
+    // MetaGraphDef
+    private static final int GRAPH_DEF_FIELD = 2;
+    private static final int SAVER_DEF_FIELD = 3;
+    private static final int COLLECTION_DEF_FIELD = 4;
+    private static final int SIGNATURE_DEF_FIELD = 5;
+    // GraphDef
+    private static final int NODE_FIELD = 1;
+    // NodeDef
+    private static final int NAME_FIELD = 1;
+    private static final int OP_FIELD = 2;
+    private static final int INPUT_FIELD = 3;
+    private static final int ATTR_FIELD = 5;
+    // AttrValue
+    private static final int TYPE_FIELD = 6;
+    private static final int TENSOR_FIELD = 8;
+    // CollectionDef and NodeList
+    private static final int NODE_LIST_FIELD = 1;
+    private static final int NODE_LIST_VALUE_FIELD = 1;
+    // map entries
+    private static final int KEY_FIELD = 1;
+    private static final int VALUE_FIELD = 2;
+
+    private final List<String> fetches;
+    /**
+     * Number of nodes before pruning.
+     */
+    private int nodesBefore;
+    /**
+     * Number of nodes after pruning.
+     */
+    private int nodesAfter;
+    /**
+     * Number of variables frozen into constants.
+     */
+    private int frozenVariables;
+    /**
+     * Total size of frozen variables in bytes.
+     */
+    private long frozenBytes;
+
+    /**
+     * Initialize a pruner.
+     *
+     * @param fetches names of fetched label tensors, such as {@link #DEFAULT_FETCH}
+     */
+    public SavedModelPruner(@NonNull List<String> fetches) {
+        Preconditions.checkArgument(!fetches.isEmpty(), "At least one fetch is required");
+        this.fetches = new ArrayList<>(fetches);
+    }
+
+    /**
+     * Prune the {@code serve} meta graph of a saved model, writing the pruned model along with its assets to a new directory.
+     *
+     * @param modelDir  saved model directory
+     * @param outputDir output directory
+     */
+    public void prune(@NonNull String modelDir, @NonNull String outputDir) throws IOException {
+        byte[] pruned;
+        try (SavedModelBundle bundle = SavedModelBundle.load(modelDir, SERVE_TAG)) {
+            pruned = pruneMetaGraph(bundle.metaGraphDef(), name -> value(bundle.session(), name));
+        }
+        Path output = Paths.get(outputDir);
+        Files.createDirectories(output);
+        Files.write(output.resolve(SAVED_MODEL_FILE), encode(out -> {
+            out.writeInt64(SCHEMA_VERSION_FIELD, 1);
+            out.writeByteArray(META_GRAPHS_FIELD, pruned);
+        }));
+        for (String assets : ASSET_DIRS) {
+            copyDirectory(Paths.get(modelDir, assets), output.resolve(assets));
+        }
+    }
+
+    /**
+     * Prune a serialized {@code MetaGraphDef}.
+     *
+     * @param metaGraphDef serialized meta graph
+     * @param values       function returning the current value of a variable (or resource variable read) by node name
+     * @return serialized pruned meta graph
+     */
+    byte[] pruneMetaGraph(@NonNull byte[] metaGraphDef, @NonNull Function<String, TensorProto> values) throws IOException {
+        List<RawField> fields = fields(metaGraphDef);
+        Graph graph = null;
+        Map<String, List<String>> collections = new LinkedHashMap<>();
+        for (RawField field : fields) {
+            if (field.number == GRAPH_DEF_FIELD) {
+                graph = new Graph(field.payload());
+            } else if (field.number == COLLECTION_DEF_FIELD) {
+                byte[] entry = field.payload();
+                collections.put(key(entry), nodeList(entry));
+            }
+        }
+        Preconditions.checkArgument(null != graph, "Meta graph has no graph");
+        return prune(fields, graph, collections, values);
+    }
+
+    private byte[] prune(List<RawField> fields, Graph graph, Map<String, List<String>> collections,
+                         Function<String, TensorProto> values) throws IOException {
+        nodesBefore = graph.nodes.size();
+
+        Set<String> fetchOps = new LinkedHashSet<>();
+        for (String fetch : fetches) {
+            Preconditions.checkArgument(graph.nodes.containsKey(opName(fetch)), "Unknown fetch: %s", fetch);
+            fetchOps.add(opName(fetch));
+        }
+        Set<String> roots = new LinkedHashSet<>(fetchOps);
+        for (String collection : INIT_COLLECTIONS) {
+            collections.getOrDefault(collection, Collections.emptyList()).forEach(name -> roots.add(opName(name)));
+        }
+
+        // freeze variables read by the inference subgraph, then drop any assignment to them (e.g. from initializers)
+        Set<String> frozenHandles = new HashSet<>();
+        frozenVariables = 0;
+        frozenBytes = 0;
+        for (String name : graph.reachable(fetchOps, Collections.emptySet())) {
+            Node node = graph.nodes.get(name);
+            boolean variable = VARIABLE_OPS.contains(node.op);
+            if (variable || graph.isResourceRead(node)) {
+                TensorProto value = values.apply(name);
+                graph.nodes.put(name, Node.constant(name, value));
+                frozenHandles.add(variable ? name : opName(node.inputs.get(0)));
+                ++frozenVariables;
+                frozenBytes += value.getTensorContent().size();
+            }
+        }
+        Set<String> dropped = new HashSet<>();
+        for (Node node : graph.nodes.values()) {
+            if (ASSIGN_OPS.contains(node.op) && !node.inputs.isEmpty() && frozenHandles.contains(opName(node.inputs.get(0)))) {
+                dropped.add(node.name);
+            }
+        }
+        Set<String> kept = graph.reachable(roots, dropped);
+        nodesAfter = kept.size();
+
+        return encode(out -> {
+            for (RawField field : fields) {
+                if (field.number == GRAPH_DEF_FIELD) {
+                    out.writeByteArray(GRAPH_DEF_FIELD, graph.encode(kept));
+                } else if (field.number == SAVER_DEF_FIELD) {
+                    log.debug("Dropping saver, variables are frozen");
+                } else if (field.number == COLLECTION_DEF_FIELD) {
+                    String collection = key(field.payload());
+                    if (KEPT_COLLECTIONS.contains(collection)) {
+                        out.writeRawBytes(field.encoded);
+                    } else {
+                        log.debug("Dropping collection {}", collection);
+                    }
+                } else if (field.number == SIGNATURE_DEF_FIELD) {
+                    ModelSignature signature = ModelSignature.readSignatureEntry(CodedInputStream.newInstance(field.payload()));
+                    if (retained(signature, kept)) {
+                        out.writeRawBytes(field.encoded);
+                    } else {
+                        log.info("Dropping signature {}, which refers to pruned tensors", signature.name());
+                    }
+                } else {
+                    out.writeRawBytes(field.encoded);
+                }
+            }
+        });
+    }
+
+    private static boolean retained(ModelSignature signature, Set<String> kept) {
+        return Stream.concat(signature.inputs().values().stream(), signature.outputs().values().stream())
+                .allMatch(tensor -> kept.contains(opName(tensor.name())));
+    }
+
+    /**
+     * Node names and ops of the graph of a serialized {@code MetaGraphDef}, in graph order.
+     */
+    static Map<String, String> ops(@NonNull byte[] metaGraphDef) throws IOException {
+        Map<String, String> ops = new LinkedHashMap<>();
+        for (RawField field : fields(metaGraphDef)) {
+            if (field.number == GRAPH_DEF_FIELD) {
+                new Graph(field.payload()).nodes.values().forEach(node -> ops.put(node.name, node.op));
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Name of the op producing a tensor or referred to by a control input, e.g. {@code gold/labels} for {@code gold/labels:0}.
+     */
+    private static String opName(String input) {
+        String name = input.startsWith("^") ? input.substring(1) : input;
+        int colon = name.lastIndexOf(':');
+        return colon < 0 ? name : name.substring(0, colon);
+    }
+
+    private static TensorProto value(Session session, String name) {
+        try (Tensor<?> tensor = session.runner().fetch(name).run().get(0)) {
+            TensorShapeProto.Builder shape = TensorShapeProto.newBuilder();
+            for (long dim : tensor.shape()) {
+                shape.addDim(TensorShapeProto.Dim.newBuilder().setSize(dim));
+            }
+            ByteBuffer content = ByteBuffer.allocate(tensor.numBytes()).order(ByteOrder.nativeOrder());
+            tensor.writeTo(content);
+            return TensorProto.newBuilder()
+                    .setDtype(dataType(tensor.dataType()))
+                    .setTensorShape(shape)
+                    .setTensorContent(ByteString.copyFrom(content.array()))
+                    .build();
+        }
+    }
+
+    private static DataType dataType(org.tensorflow.DataType dataType) {
+        switch (dataType) {
+            case FLOAT:
+                return DataType.DT_FLOAT;
+            case DOUBLE:
+                return DataType.DT_DOUBLE;
+            case INT32:
+                return DataType.DT_INT32;
+            case UINT8:
+                return DataType.DT_UINT8;
+            case INT64:
+                return DataType.DT_INT64;
+            case BOOL:
+                return DataType.DT_BOOL;
+            default:
+                throw new IllegalArgumentException("Unable to freeze variable of type " + dataType);
+        }
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        if (!Files.isDirectory(source)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a saved model, describing its load time and resident memory. Resident memory is read from {@code /proc} and is not
+     * returned to the OS when a model is closed, so only the first measurement of a process is exact.
+     *
+     * @param modelDir saved model directory
+     * @return load time and resident memory
+     */
+    public static String measure(@NonNull String modelDir) {
+        System.gc();
+        long before = residentBytes();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try (SavedModelBundle ignored = SavedModelBundle.load(modelDir, SERVE_TAG)) {
+            long loadMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            long after = residentBytes();
+            return String.format("loaded in %d ms, resident memory %d MB (+%d MB)", loadMs, after >> 20, (after - before) >> 20);
+        }
+    }
+
+    private static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Unable to read resident memory", e);
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--measure")) {
+            log.info("{}: {}", args[1], measure(args[1]));
+            return;
+        }
+        if (args.length < 2) {
+            System.err.println("Usage: SavedModelPruner <model-dir> <output-dir> [fetch...]\n"
+                    + "       SavedModelPruner --measure <model-dir>");
+            System.exit(1);
+        }
+        List<String> fetches = args.length > 2 ? Arrays.asList(args).subList(2, args.length)
+                : Collections.singletonList(DEFAULT_FETCH);
+        log.info("Original model {}: {}", args[0], measure(args[0]));
+        SavedModelPruner pruner = new SavedModelPruner(fetches);
+        pruner.prune(args[0], args[1]);
+        log.info("Kept {} of {} nodes, froze {} variables ({} MB)", pruner.nodesAfter(), pruner.nodesBefore(),
+                pruner.frozenVariables(), pruner.frozenBytes() >> 20);
+        log.info("Pruned model {}: {}", args[1], measure(args[1]));
+    }
+
+    /**
+     * Graph nodes by name, in graph order, along with other {@code GraphDef} fields (versions, function library).
+     */
+    private static class Graph {
+
+        private final Map<String, Node> nodes = new LinkedHashMap<>();
+        private final List<RawField> other = new ArrayList<>();
+
+        private Graph(byte[] graphDef) throws IOException {
+            for (RawField field : fields(graphDef)) {
+                if (field.number == NODE_FIELD) {
+                    Node node = new Node(field.payload());
+                    nodes.put(node.name, node);
+                } else {
+                    other.add(field);
+                }
+            }
+        }
+
+        private boolean isResourceRead(Node node) {
+            if (!node.op.equals(READ_VARIABLE_OP) || node.inputs.isEmpty()) {
+                return false;
+            }
+            Node handle = nodes.get(opName(node.inputs.get(0)));
+            return null != handle && handle.op.equals(RESOURCE_VARIABLE_OP);
+        }
+
+        private Set<String> reachable(Set<String> roots, Set<String> dropped) {
+            Set<String> visited = new LinkedHashSet<>();
+            Deque<String> pending = new ArrayDeque<>(roots);
+            while (!pending.isEmpty()) {
+                String name = pending.pop();
+                if (dropped.contains(name) || !visited.add(name)) {
+                    continue;
+                }
+                Node node = nodes.get(name);
+                Preconditions.checkState(null != node, "Unknown node: %s", name);
+                for (String input : node.inputs) {
+                    Preconditions.checkState(input.startsWith("^") || !dropped.contains(opName(input)),
+                            "Node %s reads from dropped node %s", name, input);
+                    pending.push(opName(input));
+                }
+            }
+            return visited;
+        }
+
+        private byte[] encode(Set<String> kept) throws IOException {
+            return SavedModelPruner.encode(out -> {
+                for (RawField field : other) {
+                    out.writeRawBytes(field.encoded);
+                }
+                for (Node node : nodes.values()) {
+                    if (kept.contains(node.name)) {
+                        out.writeByteArray(NODE_FIELD, node.encode(kept));
+                    }
+                }
+            });
+        }
+
+    }
+
+    /**
+     * Graph node, with its name, op and inputs decoded and all other fields kept in wire format.
+     */
+    private static class Node {
+
+        private final String name;
+        private final String op;
+        private final List<String> inputs = new ArrayList<>();
+        private final List<RawField> fields;
+
+        private Node(byte[] nodeDef) throws IOException {
+            fields = fields(nodeDef);
+            String name = "";
+            String op = "";
+            for (RawField field : fields) {
+                if (field.number == NAME_FIELD) {
+                    name = field.string();
+                } else if (field.number == OP_FIELD) {
+                    op = field.string();
+                } else if (field.number == INPUT_FIELD) {
+                    inputs.add(field.string());
+                }
+            }
+            this.name = name;
+            this.op = op;
+        }
+
+        private static Node constant(String name, TensorProto value) {
+            try {
+                byte[] dtype = SavedModelPruner.encode(out -> out.writeEnum(TYPE_FIELD, value.getDtypeValue()));
+                byte[] tensor = SavedModelPruner.encode(out -> out.writeMessage(TENSOR_FIELD, value));
+                return new Node(SavedModelPruner.encode(out -> {
+                    out.writeString(NAME_FIELD, name);
+                    out.writeString(OP_FIELD, CONST_OP);
+                    out.writeByteArray(ATTR_FIELD, entry("dtype", dtype));
+                    out.writeByteArray(ATTR_FIELD, entry("value", tensor));
+                }));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to encode constant " + name, e);
+            }
+        }
+
+        /**
+         * Encode this node, dropping control inputs from pruned nodes, and colocation constraints (which may refer to pruned
+         * variables).
+         */
+        private byte[] encode(Set<String> kept) throws IOException {
+            return SavedModelPruner.encode(out -> {
+                for (RawField field : fields) {
+                    if (field.number == INPUT_FIELD
+                            || (field.number == ATTR_FIELD && key(field.payload()).equals(COLOCATION_ATTR))) {
+                        continue;
+                    }
+                    out.writeRawBytes(field.encoded);
+                }
+                for (String input : inputs) {
+                    if (kept.contains(opName(input))) {
+                        out.writeString(INPUT_FIELD, input);
+                    }
+                }
+            });
+        }
+
+    }
+
+    /**
+     * Field of a message in wire format, including its tag.
+     */
+    private static class RawField {
+
+        private final int number;
+        private final byte[] encoded;
+
+        private RawField(int number, byte[] encoded) {
+            this.number = number;
+            this.encoded = encoded;
+        }
+
+        private byte[] payload() throws IOException {
+            CodedInputStream input = CodedInputStream.newInstance(encoded);
+            input.readTag();
+            return input.readByteArray();
+        }
+
+        private String string() throws IOException {
+            return new String(payload(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+    private static List<RawField> fields(byte[] message) throws IOException {
+        List<RawField> fields = new ArrayList<>();
+        CodedInputStream input = CodedInputStream.newInstance(message);
+        while (true) {
+            int start = input.getTotalBytesRead();
+            int tag = input.readTag();
+            if (tag == 0) {
+                return fields;
+            }
+            input.skipField(tag);
+            fields.add(new RawField(WireFormat.getTagFieldNumber(tag),
+                    Arrays.copyOfRange(message, start, input.getTotalBytesRead())));
+        }
+    }
+
+    private static String key(byte[] entry) throws IOException {
+        for (RawField field : fields(entry)) {
+            if (field.number == KEY_FIELD) {
+                return field.string();
+            }
+        }
+        return "";
+    }
+
+    private static List<String> nodeList(byte[] collectionEntry) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (RawField field : fields(collectionEntry)) {
+            if (field.number != VALUE_FIELD) {
+                continue;
+            }
+            for (RawField collectionField : fields(field.payload())) {
+                if (collectionField.number != NODE_LIST_FIELD) {
+                    continue;
+                }
+                for (RawField value : fields(collectionField.payload())) {
+                    if (value.number == NODE_LIST_VALUE_FIELD) {
+                        names.add(value.string());
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private static byte[] entry(String key, byte[] value) throws IOException {
+        return encode(out -> {
+            out.writeString(KEY_FIELD, key);
+            out.writeByteArray(VALUE_FIELD, value);
+        });
+    }
+
+    private interface Encoder {
+        void write(CodedOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        encoder.write(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+}
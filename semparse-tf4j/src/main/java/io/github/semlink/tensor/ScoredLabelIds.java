@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.common.base.Preconditions;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+
+/**
+ * Predicted label IDs of a single sequence, along with the model's confidence in each label.
+ *
+ * @author jgung
+ */
+@Getter
+@Accessors(fluent = true)
+public class ScoredLabelIds {
+
+    private final int[] ids;
+    private final float[] confidences;
+
+    public ScoredLabelIds(@NonNull int[] ids, @NonNull float[] confidences) {
+        Preconditions.checkArgument(ids.length == confidences.length,
+                "Expected one confidence per label: %s vs. %s", ids.length, confidences.length);
+        this.ids = ids;
+        this.confidences = confidences;
+    }
+
+    /**
+     * Number of labels with confidence below a given threshold.
+     */
+    public int countBelow(float threshold) {
+        int count = 0;
+        for (float confidence : confidences) {
+            if (confidence < threshold) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+
+import org.tensorflow.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.NonNull;
+
+/**
+ * Reusable buffer holding a batch of strings, such as serialized examples, in the {@code TF_STRING} tensor encoding: a table of
+ * 64-bit offsets followed by the varint length-prefixed strings, written back to back. A rank 1 string tensor is then created from
+ * the buffer with a single bulk copy, instead of allocating a {@code byte[][]} batch that is copied to native memory one element
+ * at a time.
+ * <p>
+ * Arenas are not thread-safe. Each thread can reuse its own arena through {@link #local()}, which keeps its buffer between
+ * batches unless it grew beyond {@link #MAX_RETAINED_BYTES}.
+ *
+ * @author jgung
+ */
+public final class StringTensorArena {
+
+    /**
+     * Largest buffer retained between batches, beyond which it is released once a tensor has been created.
+     */
+    public static final int MAX_RETAINED_BYTES = 64 * 1024 * 1024;
+
+    private static final int INITIAL_BYTES = 64 * 1024;
+    private static final ThreadLocal<StringTensorArena> LOCAL = ThreadLocal.withInitial(StringTensorArena::new);
+
+    private byte[] buffer = new byte[INITIAL_BYTES];
+    // offsets table, in native byte order as read by TensorFlow
+    private ByteBuffer offsets = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+    private int count;
+    private int added;
+    private int dataStart;
+    private int position;
+
+    /**
+     * Arena of the current thread, to be {@link #reset(int) reset} before each use.
+     */
+    public static StringTensorArena local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Clear this arena, reserving space for a given number of strings.
+     *
+     * @param count number of strings in the next batch
+     * @return this arena
+     */
+    public StringTensorArena reset(int count) {
+        Preconditions.checkArgument(count >= 0, "Count must be non-negative: %s", count);
+        this.count = count;
+        this.added = 0;
+        this.dataStart = Long.BYTES * count;
+        this.position = dataStart;
+        ensureCapacity(0);
+        return this;
+    }
+
+    /**
+     * Append a string.
+     *
+     * @param value string bytes
+     * @return this arena
+     */
+    public StringTensorArena add(@NonNull byte[] value) {
+        int offset = reserve(value.length);
+        System.arraycopy(value, 0, buffer, offset, value.length);
+        return this;
+    }
+
+    /**
+     * Append a string, such as a serialized example received in a request, copied directly from its underlying buffers.
+     *
+     * @param value string bytes
+     * @return this arena
+     */
+    public StringTensorArena add(@NonNull ByteString value) {
+        int offset = reserve(value.size());
+        value.copyTo(buffer, offset);
+        return this;
+    }
+
+    /**
+     * Append a list of strings.
+     *
+     * @param values string bytes
+     * @return this arena
+     */
+    public StringTensorArena addAll(@NonNull List<byte[]> values) {
+        for (byte[] value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Append a string of a given length, to be written by the caller through the returned stream, e.g. a message serialized
+     * directly into the arena. Exactly {@code length} bytes must be written.
+     *
+     * @param length string length in bytes
+     * @return output stream over the appended string
+     */
+    public CodedOutputStream append(int length) {
+        int offset = reserve(length);
+        return CodedOutputStream.newInstance(buffer, offset, length);
+    }
+
+    /**
+     * Number of strings appended since the last reset.
+     */
+    public int size() {
+        return added;
+    }
+
+    /**
+     * Number of bytes used by the encoded batch.
+     */
+    public int bytes() {
+        return position;
+    }
+
+    /**
+     * Create a rank 1 string tensor from the strings appended since the last reset, which must match the reserved count.
+     *
+     * @return string tensor, owned by the caller
+     */
+    public Tensor<String> toTensor() {
+        Preconditions.checkState(added == count, "Expected %s strings in arena, but %s were added", count, added);
+        Tensor<String> tensor = Tensor.create(String.class, new long[]{count}, encoded());
+        if (buffer.length > MAX_RETAINED_BYTES) {
+            buffer = new byte[INITIAL_BYTES];
+            offsets = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+            reset(0);
+        }
+        return tensor;
+    }
+
+    /**
+     * Encoded batch, as copied into string tensors.
+     */
+    ByteBuffer encoded() {
+        return ByteBuffer.wrap(buffer, 0, position);
+    }
+
+    /**
+     * Record the offset of the next string and write its length prefix, returning the offset of its bytes.
+     */
+    private int reserve(int length) {
+        Preconditions.checkState(added < count, "Arena is full, with %s strings reserved", count);
+        Preconditions.checkArgument(length >= 0, "Length must be non-negative: %s", length);
+        ensureCapacity(CodedOutputStream.computeUInt64SizeNoTag(length) + length);
+        offsets.putLong(Long.BYTES * added++, position - dataStart);
+        long remaining = length;
+        while ((remaining & ~0x7fL) != 0) {
+            buffer[position++] = (byte) (remaining & 0x7f | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[position++] = (byte) remaining;
+        int offset = position;
+        position += length;
+        return offset;
+    }
+
+    private void ensureCapacity(int extra) {
+        long required = (long) position + extra;
+        Preconditions.checkState(required <= Integer.MAX_VALUE - 8, "String tensor batch is too large: %s bytes", required);
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * buffer.length)));
+            offsets = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import lombok.NonNull;
+
+import static io.github.semlink.tensor.TFRecordWriter.maskedCrc32c;
+
+/**
+ * Reads records written in the TFRecord format, verifying the checksums of each record's length and data.
+ *
+ * @author jgung
+ * @see TFRecordWriter
+ */
+public class TFRecordReader implements AutoCloseable {
+
+    private final InputStream input;
+    private final byte[] header = new byte[Long.BYTES + Integer.BYTES];
+    private final byte[] footer = new byte[Integer.BYTES];
+
+    public TFRecordReader(@NonNull InputStream input) {
+        this.input = input;
+    }
+
+    public TFRecordReader(@NonNull String path) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(path)));
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return record bytes, or {@code null} at the end of the input
+     * @throws IOException if the input is truncated or a checksum does not match
+     */
+    public byte[] read() throws IOException {
+        int first = input.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        readFully(header, 1, header.length - 1);
+        ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        long length = buffer.getLong();
+        if (buffer.getInt() != maskedCrc32c(header, 0, Long.BYTES)) {
+            throw new IOException("Corrupt TFRecord: length checksum mismatch");
+        }
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt TFRecord: unsupported record length " + length);
+        }
+
+        byte[] record = new byte[(int) length];
+        readFully(record, 0, record.length);
+        readFully(footer, 0, footer.length);
+        if (ByteBuffer.wrap(footer).order(ByteOrder.LITTLE_ENDIAN).getInt() != maskedCrc32c(record, 0, record.length)) {
+            throw new IOException("Corrupt TFRecord: data checksum mismatch");
+        }
+        return record;
+    }
+
+    private void readFully(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            ByteStreams.readFully(input, bytes, offset, length);
+        } catch (EOFException e) {
+            throw new IOException("Truncated TFRecord", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.common.hash.Hashing;
+import com.google.protobuf.MessageLite;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import lombok.NonNull;
+
+/**
+ * Writes records in the TFRecord format read by {@code tf.data.TFRecordDataset}: each record is framed as a little-endian
+ * {@code uint64} length, a masked CRC32C of the length, the record bytes, and a masked CRC32C of the record bytes.
+ *
+ * @author jgung
+ */
+public class TFRecordWriter implements AutoCloseable {
+
+    private static final int MASK_DELTA = 0xa282ead8;
+
+    private final OutputStream output;
+    private final ByteBuffer header = ByteBuffer.allocate(Long.BYTES + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    public TFRecordWriter(@NonNull OutputStream output) {
+        this.output = output;
+    }
+
+    public TFRecordWriter(@NonNull String path) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(path)));
+    }
+
+    /**
+     * Write a single record.
+     */
+    public void write(@NonNull byte[] record) throws IOException {
+        header.clear();
+        header.putLong(record.length);
+        header.putInt(maskedCrc32c(header.array(), 0, Long.BYTES));
+        output.write(header.array());
+        output.write(record);
+        footer.clear();
+        footer.putInt(maskedCrc32c(record, 0, record.length));
+        output.write(footer.array());
+    }
+
+    /**
+     * Write a serialized protocol buffer message, such as a {@code SequenceExample}, as a single record.
+     */
+    public void write(@NonNull MessageLite message) throws IOException {
+        write(message.toByteArray());
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * CRC32C (Castagnoli) checksum of a byte range.
+     */
+    public static int crc32c(@NonNull byte[] bytes, int offset, int length) {
+        return Hashing.crc32c().hashBytes(bytes, offset, length).asInt();
+    }
+
+    /**
+     * Masked CRC32C checksum of a byte range, as used in TFRecord framing to avoid checksums of data containing checksums.
+     */
+    public static int maskedCrc32c(@NonNull byte[] bytes, int offset, int length) {
+        int crc = crc32c(bytes, offset, length);
+        return ((crc >>> 15) | (crc << 17)) + MASK_DELTA;
+    }
+
+}
@@ -18,17 +18,16 @@ package io.github.semlink.tensor;
 
 import org.tensorflow.Tensor;
 
+import java.util.Collections;
 import java.util.List;
 
-import lombok.AllArgsConstructor;
 import lombok.experimental.Delegate;
 
 /**
- * {@link AutoCloseable} wrapper for lists of {@link Tensor tensors}.
+ * {@link AutoCloseable} wrapper for lists of {@link Tensor tensors}, optionally {@link TensorTracker tracked}.
  *
  * @author jgung
  */
-@AllArgsConstructor
 public class TensorList implements List<Tensor<?>>, AutoCloseable {
 
     public static TensorList of(List<Tensor<?>> tensors) {
@@ -40,10 +39,21 @@ public class TensorList implements List<Tensor<?>>, AutoCloseable {
 
     @Delegate
     private List<Tensor<?>> tensors;
+    private List<TensorTracker.Allocation> allocations;
+
+    public TensorList(List<Tensor<?>> tensors) {
+        this(tensors, Collections.emptyList());
+    }
+
+    TensorList(List<Tensor<?>> tensors, List<TensorTracker.Allocation> allocations) {
+        this.tensors = tensors;
+        this.allocations = allocations;
+    }
 
     @Override
     public void close() {
         tensors.forEach(Tensor::close);
+        allocations.forEach(TensorTracker.Allocation::release);
     }
 
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+import org.tensorflow.Tensor;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts for native memory held by {@link Tensor tensors} of a model: live tensor and byte counts, and tensors that became
+ * unreachable without having been closed (leaks), which are logged along with their allocation site when site capture is
+ * enabled. Tensors are tracked by creating them through {@link #track(List)}, and released by closing the returned
+ * {@link TensorList}.
+ * <p>
+ * Leaks are detected when the garbage collector reclaims the Java side of an unclosed tensor, so they are reported with some
+ * delay, and their native memory is never released (it remains counted as live).
+ *
+ * @author jgung
+ */
+@Slf4j
+@Accessors(fluent = true)
+public class TensorTracker {
+
+    private static final ConcurrentMap<String, TensorTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    /**
+     * Snapshot of tracker counters.
+     */
+    @Getter
+    @ToString
+    @Accessors(fluent = true)
+    @AllArgsConstructor
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+    public static class Stats {
+        private final String name;
+        private final long liveTensors;
+        private final long liveBytes;
+        private final long peakBytes;
+        private final long allocatedTensors;
+        private final long leakedTensors;
+        private final long leakedBytes;
+    }
+
+    @Getter
+    private final String name;
+    /**
+     * Record a stack trace for each allocation, reported when a leak is detected. Expensive, so disabled by default unless the
+     * {@code semlink.tensor.capture-sites} system property is set.
+     */
+    @Setter
+    private volatile boolean captureSites = Boolean.getBoolean("semlink.tensor.capture-sites");
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    // unreleased allocations, kept reachable so that they are enqueued once their tensor is collected
+    private final Set<Allocation> live = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicLong liveTensors = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final LongAccumulator peakBytes = new LongAccumulator(Math::max, 0);
+    private final AtomicLong allocatedTensors = new AtomicLong();
+    private final AtomicLong leakedTensors = new AtomicLong();
+    private final AtomicLong leakedBytes = new AtomicLong();
+
+    TensorTracker(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Shared tracker for a given model name, created on first use.
+     */
+    public static TensorTracker forModel(@NonNull String name) {
+        return TRACKERS.computeIfAbsent(name, TensorTracker::new);
+    }
+
+    /**
+     * Statistics of all shared trackers, sorted by name. Pending leaks are detected before counters are read.
+     */
+    public static List<Stats> allStats() {
+        List<Stats> result = new ArrayList<>();
+        for (TensorTracker tracker : new TreeMap<>(TRACKERS).values()) {
+            result.add(tracker.stats());
+        }
+        return result;
+    }
+
+    /**
+     * Track a list of newly created or fetched tensors, returning a {@link TensorList} releasing them when closed.
+     *
+     * @param tensors tensors owned by the caller
+     * @return tracked tensor list
+     */
+    public TensorList track(@NonNull List<Tensor<?>> tensors) {
+        List<Allocation> allocations = new ArrayList<>(tensors.size());
+        for (Tensor<?> tensor : tensors) {
+            allocations.add(register(tensor, tensor.numBytes()));
+        }
+        return new TensorList(new ArrayList<>(tensors), allocations);
+    }
+
+    /**
+     * Track a single newly created tensor, returning a {@link TensorList} releasing it when closed.
+     */
+    public TensorList track(@NonNull Tensor<?> tensor) {
+        return track(Collections.singletonList(tensor));
+    }
+
+    /**
+     * Current counters, after reporting any tensors collected without being closed.
+     */
+    public Stats stats() {
+        detectLeaks();
+        return new Stats(name, liveTensors.get(), liveBytes.get(), peakBytes.get(), allocatedTensors.get(), leakedTensors.get(),
+                leakedBytes.get());
+    }
+
+    Allocation register(Object owner, long bytes) {
+        detectLeaks();
+        Allocation allocation = new Allocation(owner, bytes, captureSites ? new Throwable("Tensor allocated here") : null);
+        live.add(allocation);
+        allocatedTensors.incrementAndGet();
+        liveTensors.incrementAndGet();
+        peakBytes.accumulate(liveBytes.addAndGet(bytes));
+        return allocation;
+    }
+
+    /**
+     * Report allocations whose tensor was collected without having been released.
+     *
+     * @return number of newly detected leaks
+     */
+    int detectLeaks() {
+        int leaks = 0;
+        Reference<?> reference;
+        while (null != (reference = collected.poll())) {
+            Allocation allocation = (Allocation) reference;
+            if (live.remove(allocation)) {
+                ++leaks;
+                leakedTensors.incrementAndGet();
+                leakedBytes.addAndGet(allocation.bytes);
+                if (null != allocation.site) {
+                    log.warn("{}: tensor of {} bytes was never closed", name, allocation.bytes, allocation.site);
+                } else {
+                    log.warn("{}: tensor of {} bytes was never closed (enable semlink.tensor.capture-sites to record "
+                            + "allocation sites)", name, allocation.bytes);
+                }
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * Native allocation of a single tensor, released when the tensor is closed.
+     */
+    final class Allocation extends PhantomReference<Object> {
+
+        private final long bytes;
+        private final Throwable site;
+
+        private Allocation(Object owner, long bytes, Throwable site) {
+            super(owner, collected);
+            this.bytes = bytes;
+            this.site = site;
+        }
+
+        /**
+         * Release this allocation. Has no effect if already released or reported as leaked.
+         */
+        void release() {
+            if (live.remove(this)) {
+                liveTensors.decrementAndGet();
+                liveBytes.addAndGet(-bytes);
+            }
+            clear();
+        }
+
+    }
+
+}
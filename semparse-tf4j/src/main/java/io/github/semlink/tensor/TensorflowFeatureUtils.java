@@ -33,6 +33,23 @@ public final class TensorflowFeatureUtils {
         return builder.build();
     }
 
+    public static Feature int64Feature(long feature) {
+        return Feature.newBuilder()
+            .setInt64List(Int64List.newBuilder().addValue(feature))
+            .build();
+    }
+
+    /**
+     * Build a feature list with a single int64 value per feature, without boxing.
+     */
+    public static FeatureList int64Features(@NonNull int[] features) {
+        FeatureList.Builder builder = FeatureList.newBuilder();
+        for (int feature : features) {
+            builder.addFeature(int64Feature(feature));
+        }
+        return builder.build();
+    }
+
     public static FeatureList stringFeatures(@NonNull List<String> features) {
         FeatureList.Builder builder = FeatureList.newBuilder();
         features.stream()
@@ -16,11 +16,17 @@
 
 package io.github.semlink.tensor;
 
+import com.google.common.base.Preconditions;
+
+import org.tensorflow.DataType;
 import org.tensorflow.Tensor;
 import org.tensorflow.example.SequenceExample;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import lombok.NonNull;
@@ -42,6 +48,134 @@ public final class Tensors {
     }
 
     public static List<List<String>> toStringLists(@NonNull Tensor<?> tensor) {
+        List<List<String>> results = new ArrayList<>();
+        for (byte[][] list : copyStrings(tensor)) {
+            results.add(toStringList(list));
+        }
+
+        return results;
+    }
+
+    /**
+     * Decode a rank 1 or 2 string tensor to rows of label IDs from a given {@link LabelTable}, without creating a {@link String}
+     * or {@code byte[]} per element. Elements matching an ignored label ID (such as padding) are dropped in the same pass.
+     *
+     * @param tensor   string tensor of labels
+     * @param labels   label table, extended with any labels not seen before
+     * @param ignoreId ID of label to drop, or -1 to keep all labels
+     * @return label IDs for each row
+     */
+    public static List<int[]> toLabelIds(@NonNull Tensor<?> tensor, @NonNull LabelTable labels, int ignoreId) {
+        int[] shape = rowShape(tensor);
+        EncodedStrings strings = new EncodedStrings(tensor);
+        List<int[]> results = new ArrayList<>(shape[0]);
+        for (int row = 0, index = 0; row < shape[0]; ++row) {
+            int[] ids = new int[shape[1]];
+            int size = 0;
+            for (int i = 0; i < shape[1]; ++i) {
+                int id = strings.id(index++, labels);
+                if (id != ignoreId) {
+                    ids[size++] = id;
+                }
+            }
+            results.add(size == ids.length ? ids : Arrays.copyOf(ids, size));
+        }
+        return results;
+    }
+
+    /**
+     * Decode a rank 1 or 2 string tensor of labels and a float tensor of the same shape holding the confidence of each label,
+     * dropping elements matching an ignored label ID from both.
+     *
+     * @param tensor      string tensor of labels
+     * @param confidences float tensor of label confidences
+     * @param labels      label table, extended with any labels not seen before
+     * @param ignoreId    ID of label to drop, or -1 to keep all labels
+     * @return scored label IDs for each row
+     */
+    public static List<ScoredLabelIds> toScoredLabelIds(@NonNull Tensor<?> tensor, @NonNull Tensor<?> confidences,
+                                                        @NonNull LabelTable labels, int ignoreId) {
+        Preconditions.checkArgument(Arrays.equals(tensor.shape(), confidences.shape()),
+                "Label and confidence shapes differ: %s vs. %s", Arrays.toString(tensor.shape()),
+                Arrays.toString(confidences.shape()));
+        int[] shape = rowShape(tensor);
+        EncodedStrings strings = new EncodedStrings(tensor);
+        float[][] scores = copyFloats(confidences);
+        List<ScoredLabelIds> results = new ArrayList<>(shape[0]);
+        for (int row = 0, index = 0; row < shape[0]; ++row) {
+            int[] ids = new int[shape[1]];
+            float[] rowScores = new float[shape[1]];
+            int size = 0;
+            for (int i = 0; i < shape[1]; ++i) {
+                int id = strings.id(index++, labels);
+                if (id != ignoreId) {
+                    rowScores[size] = scores[row][i];
+                    ids[size++] = id;
+                }
+            }
+            results.add(size == ids.length ? new ScoredLabelIds(ids, rowScores)
+                    : new ScoredLabelIds(Arrays.copyOf(ids, size), Arrays.copyOf(rowScores, size)));
+        }
+        return results;
+    }
+
+    private static int[] rowShape(Tensor<?> tensor) {
+        long[] shape = tensor.shape();
+        if (shape.length == 2) {
+            return new int[]{(int) shape[0], (int) shape[1]};
+        } else if (shape.length == 1) {
+            return new int[]{1, (int) shape[0]};
+        }
+        throw new IllegalArgumentException("Tensor rank is " + shape.length + ", was expecting 2 or 1.");
+    }
+
+    /**
+     * Contents of a string tensor in the {@code TF_STRING} encoding (a table of 64-bit offsets followed by varint length-prefixed
+     * strings), copied from native memory in bulk so that elements can be read in place.
+     */
+    private static class EncodedStrings {
+
+        private final byte[] data;
+        private final ByteBuffer offsets;
+        private final int dataStart;
+
+        private EncodedStrings(Tensor<?> tensor) {
+            Preconditions.checkArgument(tensor.dataType() == DataType.STRING, "Expected a string tensor, got %s",
+                    tensor.dataType());
+            data = new byte[tensor.numBytes()];
+            tensor.writeTo(ByteBuffer.wrap(data));
+            offsets = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+            dataStart = Long.BYTES * tensor.numElements();
+        }
+
+        private int id(int index, LabelTable labels) {
+            int position = dataStart + (int) offsets.getLong(Long.BYTES * index);
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                length |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return labels.id(data, position, length);
+        }
+
+    }
+
+    private static float[][] copyFloats(Tensor<?> tensor) {
+        long[] shape = tensor.shape();
+        if (shape.length == 2) {
+            return tensor.copyTo(new float[(int) shape[0]][(int) shape[1]]);
+        } else if (shape.length == 1) {
+            float[][] result = new float[1][(int) shape[0]];
+            tensor.copyTo(result[0]);
+            return result;
+        }
+        throw new IllegalArgumentException("Tensor rank is " + shape.length + ", was expecting 2 or 1.");
+    }
+
+    private static byte[][][] copyStrings(Tensor<?> tensor) {
         long[] shape = tensor.shape();
 
         byte[][][] bytes;
@@ -57,13 +191,7 @@ public final class Tensors {
         } else {
             throw new IllegalArgumentException("Tensor rank is " + shape.length + ", was expecting 2 or 1.");
         }
-
-        List<List<String>> results = new ArrayList<>();
-        for (byte[][] list : bytes) {
-            results.add(toStringList(list));
-        }
-
-        return results;
+        return bytes;
     }
 
     public static List<String> toStringList(@NonNull byte[][] bytes) {
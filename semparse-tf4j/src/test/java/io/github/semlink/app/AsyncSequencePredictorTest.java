@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.semlink.app.AsyncSequencePredictor.OverflowPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Asynchronous predictor tests.
+ *
+ * @author jgung
+ */
+public class AsyncSequencePredictorTest {
+
+    @Test
+    public void defaultAsyncIsComplete() throws Exception {
+        SequencePredictor<String> predictor = RecordingPredictor.echo();
+        CompletableFuture<List<String>> result = predictor.predictAsync("a");
+        assertTrue(result.isDone());
+        assertEquals(Collections.singletonList("a"), result.get());
+    }
+
+    @Test
+    public void rejectsWhenFull() throws Exception {
+        RecordingPredictor<String> gated = RecordingPredictor.gatedEcho();
+        AsyncSequencePredictor<String> predictor = new AsyncSequencePredictor<>(gated, 1, 2, OverflowPolicy.REJECT);
+
+        CompletableFuture<List<String>> running = predictor.predictAsync("a");
+        assertTrue(gated.awaitStarted(1, TimeUnit.SECONDS));
+        CompletableFuture<List<String>> queued1 = predictor.predictAsync("b");
+        CompletableFuture<List<String>> queued2 = predictor.predictAsync("c");
+        assertEquals(2, predictor.queueDepth());
+
+        CompletableFuture<List<String>> rejected = predictor.predictAsync("d");
+        try {
+            rejected.get();
+            fail("Expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        gated.release();
+        assertEquals(Collections.singletonList("a"), running.get(1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("b"), queued1.get(1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("c"), queued2.get(1, TimeUnit.SECONDS));
+        predictor.close();
+    }
+
+    @Test
+    public void blocksWhenFull() throws Exception {
+        RecordingPredictor<String> gated = RecordingPredictor.gatedEcho();
+        AsyncSequencePredictor<String> predictor = new AsyncSequencePredictor<>(gated, 1, 1, OverflowPolicy.BLOCK);
+
+        predictor.predictAsync("a");
+        assertTrue(gated.awaitStarted(1, TimeUnit.SECONDS));
+        predictor.predictAsync("b");
+
+        CompletableFuture<CompletableFuture<List<String>>> blocked = CompletableFuture.supplyAsync(
+                () -> predictor.predictAsync("c"));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        gated.release();
+        assertEquals(Collections.singletonList("c"), blocked.get(1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS));
+        predictor.close();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Batch pipeline tests.
+ *
+ * @author jgung
+ */
+public class BatchPipelineTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void preservesOrder() {
+        BatchPipeline<Integer, List<Integer>, List<Integer>, String> pipeline = new BatchPipeline<>(
+                chunk -> chunk,
+                features -> features.stream().map(i -> i * 2).collect(Collectors.toList()),
+                outputs -> outputs.stream().map(String::valueOf).collect(Collectors.toList()));
+        List<String> expected = range(103).stream().map(i -> String.valueOf(i * 2)).collect(Collectors.toList());
+        assertEquals(expected, pipeline.run(range(103), 10, executor));
+    }
+
+    @Test
+    public void overlapsExtractionWithInference() {
+        CountDownLatch secondExtracted = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        BatchPipeline<Integer, List<Integer>, List<Integer>, Integer> pipeline = new BatchPipeline<>(
+                chunk -> {
+                    if (chunk.get(0) == 2) {
+                        secondExtracted.countDown();
+                    }
+                    return chunk;
+                },
+                features -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        if (features.get(0) == 0) {
+                            // first inference call only completes once the next chunk has been extracted
+                            assertTrue(secondExtracted.await(1, TimeUnit.SECONDS));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return features;
+                },
+                outputs -> outputs);
+        assertEquals(range(6), pipeline.run(range(6), 2, executor));
+        // inference calls are serialized
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void propagatesFailures() {
+        BatchPipeline<Integer, List<Integer>, List<Integer>, Integer> pipeline = new BatchPipeline<>(
+                chunk -> chunk,
+                features -> {
+                    if (features.get(0) == 4) {
+                        throw new IllegalStateException("Inference failed");
+                    }
+                    return features;
+                },
+                outputs -> outputs);
+        try {
+            pipeline.run(range(10), 2, executor);
+            fail("Expected failure");
+        } catch (IllegalStateException e) {
+            assertEquals("Inference failed", e.getMessage());
+        }
+    }
+
+}
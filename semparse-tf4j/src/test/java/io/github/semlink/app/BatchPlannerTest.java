@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Length-bucketed batch planning tests.
+ *
+ * @author jgung
+ */
+public class BatchPlannerTest {
+
+    @Test
+    public void bucketsByTokenBudget() {
+        int[] lengths = {80, 6, 7, 82, 6, 30};
+        List<int[]> buckets = new BatchPlanner(100).plan(lengths);
+
+        assertEquals(4, buckets.size());
+        assertArrayEquals(new int[]{1, 4, 2}, buckets.get(0));
+        assertArrayEquals(new int[]{5}, buckets.get(1));
+        assertArrayEquals(new int[]{0}, buckets.get(2));
+        assertArrayEquals(new int[]{3}, buckets.get(3));
+    }
+
+    @Test
+    public void oversizedRowGetsOwnBucket() {
+        List<int[]> buckets = new BatchPlanner(10).plan(new int[]{50, 3});
+        assertEquals(2, buckets.size());
+        assertArrayEquals(new int[]{1}, buckets.get(0));
+        assertArrayEquals(new int[]{0}, buckets.get(1));
+    }
+
+    @Test
+    public void respectsMaxRows() {
+        List<int[]> buckets = new BatchPlanner(1000, 2).plan(new int[]{1, 1, 1, 1, 1});
+        assertEquals(3, buckets.size());
+        assertEquals(5, buckets.stream().mapToInt(bucket -> bucket.length).sum());
+    }
+
+    /**
+     * Compare padded tokens for a mixed batch of short sentences and a few long sentences with many predicates.
+     */
+    @Test
+    public void paddingSavings() {
+        Random random = new Random(0);
+        int[] lengths = IntStream.range(0, 256)
+                .map(i -> i % 16 == 0 ? 60 + random.nextInt(60) : 8 + random.nextInt(24))
+                .toArray();
+
+        long unbucketed = BatchPlanner.paddedTokens(lengths, Collections.singletonList(IntStream.range(0, lengths.length)
+                .toArray()));
+        long bucketed = BatchPlanner.paddedTokens(lengths, new BatchPlanner(2048).plan(lengths));
+        long actual = Arrays.stream(lengths).sum();
+
+        assertTrue(bucketed >= actual);
+        assertTrue(bucketed < unbucketed / 2);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Micro-batching predictor tests.
+ *
+ * @author jgung
+ */
+public class BatchingSequencePredictorTest {
+
+    @Test
+    public void coalescesConcurrentCalls() throws Exception {
+        RecordingPredictor<String> echo = RecordingPredictor.echo();
+        BatchingSequencePredictor<String> predictor = new BatchingSequencePredictor<>(echo, 8, 200, TimeUnit.MILLISECONDS);
+
+        List<CompletableFuture<List<List<String>>>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            futures.add(predictor.predictBatchAsync(Arrays.asList("a" + i, "b" + i)));
+        }
+        for (int i = 0; i < futures.size(); ++i) {
+            assertEquals(Arrays.asList(Collections.singletonList("a" + i), Collections.singletonList("b" + i)),
+                    futures.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(Collections.singletonList(8), echo.batchSizes());
+        assertEquals(8, predictor.averageBatchSize(), 0);
+        predictor.close();
+    }
+
+    @Test
+    public void flushesAfterMaxWait() {
+        RecordingPredictor<String> echo = RecordingPredictor.echo();
+        BatchingSequencePredictor<String> predictor = new BatchingSequencePredictor<>(echo, 100, 5, TimeUnit.MILLISECONDS);
+
+        assertEquals(Collections.singletonList("x"), predictor.predict("x"));
+        assertEquals(Collections.singletonList(1), echo.batchSizes());
+        predictor.close();
+    }
+
+    @Test
+    public void neverExceedsMaxBatchSize() throws Exception {
+        RecordingPredictor<String> echo = RecordingPredictor.echo();
+        BatchingSequencePredictor<String> predictor = new BatchingSequencePredictor<>(echo, 3, 50, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<List<List<String>>> first = predictor.predictBatchAsync(Arrays.asList("a", "b"));
+        CompletableFuture<List<List<String>>> second = predictor.predictBatchAsync(Arrays.asList("c", "d"));
+        CompletableFuture<List<List<String>>> large = predictor.predictBatchAsync(Arrays.asList("e", "f", "g", "h"));
+
+        assertEquals(2, first.get(1, TimeUnit.SECONDS).size());
+        assertEquals(2, second.get(1, TimeUnit.SECONDS).size());
+        assertEquals(4, large.get(1, TimeUnit.SECONDS).size());
+        // oversized calls are run on their own rather than split
+        assertEquals(Arrays.asList(2, 2, 4), echo.batchSizes());
+        assertTrue(predictor.queueDepth() == 0);
+        predictor.close();
+    }
+
+    @Test
+    public void errorsFailBatchWithoutStoppingWorkers() throws Exception {
+        RecordingPredictor<String> failing = new RecordingPredictor<>(input -> {
+            if ("boom".equals(input)) {
+                throw new LinkageError("boom");
+            }
+            return Collections.singletonList(input);
+        });
+        BatchingSequencePredictor<String> predictor = new BatchingSequencePredictor<>(failing, 8, 1, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<List<List<String>>> failed = predictor.predictBatchAsync(Collections.singletonList("boom"));
+        try {
+            failed.get(1, TimeUnit.SECONDS);
+            fail("Expected batch to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LinkageError);
+        }
+        assertEquals(Collections.singletonList("ok"), predictor.predict("ok"));
+        predictor.close();
+    }
+
+    @Test
+    public void blockingCallsTimeOut() throws Exception {
+        RecordingPredictor<String> stalled = RecordingPredictor.gatedEcho();
+        BatchingSequencePredictor<String> predictor = new BatchingSequencePredictor<>(stalled, 8, 1, TimeUnit.MILLISECONDS)
+                .timeoutMs(50);
+        try {
+            predictor.predict("x");
+            fail("Expected blocking call to time out");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Timed out"));
+        } finally {
+            stalled.release();
+            predictor.close();
+        }
+    }
+
+}
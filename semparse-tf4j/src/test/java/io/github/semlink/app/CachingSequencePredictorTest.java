@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prediction cache tests.
+ *
+ * @author jgung
+ */
+public class CachingSequencePredictorTest {
+
+    /**
+     * Predictor that labels each input with its upper-cased characters, recording each batch.
+     */
+    private static RecordingPredictor<String> upperCase() {
+        return new RecordingPredictor<>(input -> input.toUpperCase().chars()
+                .mapToObj(c -> String.valueOf((char) c))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void predictsOnlyMisses() {
+        RecordingPredictor<String> model = upperCase();
+        CachingSequencePredictor<String, String> predictor = new CachingSequencePredictor<>(model, Function.identity(), 100);
+
+        assertEquals(Arrays.asList(Arrays.asList("A", "B"), Collections.singletonList("C")),
+                predictor.predictBatch(Arrays.asList("ab", "c")));
+        assertEquals(Arrays.asList(Collections.singletonList("C"), Arrays.asList("D", "E"), Collections.singletonList("C"),
+                Arrays.asList("A", "B")), predictor.predictBatch(Arrays.asList("c", "de", "c", "ab")));
+
+        assertEquals(Arrays.asList(Arrays.asList("ab", "c"), Collections.singletonList("de")), model.batches());
+        assertEquals(3, predictor.stats().hitCount());
+        assertEquals(3, predictor.stats().missCount());
+    }
+
+    @Test
+    public void invalidateAll() {
+        RecordingPredictor<String> model = upperCase();
+        CachingSequencePredictor<String, String> predictor = new CachingSequencePredictor<>(model, Function.identity(), 100);
+        predictor.predict("ab");
+        predictor.invalidateAll();
+        assertEquals(0, predictor.size());
+        predictor.predict("ab");
+        assertEquals(2, model.batches().size());
+    }
+
+    @Test
+    public void discardsPredictionsInFlightDuringInvalidation() throws Exception {
+        RecordingPredictor<String> model = new RecordingPredictor<>(input -> Collections.singletonList(input.toUpperCase()),
+                true);
+        CachingSequencePredictor<String, String> predictor = new CachingSequencePredictor<>(model, Function.identity(), 100);
+
+        CompletableFuture<List<String>> inFlight = CompletableFuture.supplyAsync(() -> predictor.predict("ab"));
+        assertTrue(model.awaitStarted(1, TimeUnit.SECONDS));
+        predictor.invalidateAll();
+        model.release();
+        assertEquals(Collections.singletonList("AB"), inFlight.get(1, TimeUnit.SECONDS));
+
+        // stored after invalidation, but predicted before it
+        predictor.predict("ab");
+        assertEquals(2, model.batches().size());
+        predictor.predict("ab");
+        assertEquals(2, model.batches().size());
+        assertEquals(1, predictor.stats().hitCount());
+        assertEquals(2, predictor.stats().missCount());
+    }
+
+    @Test
+    public void boundedByLabels() {
+        RecordingPredictor<String> model = upperCase();
+        CachingSequencePredictor<String, String> predictor = new CachingSequencePredictor<>(model, Function.identity(), 10, 1);
+        for (int i = 0; i < 20; ++i) {
+            predictor.predict("abcde" + i);
+        }
+        // each prediction has 6 labels, so only the most recent fits
+        assertEquals(1, predictor.size());
+        predictor.predict("abcde19");
+        assertEquals(20, model.batches().size());
+        assertEquals(19, predictor.stats().evictionCount());
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.github.semlink.tensor.LabelTable;
+import io.github.semlink.tensor.ScoredLabelIds;
+import lombok.NonNull;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cascading predictor tests.
+ *
+ * @author jgung
+ */
+public class CascadingSequencePredictorTest {
+
+    /**
+     * Light predictor labeling each character "L", unsure of any '?' character.
+     */
+    private static class LightPredictor implements ScoredSequencePredictor<String> {
+
+        private final LabelTable labels = new LabelTable("X", "L");
+
+        @Override
+        public LabelTable labels() {
+            return labels;
+        }
+
+        @Override
+        public List<ScoredLabelIds> predictBatchScored(@NonNull List<String> inputs) {
+            List<ScoredLabelIds> result = new ArrayList<>();
+            for (String input : inputs) {
+                int[] ids = new int[input.length()];
+                float[] confidences = new float[input.length()];
+                for (int i = 0; i < input.length(); ++i) {
+                    ids[i] = labels.id("L");
+                    confidences[i] = input.charAt(i) == '?' ? 0.5f : 0.99f;
+                }
+                result.add(new ScoredLabelIds(ids, confidences));
+            }
+            return result;
+        }
+
+        @Override
+        public List<int[]> predictBatchIds(@NonNull List<String> inputs) {
+            return predictBatchScored(inputs).stream()
+                    .map(ScoredLabelIds::ids)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<List<String>> predictBatch(@NonNull List<String> inputs) {
+            return predictBatchIds(inputs).stream()
+                    .map(ids -> Arrays.stream(ids).mapToObj(labels::label).collect(Collectors.toList()))
+                    .collect(Collectors.toList());
+        }
+
+    }
+
+    /**
+     * Heavy predictor labeling each character "H", recording each batch.
+     */
+    private static RecordingPredictor<String> heavy() {
+        return new RecordingPredictor<>(input -> Collections.nCopies(input.length(), "H"));
+    }
+
+    @Test
+    public void escalatesLowConfidenceRows() {
+        RecordingPredictor<String> heavy = heavy();
+        CascadingSequencePredictor<String> predictor = new CascadingSequencePredictor<>(new LightPredictor(), heavy, 0.9f);
+
+        assertEquals(Arrays.asList(Arrays.asList("L", "L"), Arrays.asList("H", "H"), Collections.singletonList("L"),
+                Arrays.asList("H", "H", "H")), predictor.predictBatch(Arrays.asList("ab", "a?", "c", "??d")));
+        assertEquals(Collections.singletonList(Arrays.asList("a?", "??d")), heavy.batches());
+
+        CascadingSequencePredictor.Stats stats = predictor.counters().stats();
+        assertEquals(4, stats.rows());
+        assertEquals(2, stats.lightRows());
+        assertEquals(2, stats.heavyRows());
+        assertEquals(0.5, stats.heavyFraction(), 1e-9);
+    }
+
+    @Test
+    public void toleratesLowConfidenceLabels() {
+        RecordingPredictor<String> heavy = heavy();
+        CascadingSequencePredictor<String> predictor = new CascadingSequencePredictor<>(new LightPredictor(), heavy, 0.9f)
+                .maxLowConfidenceLabels(1);
+
+        assertEquals(Arrays.asList(Arrays.asList("L", "L"), Arrays.asList("H", "H", "H")),
+                predictor.predictBatch(Arrays.asList("a?", "??d")));
+        assertEquals(Collections.singletonList(Collections.singletonList("??d")), heavy.batches());
+    }
+
+    @Test
+    public void skipsHeavyModelWhenConfident() {
+        RecordingPredictor<String> heavy = heavy();
+        CascadingSequencePredictor<String> predictor = new CascadingSequencePredictor<>(new LightPredictor(), heavy, 0.9f);
+        predictor.predictBatch(Arrays.asList("ab", "cd"));
+        assertEquals(0, heavy.batches().size());
+        assertEquals(0, predictor.counters().stats().heavyRows());
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.semlink.app.SessionPool.Mode;
+import lombok.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Execution profile and tuner tests.
+ *
+ * @author jgung
+ */
+public class ExecutionProfileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void configProto() throws IOException {
+        byte[] config = new ExecutionProfile()
+                .intraOpThreads(4)
+                .interOpThreads(2)
+                .usePerSessionThreads(true)
+                .operationTimeoutMs(30000)
+                .toConfigProto();
+
+        Map<Integer, Long> fields = new HashMap<>();
+        CodedInputStream input = CodedInputStream.newInstance(config);
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            fields.put(WireFormat.getTagFieldNumber(tag), input.readInt64());
+        }
+        assertEquals(4L, (long) fields.get(2));
+        assertEquals(2L, (long) fields.get(5));
+        assertEquals(1L, (long) fields.get(9));
+        assertEquals(30000L, (long) fields.get(11));
+        assertEquals(4, fields.size());
+    }
+
+    @Test
+    public void defaultConfigProtoIsEmpty() {
+        assertEquals(0, new ExecutionProfile().toConfigProto().length);
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        ExecutionProfile profile = new ExecutionProfile()
+                .sessions(2)
+                .mode(Mode.SHARED)
+                .intraOpThreads(3)
+                .usePerSessionThreads(true);
+        File file = folder.newFile("profile.json");
+        profile.write(file);
+        assertEquals(profile, ExecutionProfile.read(file));
+    }
+
+    @Test
+    public void candidatesFitCores() {
+        List<ExecutionProfile> candidates = ExecutionProfileTuner.candidates(4);
+        assertTrue(candidates.stream().allMatch(p -> p.sessions() * p.intraOpThreads() <= 4));
+        assertTrue(candidates.stream().allMatch(ExecutionProfile::usePerSessionThreads));
+        // sessions x intra-op: 1x1, 1x2, 1x4, 2x1, 2x2, 4x1, each with 2 inter-op settings and 2 modes
+        assertEquals(24, candidates.size());
+    }
+
+    @Test
+    public void tunerSelectsFastestProfile() {
+        ExecutionProfileTuner<String> tuner = new ExecutionProfileTuner<>(profile -> new SequencePredictor<String>() {
+            @Override
+            public List<List<String>> predictBatch(@NonNull List<String> inputs) {
+                try {
+                    // more intra-op threads are faster
+                    Thread.sleep(8 / profile.intraOpThreads());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.singletonList(inputs);
+            }
+        }, Collections.nCopies(4, Collections.singletonList("a"))).clients(2).passes(2);
+
+        ExecutionProfileTuner.Result best = tuner.tune(Arrays.asList(new ExecutionProfile().intraOpThreads(1),
+                new ExecutionProfile().intraOpThreads(8)), ExecutionProfileTuner.Objective.P99_LATENCY);
+        assertEquals(8, best.profile().intraOpThreads());
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Model registry tests.
+ *
+ * @author jgung
+ */
+public class ModelRegistryTest {
+
+    private final List<RecordingPredictor<String>> loaded = new CopyOnWriteArrayList<>();
+
+    private SequencePredictor<String> load(String location) {
+        if (location.equals("broken")) {
+            throw new IllegalArgumentException("Unable to load model");
+        }
+        // models from "slow" locations hold calls until released
+        RecordingPredictor<String> predictor = new RecordingPredictor<>(input -> Collections.singletonList(location),
+                location.startsWith("slow"));
+        loaded.add(predictor);
+        return predictor;
+    }
+
+    @Test
+    public void swapsAndDrains() throws Exception {
+        List<String> swapped = new CopyOnWriteArrayList<>();
+        ModelRegistry<String> registry = new ModelRegistry<>(this::load).addListener(swapped::add);
+
+        String v1 = registry.load("slow-v1").get(1, TimeUnit.SECONDS);
+        assertEquals(v1, registry.loaded().get());
+        RecordingPredictor<String> first = loaded.get(0);
+
+        CompletableFuture<ModelRegistry.Versioned<List<List<String>>>> inFlight = CompletableFuture.supplyAsync(
+                () -> registry.predictBatchWithVersion(Collections.singletonList("a")));
+        assertTrue(first.awaitStarted(1, TimeUnit.SECONDS));
+
+        String v2 = registry.load("v2").get(1, TimeUnit.SECONDS);
+        assertEquals(v2, registry.version());
+        assertEquals(Collections.singletonList(Collections.singletonList("v2")), registry.predictBatch(
+                Collections.singletonList("b")));
+        // old version remains open until its call in flight completes
+        assertFalse(first.closed());
+
+        first.release();
+        ModelRegistry.Versioned<List<List<String>>> result = inFlight.get(1, TimeUnit.SECONDS);
+        assertEquals(v1, result.version());
+        assertEquals(Collections.singletonList(Collections.singletonList("slow-v1")), result.result());
+        assertTrue(first.closed());
+        assertEquals(Arrays.asList(v1, v2), swapped);
+
+        registry.close();
+        assertTrue(loaded.get(1).closed());
+    }
+
+    @Test
+    public void versionKeyedCacheNeverServesPreviousVersion() throws Exception {
+        ModelRegistry<String> registry = new ModelRegistry<>(this::load);
+        CachingSequencePredictor<String, List<String>> cache = new CachingSequencePredictor<>(registry,
+                input -> Arrays.asList(registry.version(), input), 100);
+        registry.load("v1").get(1, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("v1"), cache.predict("a"));
+
+        // no listener invalidates the cache
+        registry.load("v2").get(1, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("v2"), cache.predict("a"));
+        assertEquals(Collections.singletonList("v2"), cache.predict("a"));
+        assertEquals(1, cache.stats().hitCount());
+        cache.close();
+    }
+
+    @Test
+    public void failedLoadKeepsCurrentVersion() throws Exception {
+        ModelRegistry<String> registry = new ModelRegistry<>(this::load);
+        String v1 = registry.load("v1").get(1, TimeUnit.SECONDS);
+        try {
+            registry.load("broken").get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(v1, registry.version());
+        assertEquals(Collections.singletonList("v1"), registry.predict("a"));
+        registry.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsBeforeFirstLoad() {
+        new ModelRegistry<>(this::load).predict("a");
+    }
+
+}
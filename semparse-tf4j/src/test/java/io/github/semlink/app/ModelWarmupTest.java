@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Model warm-up tests.
+ *
+ * @author jgung
+ */
+public class ModelWarmupTest {
+
+    private static List<String> shapes(RecordingPredictor<Integer> predictor) {
+        return predictor.batches().stream()
+                .map(batch -> batch.size() + "x" + batch.get(0))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void coversGrid() {
+        RecordingPredictor<Integer> predictor = RecordingPredictor.echo();
+        List<ModelWarmup.ShapeLatency> latencies = new ModelWarmup<>(predictor, length -> length)
+                .batchSizes(new int[]{1, 4})
+                .lengths(new int[]{8, 16})
+                .iterations(2)
+                .run();
+
+        assertEquals(4, latencies.size());
+        assertEquals(4, latencies.get(1).batchSize());
+        assertEquals(8, latencies.get(1).length());
+        assertEquals(8, shapes(predictor).size());
+        assertEquals(2, Collections.frequency(shapes(predictor), "4x16"));
+    }
+
+    @Test
+    public void concurrentCalls() {
+        RecordingPredictor<Integer> predictor = RecordingPredictor.echo();
+        new ModelWarmup<>(predictor, length -> length)
+                .batchSizes(new int[]{2})
+                .lengths(new int[]{4})
+                .iterations(1)
+                .concurrency(3)
+                .run();
+
+        assertEquals(Collections.nCopies(3, "2x4"), shapes(predictor));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import lombok.NonNull;
+
+/**
+ * Test {@link SequencePredictor} labeling each input with a given function and recording every batch it is called with. A gated
+ * predictor holds each call until {@link #release()} is called.
+ *
+ * @param <T> input type
+ * @author jgung
+ */
+class RecordingPredictor<T> implements SequencePredictor<T> {
+
+    private final Function<T, List<String>> labeler;
+    private final List<List<T>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch gate;
+    private volatile boolean closed;
+
+    RecordingPredictor(@NonNull Function<T, List<String>> labeler, boolean gated) {
+        this.labeler = labeler;
+        this.gate = new CountDownLatch(gated ? 1 : 0);
+    }
+
+    RecordingPredictor(@NonNull Function<T, List<String>> labeler) {
+        this(labeler, false);
+    }
+
+    /**
+     * Predictor labeling each input with its string value.
+     */
+    static <T> RecordingPredictor<T> echo() {
+        return new RecordingPredictor<>(input -> Collections.singletonList(String.valueOf(input)));
+    }
+
+    /**
+     * Gated predictor labeling each input with its string value.
+     */
+    static <T> RecordingPredictor<T> gatedEcho() {
+        return new RecordingPredictor<>(input -> Collections.singletonList(String.valueOf(input)), true);
+    }
+
+    @Override
+    public List<List<String>> predictBatch(@NonNull List<T> inputs) {
+        batches.add(new ArrayList<>(inputs));
+        started.countDown();
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (closed) {
+            throw new IllegalStateException("Closed predictor was called");
+        }
+        return inputs.stream().map(labeler).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Wait until the first call has been made.
+     */
+    boolean awaitStarted(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return started.await(timeout, unit);
+    }
+
+    /**
+     * Let held and future calls complete.
+     */
+    void release() {
+        gate.countDown();
+    }
+
+    List<List<T>> batches() {
+        return batches;
+    }
+
+    List<Integer> batchSizes() {
+        return batches.stream().map(List::size).collect(Collectors.toList());
+    }
+
+    boolean closed() {
+        return closed;
+    }
+
+}
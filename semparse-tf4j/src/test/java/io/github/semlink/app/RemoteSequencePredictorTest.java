@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.example.FeatureLists;
+import org.tensorflow.example.SequenceExample;
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import tensorflow.serving.Model;
+import tensorflow.serving.Predict;
+import tensorflow.serving.PredictionServiceGrpc;
+
+import static io.github.semlink.tensor.TensorflowFeatureUtils.stringFeatures;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Remote predictor tests against an in-process prediction service.
+ *
+ * @author jgung
+ */
+public class RemoteSequencePredictorTest {
+
+    private static final String WORDS = "word";
+
+    /**
+     * Prediction service returning upper-cased words as labels, padded with ignored labels, after a number of failed calls. While
+     * holding, calls are left unanswered until released.
+     */
+    private static class UpperCaseService extends PredictionServiceGrpc.PredictionServiceImplBase {
+
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<Runnable> held = new CopyOnWriteArrayList<>();
+        private volatile boolean hold;
+
+        @Override
+        public void predict(Predict.PredictRequest request, StreamObserver<Predict.PredictResponse> responseObserver) {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+            } else if (hold) {
+                held.add(() -> respond(request, responseObserver));
+            } else {
+                respond(request, responseObserver);
+            }
+        }
+
+        private void release() {
+            hold = false;
+            held.forEach(Runnable::run);
+        }
+
+        private void respond(Predict.PredictRequest request, StreamObserver<Predict.PredictResponse> responseObserver) {
+            try {
+                List<List<String>> rows = new ArrayList<>();
+                for (ByteString serialized : request.getInputsOrThrow("examples").getStringValList()) {
+                    List<String> labels = new ArrayList<>();
+                    SequenceExample.parseFrom(serialized).getFeatureLists().getFeatureListOrThrow(WORDS).getFeatureList()
+                            .forEach(feature -> labels.add(feature.getBytesList().getValue(0).toStringUtf8().toUpperCase()));
+                    rows.add(labels);
+                }
+                int columns = rows.stream().mapToInt(List::size).max().orElse(0);
+                TensorProto.Builder output = TensorProto.newBuilder()
+                        .setDtype(DataType.DT_STRING)
+                        .setTensorShape(TensorShapeProto.newBuilder()
+                                .addDim(TensorShapeProto.Dim.newBuilder().setSize(rows.size()))
+                                .addDim(TensorShapeProto.Dim.newBuilder().setSize(columns)));
+                for (List<String> row : rows) {
+                    row.forEach(label -> output.addStringVal(ByteString.copyFromUtf8(label)));
+                    for (int i = row.size(); i < columns; ++i) {
+                        output.addStringVal(ByteString.copyFromUtf8("X"));
+                    }
+                }
+                responseObserver.onNext(Predict.PredictResponse.newBuilder().putOutputs("output", output.build()).build());
+                responseObserver.onCompleted();
+            } catch (InvalidProtocolBufferException e) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withCause(e).asRuntimeException());
+            }
+        }
+
+    }
+
+    private UpperCaseService service;
+    private Server server;
+    private RemoteSequencePredictor predictor;
+
+    @Before
+    public void setUp() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        service = new UpperCaseService();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+
+        SequenceExampleExtractor extractor = fields -> SequenceExample.newBuilder()
+                .setFeatureLists(FeatureLists.newBuilder()
+                        .putFeatureList(WORDS, stringFeatures(fields.field(WORDS))))
+                .build();
+        List<ManagedChannel> channels = Arrays.asList(
+                InProcessChannelBuilder.forName(name).directExecutor().build(),
+                InProcessChannelBuilder.forName(name).directExecutor().build());
+        predictor = new RemoteSequencePredictor(extractor, channels, Model.ModelSpec.newBuilder().setName("srl").build(), 4);
+    }
+
+    @After
+    public void tearDown() {
+        predictor.close();
+        server.shutdownNow();
+    }
+
+    private static HasFields words(String... words) {
+        return new Fields().add(WORDS, Arrays.asList(words));
+    }
+
+    @Test
+    public void predictBatch() {
+        List<List<String>> labels = predictor.predictBatch(Arrays.asList(words("a", "b", "c"), words("d")));
+        assertEquals(Arrays.asList(Arrays.asList("A", "B", "C"), Collections.singletonList("D")), labels);
+    }
+
+    @Test
+    public void retriesTransientFailures() {
+        service.failures.set(2);
+        assertEquals(Arrays.asList("E", "F"), predictor.predict(words("e", "f")));
+        assertEquals(3, service.calls.get());
+    }
+
+    @Test(expected = StatusRuntimeException.class)
+    public void failsAfterMaxRetries() {
+        service.failures.set(10);
+        predictor.maxRetries(1).predict(words("g"));
+    }
+
+    @Test
+    public void retriesWithinDeadline() {
+        service.failures.set(1000);
+        // retrying every call would back off for close to a minute in total
+        predictor.maxRetries(100).initialBackoffMs(20).maxBackoffMs(1000).deadlineMs(200);
+        long start = System.nanoTime();
+        try {
+            predictor.predict(words("h"));
+            fail("Expected call to fail once its deadline is spent");
+        } catch (StatusRuntimeException e) {
+            // gives up with the last transient error rather than backing off past the deadline
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            assertTrue(service.calls.get() < 100);
+        }
+    }
+
+    @Test
+    public void doesNotRetryDeadlineExceeded() {
+        service.hold = true;
+        try {
+            predictor.deadlineMs(50).predict(words("i"));
+            fail("Expected call to exceed its deadline");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+            assertEquals(1, service.calls.get());
+        }
+    }
+
+    @Test
+    public void rejectsCallsBeyondMaxInFlight() throws Exception {
+        service.hold = true;
+        List<CompletableFuture<List<List<String>>>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            calls.add(predictor.predictBatchAsync(Collections.singletonList(words("j" + i))));
+        }
+        CompletableFuture<List<List<String>>> rejected = predictor.predictBatchAsync(Collections.singletonList(words("k")));
+        try {
+            rejected.getNow(null);
+            fail("Expected call beyond the in-flight limit to fail immediately");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        service.release();
+        for (int i = 0; i < calls.size(); ++i) {
+            assertEquals(Collections.singletonList(Collections.singletonList("J" + i)), calls.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(Collections.singletonList("K"), predictor.predict(words("k")));
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.example.FeatureLists;
+import org.tensorflow.example.SequenceExample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.tensor.TFRecordReader;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+
+import static io.github.semlink.tensor.TensorflowFeatureUtils.stringFeatures;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TFRecord shard writer tests.
+ *
+ * @author jgung
+ */
+public class SequenceExampleShardWriterTest {
+
+    static final String WORDS = "word";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final SequenceExampleExtractor EXTRACTOR = fields -> SequenceExample.newBuilder()
+            .setFeatureLists(FeatureLists.newBuilder()
+                    .putFeatureList(WORDS, stringFeatures(fields.field(WORDS))))
+            .build();
+
+    static HasFields words(String... words) {
+        return new Fields().add(WORDS, Arrays.asList(words));
+    }
+
+    static List<String> words(SequenceExample example) {
+        List<String> words = new ArrayList<>();
+        example.getFeatureLists().getFeatureListOrThrow(WORDS).getFeatureList()
+                .forEach(feature -> words.add(feature.getBytesList().getValue(0).toStringUtf8()));
+        return words;
+    }
+
+    static List<SequenceExample> read(String shard) throws IOException {
+        List<SequenceExample> examples = new ArrayList<>();
+        try (TFRecordReader reader = new TFRecordReader(shard)) {
+            byte[] record;
+            while (null != (record = reader.read())) {
+                examples.add(SequenceExample.parseFrom(record));
+            }
+        }
+        return examples;
+    }
+
+    @Test
+    public void rollsOverAtRecordsPerShard() throws IOException {
+        String prefix = new File(folder.getRoot(), "srl").getPath();
+        try (SequenceExampleShardWriter writer = new SequenceExampleShardWriter(EXTRACTOR, prefix, 2)) {
+            for (int i = 0; i < 5; ++i) {
+                writer.write("s" + i, 0, words("w" + i));
+            }
+            assertEquals(Arrays.asList(prefix + "-00000.tfrecord", prefix + "-00001.tfrecord", prefix + "-00002.tfrecord"),
+                    writer.shards());
+        }
+        assertEquals(2, read(prefix + "-00000.tfrecord").size());
+        assertEquals(2, read(prefix + "-00001.tfrecord").size());
+        assertEquals(1, read(prefix + "-00002.tfrecord").size());
+    }
+
+    @Test
+    public void exactlyFullShard() throws IOException {
+        String prefix = new File(folder.getRoot(), "srl").getPath();
+        try (SequenceExampleShardWriter writer = new SequenceExampleShardWriter(EXTRACTOR, prefix, 2)) {
+            writer.write("s0", 0, words("a"));
+            writer.write("s0", 1, words("a"));
+            // no empty shard is started until another example is written
+            assertEquals(1, writer.shards().size());
+        }
+    }
+
+    @Test
+    public void keysRoundTrip() throws IOException {
+        // as written by VerbNetParser.exportSrlFeatures: one example per predicate, keyed by sentence index and predicate index
+        String prefix = new File(folder.getRoot(), "srl").getPath();
+        List<String> shards;
+        try (SequenceExampleShardWriter writer = new SequenceExampleShardWriter(EXTRACTOR, prefix, 100)) {
+            writer.write("0", 1, words("John", "ate", "and", "slept"));
+            writer.write("0", 3, words("John", "ate", "and", "slept"));
+            writer.write("1", 0, words("Run", "ünïcode"));
+            shards = writer.shards();
+        }
+        List<SequenceExample> examples = read(shards.get(0));
+        assertEquals(3, examples.size());
+        assertEquals(Arrays.asList("0", "0", "1"), Arrays.asList(SequenceExampleShardWriter.sentenceId(examples.get(0)),
+                SequenceExampleShardWriter.sentenceId(examples.get(1)), SequenceExampleShardWriter.sentenceId(examples.get(2))));
+        assertEquals(Arrays.asList(1, 3, 0), Arrays.asList(SequenceExampleShardWriter.predicateIndex(examples.get(0)),
+                SequenceExampleShardWriter.predicateIndex(examples.get(1)),
+                SequenceExampleShardWriter.predicateIndex(examples.get(2))));
+        // model features are left untouched by the keys
+        assertEquals(Arrays.asList("Run", "ünïcode"), words(examples.get(2)));
+        assertEquals(1, examples.get(2).getFeatureLists().getFeatureListCount());
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.example.FeatureLists;
+import org.tensorflow.example.SequenceExample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.github.semlink.extractor.SequenceExampleExtractor;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import tensorflow.serving.Model;
+
+import static io.github.semlink.tensor.TensorflowFeatureUtils.stringFeatures;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Prediction service tests, calling an in-process service through a {@link RemoteSequencePredictor}.
+ *
+ * @author jgung
+ */
+public class SequencePredictionServiceTest {
+
+    private static final String WORDS = "word";
+
+    /**
+     * Predictor labeling each word of a serialized example with its upper-cased form, failing on a word "fail".
+     */
+    private static RecordingPredictor<ByteString> upperCase() {
+        return new RecordingPredictor<>(serialized -> {
+            SequenceExample example;
+            try {
+                example = SequenceExample.parseFrom(serialized);
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalArgumentException(e);
+            }
+            List<String> labels = new ArrayList<>();
+            example.getFeatureLists().getFeatureListOrThrow(WORDS).getFeatureList().forEach(feature -> {
+                String word = feature.getBytesList().getValue(0).toStringUtf8();
+                if (word.equals("fail")) {
+                    throw new IllegalStateException("Failed on purpose");
+                }
+                labels.add(word.toUpperCase());
+            });
+            return labels;
+        });
+    }
+
+    private SequencePredictionService service;
+    private Server server;
+    private String name;
+
+    @Before
+    public void setUp() throws IOException {
+        start(new SequencePredictionService("srl", upperCase()));
+    }
+
+    private void start(SequencePredictionService service) throws IOException {
+        this.name = InProcessServerBuilder.generateName();
+        this.service = service;
+        this.server = InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdownNow();
+        service.close();
+    }
+
+    private RemoteSequencePredictor client(String modelName) {
+        SequenceExampleExtractor extractor = fields -> SequenceExample.newBuilder()
+                .setFeatureLists(FeatureLists.newBuilder()
+                        .putFeatureList(WORDS, stringFeatures(fields.field(WORDS))))
+                .build();
+        return new RemoteSequencePredictor(extractor,
+                Collections.singletonList(InProcessChannelBuilder.forName(name).directExecutor().build()),
+                Model.ModelSpec.newBuilder().setName(modelName).build(), 4);
+    }
+
+    private static HasFields words(String... words) {
+        return new Fields().add(WORDS, Arrays.asList(words));
+    }
+
+    @Test
+    public void predictBatch() {
+        try (RemoteSequencePredictor client = client("srl")) {
+            List<List<String>> labels = client.predictBatch(Arrays.asList(words("a", "b", "c"), words("d")));
+            // shorter rows are padded on the wire and trimmed by the client
+            assertEquals(Arrays.asList(Arrays.asList("A", "B", "C"), Collections.singletonList("D")), labels);
+        }
+    }
+
+    @Test
+    public void coalescesConcurrentRequests() throws Exception {
+        tearDown();
+        RecordingPredictor<ByteString> model = upperCase();
+        start(SequencePredictionService.forModel("srl", model, 8, 200));
+
+        try (RemoteSequencePredictor client = client("srl")) {
+            List<CompletableFuture<List<List<String>>>> calls = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                calls.add(client.predictBatchAsync(Arrays.asList(words("a" + i), words("b" + i, "c" + i))));
+            }
+            for (int i = 0; i < calls.size(); ++i) {
+                assertEquals(Arrays.asList(Collections.singletonList("A" + i), Arrays.asList("B" + i, "C" + i)),
+                        calls.get(i).get(1, TimeUnit.SECONDS));
+            }
+        }
+        // examples of all requests are merged into a single batch, passed on exactly as serialized by the client
+        assertEquals(Collections.singletonList(6), model.batchSizes());
+        SequenceExample first = SequenceExample.parseFrom(model.batches().get(0).get(0));
+        assertEquals("a0", first.getFeatureLists().getFeatureListOrThrow(WORDS).getFeature(0).getBytesList().getValue(0)
+                .toStringUtf8());
+    }
+
+    @Test
+    public void unknownModel() {
+        try (RemoteSequencePredictor client = client("other")) {
+            client.predict(words("a"));
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+            return;
+        }
+        throw new AssertionError("Expected call to fail");
+    }
+
+    @Test
+    public void predictionFailure() {
+        try (RemoteSequencePredictor client = client("srl")) {
+            client.predict(words("a", "fail"));
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.INTERNAL, e.getStatus().getCode());
+            return;
+        }
+        throw new AssertionError("Expected call to fail");
+    }
+
+}
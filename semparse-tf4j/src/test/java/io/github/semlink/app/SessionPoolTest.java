@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.semlink.app.SessionPool.Mode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Session pool stress tests.
+ *
+ * @author jgung
+ */
+public class SessionPoolTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS = 500;
+
+    /**
+     * Fake session that detects concurrent use and produces output that is corrupted if two calls interleave.
+     */
+    private static class FakeSession {
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final int[] scratch = new int[64];
+        private boolean closed;
+
+        int[] run(int input) {
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            calls.incrementAndGet();
+            try {
+                for (int i = 0; i < scratch.length; ++i) {
+                    scratch[i] = input;
+                    Thread.yield();
+                }
+                return scratch.clone();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+    }
+
+    private static List<FakeSession> sessions(int count) {
+        List<FakeSession> sessions = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            sessions.add(new FakeSession());
+        }
+        return sessions;
+    }
+
+    private static void stress(SessionPool<FakeSession> pool) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; ++thread) {
+            final int offset = thread * CALLS;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int call = 0; call < CALLS; ++call) {
+                    int input = offset + call;
+                    try (SessionPool.Lease<FakeSession> lease = pool.acquire()) {
+                        int[] output = lease.get().run(input);
+                        for (int value : output) {
+                            assertEquals("Output corrupted by concurrent call", input, value);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void exclusiveUnderContention() throws Exception {
+        List<FakeSession> sessions = sessions(4);
+        SessionPool<FakeSession> pool = new SessionPool<>(sessions, Mode.EXCLUSIVE, session -> session.closed = true);
+        stress(pool);
+
+        assertEquals(0, pool.inFlight());
+        assertEquals(THREADS * CALLS, sessions.stream().mapToInt(session -> session.calls.get()).sum());
+        for (FakeSession session : sessions) {
+            assertEquals(1, session.maxActive.get());
+            assertTrue("Expected every pooled session to serve calls", session.calls.get() > 0);
+        }
+
+        pool.close();
+        assertTrue(sessions.stream().allMatch(session -> session.closed));
+    }
+
+    @Test
+    public void sharedLeastLoaded() throws Exception {
+        List<FakeSession> sessions = sessions(2);
+        SessionPool<FakeSession> pool = new SessionPool<>(sessions, Mode.SHARED, session -> session.closed = true);
+
+        SessionPool.Lease<FakeSession> first = pool.acquire();
+        SessionPool.Lease<FakeSession> second = pool.acquire();
+        SessionPool.Lease<FakeSession> third = pool.acquire();
+        // first two leases are spread over both sessions before any session is reused
+        assertTrue(first.get() != second.get());
+        assertTrue(Arrays.asList(first.get(), second.get()).contains(third.get()));
+        assertEquals(3, pool.inFlight());
+
+        first.close();
+        second.close();
+        third.close();
+        third.close();
+        assertEquals(0, pool.inFlight());
+    }
+
+    @Test
+    public void closeWhileLeased() throws Exception {
+        List<FakeSession> sessions = sessions(2);
+        SessionPool<FakeSession> pool = new SessionPool<>(sessions, Mode.EXCLUSIVE, session -> session.closed = true);
+        SessionPool.Lease<FakeSession> held = pool.acquire();
+        SessionPool.Lease<FakeSession> idle = pool.acquire();
+        idle.close();
+
+        pool.close();
+        // the idle session is closed immediately, the leased session only once released
+        assertTrue(idle.get().closed);
+        assertFalse(held.get().closed);
+        try {
+            pool.acquire();
+            fail("Expected closed pool to refuse new leases");
+        } catch (IllegalStateException e) {
+            assertEquals(1, pool.inFlight());
+        }
+        held.get().run(1);
+        held.close();
+        assertTrue(held.get().closed);
+        assertEquals(0, pool.inFlight());
+    }
+
+    @Test
+    public void closeWakesWaitingCalls() throws Exception {
+        SessionPool<FakeSession> pool = new SessionPool<>(sessions(1), Mode.EXCLUSIVE, session -> session.closed = true);
+        SessionPool.Lease<FakeSession> held = pool.acquire();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> waiting = executor.submit(() -> pool.acquire());
+        Thread.sleep(50);
+        pool.close();
+        try {
+            waiting.get(1, TimeUnit.SECONDS);
+            fail("Expected waiting call to fail once the pool is closed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        executor.shutdown();
+        assertFalse(held.get().closed);
+        held.close();
+        assertTrue(held.get().closed);
+    }
+
+    @Test
+    public void createClosesLoadedSessionsOnFailure() {
+        List<FakeSession> loaded = new ArrayList<>();
+        try {
+            SessionPool.create(() -> {
+                if (loaded.size() == 2) {
+                    throw new IllegalStateException("Unable to load session");
+                }
+                FakeSession session = new FakeSession();
+                loaded.add(session);
+                return session;
+            }, 3, Mode.EXCLUSIVE, session -> session.closed = true);
+            fail("Expected session pool creation to fail");
+        } catch (IllegalStateException e) {
+            assertEquals(2, loaded.size());
+            assertTrue(loaded.stream().allMatch(session -> session.closed));
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.example.SequenceExample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.semlink.app.SequenceExampleShardWriterTest.EXTRACTOR;
+import static io.github.semlink.app.SequenceExampleShardWriterTest.words;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TFRecord scorer tests.
+ *
+ * @author jgung
+ */
+public class TFRecordScorerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Predictor labeling each word of a serialized example with its upper-cased form.
+     */
+    private static RecordingPredictor<ByteString> upperCase() {
+        return new RecordingPredictor<>(serialized -> {
+            try {
+                return words(SequenceExample.parseFrom(serialized)).stream()
+                        .map(String::toUpperCase)
+                        .collect(Collectors.toList());
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalArgumentException(e);
+            }
+        });
+    }
+
+    @Test
+    public void scoresShardsInOrder() throws IOException {
+        List<String> shards;
+        try (SequenceExampleShardWriter writer = new SequenceExampleShardWriter(EXTRACTOR,
+                new File(folder.getRoot(), "srl").getPath(), 2)) {
+            writer.write("0", 1, words("john", "ate"));
+            writer.write("0", 0, words("john", "ate"));
+            writer.write("1", 2, words("a", "b", "c"));
+            writer.write("2", 0, words("d"));
+            writer.write("3", 0, words("e"));
+            shards = writer.shards();
+        }
+
+        RecordingPredictor<ByteString> predictor = upperCase();
+        StringWriter output = new StringWriter();
+        // batches span shard boundaries
+        assertEquals(5, new TFRecordScorer(predictor, 3).score(shards, output));
+        assertEquals(Arrays.asList(3, 2), predictor.batchSizes());
+        assertEquals("0\t1\tJOHN ATE\n"
+                + "0\t0\tJOHN ATE\n"
+                + "1\t2\tA B C\n"
+                + "2\t0\tD\n"
+                + "3\t0\tE\n", output.toString());
+    }
+
+    @Test
+    public void noShards() throws IOException {
+        RecordingPredictor<ByteString> predictor = upperCase();
+        StringWriter output = new StringWriter();
+        assertEquals(0, new TFRecordScorer(predictor, 3).score(Collections.emptyList(), output));
+        assertEquals("", output.toString());
+        assertEquals(0, predictor.batches().size());
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Windowed predictor tests, using one WordPiece token per character.
+ *
+ * @author jgung
+ */
+public class WindowedSequencePredictorTest {
+
+    private static final ToIntFunction<String> CHARACTERS = String::length;
+
+    /**
+     * Predictor labeling each word with its text and the first word of its window, recording each batch.
+     */
+    private static RecordingPredictor<HasFields> windowLabels() {
+        return new RecordingPredictor<>(input -> {
+            List<String> words = input.field("word");
+            return words.stream().map(word -> word + "@" + words.get(0)).collect(Collectors.toList());
+        });
+    }
+
+    private static HasFields input(String sentence, int predicate) {
+        return new Fields()
+                .add("word", Arrays.asList(sentence.split(" ")))
+                .add("predicate_index", Collections.singletonList(String.valueOf(predicate)));
+    }
+
+    @Test
+    public void shortInputsAreUnchanged() {
+        RecordingPredictor<HasFields> model = windowLabels();
+        WindowedSequencePredictor predictor = new WindowedSequencePredictor(model, CHARACTERS, 16, 2);
+        assertEquals(Arrays.asList("a@a", "b@a", "c@a"), predictor.predict(input("a b c", 1)));
+        assertNull(predictor.windows(input("a b c", 1)));
+    }
+
+    @Test
+    public void windowsContainPredicate() {
+        // budget of 5 words besides special tokens and the predicate segment
+        WindowedSequencePredictor predictor = new WindowedSequencePredictor(windowLabels(), CHARACTERS, 9, 2);
+        List<int[]> windows = predictor.windows(input("a b c d e f g h i j", 5));
+        assertEquals(3, windows.size());
+        assertArrayEquals(new int[]{3, 8}, windows.get(0));
+        assertArrayEquals(new int[]{1, 6}, windows.get(1));
+        assertArrayEquals(new int[]{5, 10}, windows.get(2));
+    }
+
+    @Test
+    public void mergesNearestWindow() {
+        RecordingPredictor<HasFields> model = windowLabels();
+        WindowedSequencePredictor predictor = new WindowedSequencePredictor(model, CHARACTERS, 9, 2);
+        List<List<String>> result = predictor.predictBatch(Arrays.asList(input("a b c d e f g h i j", 5),
+                input("a b c d e", 4)));
+
+        // windows [3, 8), [1, 6) and [5, 10), ties going to the first window
+        assertEquals(Arrays.asList("O", "b@b", "c@b", "d@b", "e@d", "f@d", "g@d", "h@f", "i@f", "j@f"), result.get(0));
+        assertEquals(Arrays.asList("a@a", "b@a", "c@a", "d@a", "e@a"), result.get(1));
+        // all windows are predicted in a single batch
+        assertEquals(1, model.batches().size());
+        assertEquals(4, model.batches().get(0).size());
+    }
+
+    @Test
+    public void repairsSpansAcrossWindows() {
+        SequencePredictor<HasFields> model = new RecordingPredictor<>(
+                input -> Collections.nCopies(input.<List<String>>field("word").size(), "I-A0"));
+        WindowedSequencePredictor predictor = new WindowedSequencePredictor(model, CHARACTERS, 9, 2);
+        List<String> labels = predictor.predict(input("a b c d e f g h i j", 5));
+        assertEquals("O", labels.get(0));
+        assertEquals("B-A0", labels.get(1));
+        assertEquals("I-A0", labels.get(2));
+        assertEquals("I-A0", labels.get(9));
+    }
+
+}
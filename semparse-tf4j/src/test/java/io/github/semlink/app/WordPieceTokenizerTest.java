@@ -16,12 +16,15 @@
 
 package io.github.semlink.app;
 
+import com.google.common.cache.CacheStats;
+
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -64,4 +67,36 @@ public class WordPieceTokenizerTest {
             tokenizer.convertTokensToIds(Arrays.asList("un", "##want", "##ed", "runn", "##ing")));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void memoizesIds() {
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(testVocabulary());
+        int[] buffer = new int[16];
+        for (int i = 0; i < 3; ++i) {
+            int count = tokenizer.tokenizeIds("unwanted", buffer, 2);
+            assertArrayEquals(new int[]{7, 4, 5}, Arrays.copyOfRange(buffer, 2, 2 + count));
+        }
+        CacheStats stats = tokenizer.cacheStats();
+        assertEquals(1, stats.missCount());
+        assertEquals(2, stats.hitCount());
+
+        tokenizer.cacheSize(0);
+        assertEquals(3, tokenizer.tokenizeIds("unwanted", buffer, 0));
+        assertEquals(0, tokenizer.cacheStats().requestCount());
+    }
+
+    @Test
+    public void countWordPieces() {
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(testVocabulary());
+        for (String text : Arrays.asList("unwanted", "running", "", "unwanted", "xyz")) {
+            assertEquals(tokenizer.tokenize(text).size(), tokenizer.countWordPieces(text));
+        }
+        assertEquals(1, tokenizer.cacheStats().hitCount());
+        assertEquals(4, tokenizer.cacheStats().missCount());
+
+        char[] longWord = new char[500];
+        Arrays.fill(longWord, 'a');
+        tokenizer.cacheSize(0);
+        assertEquals(1, tokenizer.countWordPieces(new String(longWord)));
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * WordPiece trie tests, checking parity with {@link WordPieceTokenizer}.
+ *
+ * @author jgung
+ */
+public class WordPieceTrieTest {
+
+    private static final Map<String, Integer> BERT_VOCABULARY = WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt");
+
+    private static int[] tokenizeIds(WordPieceTokenizer tokenizer, String text) {
+        int[] buffer = new int[text.length() + 1];
+        int count = tokenizer.tokenizeIds(text, buffer, 1);
+        return Arrays.copyOfRange(buffer, 1, 1 + count);
+    }
+
+    private static int[] expectedIds(WordPieceTokenizer tokenizer, String text) {
+        return tokenizer.convertTokensToIds(tokenizer.tokenize(text)).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Random text made of vocabulary pieces, both joined into longer words and mixed with characters outside the vocabulary.
+     */
+    private static List<String> corpus(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> pieces = new ArrayList<>(BERT_VOCABULARY.keySet());
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            StringBuilder text = new StringBuilder();
+            int words = 1 + random.nextInt(20);
+            for (int w = 0; w < words; ++w) {
+                int joined = 1 + random.nextInt(4);
+                for (int j = 0; j < joined; ++j) {
+                    String piece = pieces.get(random.nextInt(pieces.size()));
+                    text.append(j > 0 && piece.startsWith("##") && random.nextBoolean() ? piece.substring(2) : piece);
+                }
+                if (random.nextInt(20) == 0) {
+                    text.append('☃');
+                }
+                text.append(random.nextInt(10) == 0 ? " \t " : " ");
+            }
+            corpus.add(text.toString());
+        }
+        return corpus;
+    }
+
+    @Test
+    public void tokenize() {
+        Map<String, Integer> vocab = new HashMap<>();
+        Arrays.asList("[UNK]", "[CLS]", "[SEP]", "want", "##want", "##ed", "wa", "un", "runn", "##ing", ",")
+            .forEach(entry -> vocab.put(entry, vocab.size()));
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(vocab);
+
+        assertArrayEquals(new int[0], tokenizeIds(tokenizer, ""));
+        assertArrayEquals(new int[0], tokenizeIds(tokenizer, " \t "));
+        assertArrayEquals(new int[]{7, 4, 5, 10, 8, 9}, tokenizeIds(tokenizer, " unwanted ,\trunning "));
+        assertArrayEquals(new int[]{0, 8, 9}, tokenizeIds(tokenizer, "unwantedx running"));
+        // continuation pieces are matched whole at the start of a word
+        assertArrayEquals(new int[]{9}, tokenizeIds(tokenizer, "##ing"));
+    }
+
+    @Test
+    public void bertParity() {
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(BERT_VOCABULARY);
+        for (String piece : BERT_VOCABULARY.keySet()) {
+            assertArrayEquals(piece, expectedIds(tokenizer, piece), tokenizeIds(tokenizer, piece));
+        }
+        for (String text : corpus(2000, 0)) {
+            assertArrayEquals(text, expectedIds(tokenizer, text), tokenizeIds(tokenizer, text));
+        }
+        char[] longWord = new char[201];
+        Arrays.fill(longWord, 'a');
+        assertArrayEquals(new int[]{BERT_VOCABULARY.get("[UNK]")}, tokenizeIds(tokenizer, new String(longWord)));
+    }
+
+    @Test
+    public void missingUnknownToken() {
+        Map<String, Integer> vocab = new HashMap<>();
+        vocab.put("a", 0);
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(vocab);
+        assertArrayEquals(new int[]{0}, tokenizeIds(tokenizer, "a"));
+        try {
+            tokenizeIds(tokenizer, "b");
+        } catch (IllegalStateException e) {
+            return;
+        }
+        throw new AssertionError("Expected tokenization to fail");
+    }
+
+    @Test
+    @Ignore
+    public void benchmark() {
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(BERT_VOCABULARY);
+        List<String> corpus = corpus(20000, 1);
+        int[] buffer = new int[corpus.stream().mapToInt(String::length).max().orElse(0)];
+        for (int round = 0; round < 5; ++round) {
+            long start = System.nanoTime();
+            long expected = 0;
+            for (String text : corpus) {
+                expected += expectedIds(tokenizer, text).length;
+            }
+            long strings = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long actual = 0;
+            for (String text : corpus) {
+                actual += tokenizer.tokenizeIds(text, buffer, 0);
+            }
+            long trie = System.nanoTime() - start;
+
+            assertEquals(expected, actual);
+            System.out.printf("round %d: tokenize + convertTokensToIds %d ms, trie %d ms (%d pieces)%n", round,
+                    strings / 1000000, trie / 1000000, actual);
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import org.junit.Test;
+import org.tensorflow.example.FeatureLists;
+import org.tensorflow.example.Features;
+import org.tensorflow.example.SequenceExample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.github.semlink.app.WordPieceTokenizer;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+
+import static io.github.semlink.tensor.TensorflowFeatureUtils.int64Feature;
+import static io.github.semlink.tensor.TensorflowFeatureUtils.int64Features;
+import static io.github.semlink.tensor.TensorflowFeatureUtils.stringFeatures;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * BERT SRL extraction tests, comparing primitive {@link BertSrlInput} extraction against a reference extraction over WordPiece
+ * token strings.
+ *
+ * @author jgung
+ */
+public class BertSrlExampleExtractorTest {
+
+    private final WordPieceTokenizer tokenizer = new WordPieceTokenizer(
+            WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt"));
+    private final BertSrlExampleExtractor extractor = new BertSrlExampleExtractor(tokenizer);
+
+    private static HasFields sentence(int predicate, String... words) {
+        return new Fields()
+                .add("word", Arrays.asList(words))
+                .add("predicate_index", Collections.singletonList(String.valueOf(predicate)));
+    }
+
+    /**
+     * Reference extraction, building WordPiece token strings before converting them to IDs.
+     */
+    private SequenceExample reference(HasFields sequence) {
+        int predicateIndex = Integer.parseInt(sequence.<List<String>>field("predicate_index").get(0));
+        List<String> words = sequence.field("word");
+
+        List<String> tokens = new ArrayList<>();
+        List<Integer> mask = new ArrayList<>();
+        int predicateTokenIndex = -1;
+        List<String> predicateTokens = new ArrayList<>();
+
+        tokens.add(BertSrlExampleExtractor.BERT_CLS);
+        mask.add(0);
+        for (int i = 0; i < words.size(); ++i) {
+            List<String> subtokens = tokenizer.tokenize(words.get(i));
+            if (i == predicateIndex) {
+                predicateTokenIndex = tokens.size();
+                predicateTokens = subtokens;
+            }
+            tokens.addAll(subtokens);
+            mask.add(1);
+            mask.addAll(Collections.nCopies(Math.max(0, subtokens.size() - 1), 0));
+        }
+        tokens.add(BertSrlExampleExtractor.BERT_SEP);
+        mask.add(0);
+        int splitIndex = tokens.size();
+        tokens.addAll(predicateTokens);
+        mask.addAll(Collections.nCopies(predicateTokens.size(), 0));
+        tokens.add(BertSrlExampleExtractor.BERT_SEP);
+        mask.add(0);
+
+        int marker = predicateTokenIndex;
+        List<String> markers = IntStream.range(0, tokens.size())
+                .mapToObj(i -> i == marker ? "1" : "0")
+                .collect(Collectors.toList());
+
+        return SequenceExample.newBuilder()
+                .setContext(Features.newBuilder()
+                        .putFeature("predicate_index", int64Feature(predicateTokenIndex))
+                        .putFeature("bert_split_idx", int64Feature(splitIndex))
+                        .putFeature("len", int64Feature(tokens.size()))
+                        .putFeature("sentence_idx", int64Feature(0)))
+                .setFeatureLists(FeatureLists.newBuilder()
+                        .putFeatureList("bert", int64Features(tokenizer.convertTokensToIds(tokens)))
+                        .putFeatureList("sequence_mask", int64Features(mask))
+                        .putFeatureList("marker", stringFeatures(markers))
+                        .putFeatureList("gold", stringFeatures(Collections.nCopies(tokens.size(), "O"))))
+                .build();
+    }
+
+    private void assertParity(HasFields sentence) {
+        BertSrlInput input = extractor.extractInput(sentence);
+        assertEquals(reference(sentence), extractor.toSequenceExample(input));
+        assertEquals(input.length(), input.markers().length);
+        assertEquals(input.length(), input.mask().length);
+    }
+
+    @Test
+    public void matchesReference() {
+        assertParity(sentence(2, "The", "dog", "barked", "unbelievably", "loudly", "."));
+        assertParity(sentence(3, "The", "dog", "barked", "unbelievably", "loudly", "."));
+        assertParity(sentence(0, "A"));
+    }
+
+    @Test
+    public void matchesReferenceNonAscii() {
+        assertParity(sentence(1, "Ça", "coûte", "€5", "日本語", "😀"));
+    }
+
+    @Test
+    public void matchesReferenceUnknownAndEmptyWords() {
+        char[] longWord = new char[250];
+        Arrays.fill(longWord, 'a');
+        assertParity(sentence(1, "x", new String(longWord), "", "y"));
+        assertParity(sentence(2, "x", "y", ""));
+    }
+
+    @Test
+    public void matchesReferenceWithoutPredicate() {
+        assertParity(sentence(5, "The", "dog", "barked"));
+    }
+
+    @Test
+    public void predicateSegment() {
+        BertSrlInput input = extractor.extractInput(sentence(1, "The", "unbelievably", "loud", "dog"));
+        int pieces = tokenizer.tokenize("unbelievably").size();
+        int[] ids = input.ids();
+        assertEquals(tokenizer.id(BertSrlExampleExtractor.BERT_CLS), ids[0]);
+        assertEquals(tokenizer.id(BertSrlExampleExtractor.BERT_SEP), ids[input.splitIndex() - 1]);
+        assertEquals(tokenizer.id(BertSrlExampleExtractor.BERT_SEP), ids[ids.length - 1]);
+        assertEquals(input.splitIndex() + pieces + 1, ids.length);
+        assertArrayEquals(Arrays.copyOfRange(ids, input.predicateIndex(), input.predicateIndex() + pieces),
+                Arrays.copyOfRange(ids, input.splitIndex(), input.splitIndex() + pieces));
+        assertEquals(1, input.markers()[input.predicateIndex()]);
+        assertEquals(1, Arrays.stream(input.markers()).sum());
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import io.github.semlink.app.WordPieceTokenizer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MappedStringIndex} unit tests.
+ *
+ * @author jgung
+ */
+public class MappedStringIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedStringIndex compile(StringIndex index) throws Exception {
+        Path path = folder.newFolder().toPath().resolve("vocab" + MappedStringIndex.EXTENSION);
+        MappedStringIndex.write(index, path);
+        return MappedStringIndex.open(path);
+    }
+
+    @Test
+    public void lookup() throws Exception {
+        StringIndex index = compile(StringIndex.of(Arrays.asList("<PAD>", "<UNK>", "naïve", "日本", "𝒳")));
+        assertEquals(5, index.size());
+        assertEquals(0, index.get("<PAD>"));
+        assertEquals(2, index.get("naïve"));
+        assertEquals(3, index.get("日本"));
+        assertEquals(4, index.get("𝒳"));
+        assertEquals(-1, index.get("naïv"));
+        assertEquals(-1, index.get("naïves"));
+        assertEquals(-1, index.get("日"));
+        assertEquals(1, index.get("cat", 1));
+        assertEquals("日本", index.key(3));
+        assertNull(index.key(5));
+        assertNull(index.key(-1));
+    }
+
+    @Test
+    public void sparseIds() throws Exception {
+        Map<String, Integer> ids = new HashMap<>();
+        ids.put("a", 3);
+        ids.put("b", 10);
+        StringIndex index = compile(StringIndex.of(ids));
+        assertEquals(2, index.size());
+        assertEquals(10, index.get("b"));
+        assertNull(index.key(0));
+        Map<String, Integer> visited = new HashMap<>();
+        index.forEach(visited::put);
+        assertEquals(ids, visited);
+    }
+
+    @Test
+    public void bertVocabulary() throws Exception {
+        Map<String, Integer> vocabulary = WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt");
+        StringIndex index = compile(StringIndex.of(vocabulary));
+        assertEquals(vocabulary.size(), index.size());
+        vocabulary.forEach((token, id) -> {
+            assertEquals(token, (int) id, index.get(token));
+            assertEquals(token, index.key(id));
+        });
+    }
+
+    @Test
+    public void wordPieceTrie() throws Exception {
+        Map<String, Integer> vocabulary = WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt");
+        assertFalse(compile(StringIndex.of(vocabulary)).trie().isPresent());
+        Path path = folder.newFolder().toPath().resolve("vocab" + MappedStringIndex.EXTENSION);
+        MappedStringIndex.write(StringIndex.of(vocabulary), path, true);
+        MappedStringIndex index = MappedStringIndex.open(path);
+        assertTrue(index.trie().isPresent());
+
+        WordPieceTokenizer compiled = new WordPieceTokenizer(vocabulary).cacheSize(0);
+        WordPieceTokenizer mapped = new WordPieceTokenizer(index, "[UNK]", 200).cacheSize(0);
+        for (String text : Arrays.asList("The committee approved the proposal after a long debate .",
+                "unaffable naïve 日本 𝒳 Jxqzvbk", "")) {
+            int[] expected = new int[text.length()];
+            int[] ids = new int[text.length()];
+            int count = compiled.tokenizeIds(text, expected, 0);
+            assertEquals(text, count, mapped.tokenizeIds(text, ids, 0));
+            assertArrayEquals(text, expected, ids);
+        }
+    }
+
+    @Test
+    public void readsVersion1() throws Exception {
+        Path path = folder.newFolder().toPath().resolve("vocab" + MappedStringIndex.EXTENSION);
+        MappedStringIndex.write(StringIndex.of(Arrays.asList("<PAD>", "<UNK>", "dog")), path, true);
+        // version 1 files have no trie offset in their header, and no trie
+        ByteBuffer version2 = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer version1 = ByteBuffer.allocate(version2.getInt(20) - Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        version1.putInt(version2.getInt(0)).putInt(1).putInt(version2.getInt(8)).putInt(version2.getInt(12))
+                .putInt(version2.getInt(16));
+        version2.position(6 * Integer.BYTES).limit(version2.getInt(20));
+        version1.put(version2);
+        Files.write(path, version1.array());
+
+        MappedStringIndex index = MappedStringIndex.open(path);
+        assertEquals(3, index.size());
+        assertEquals(2, index.get("dog"));
+        assertEquals("dog", index.key(2));
+        assertFalse(index.trie().isPresent());
+    }
+
+    @Test
+    public void findCompiledVocabulary() throws Exception {
+        File text = folder.newFile("words.txt");
+        Files.write(text.toPath(), Arrays.asList("<PAD>", "<UNK>", "dog"), StandardCharsets.UTF_8);
+        assertFalse(MappedStringIndex.find(text.getPath()).isPresent());
+        assertEquals(2, Vocabulary.read(text.getPath(), "<UNK>").featToIndex("dog"));
+
+        MappedStringIndex.main(new String[]{text.getPath()});
+        Path compiled = text.toPath().resolveSibling("words.txt" + MappedStringIndex.EXTENSION);
+        assertTrue(MappedStringIndex.isCompiled(compiled));
+        assertFalse(MappedStringIndex.isCompiled(text.toPath()));
+        Files.setLastModifiedTime(compiled, FileTime.fromMillis(Files.getLastModifiedTime(text.toPath()).toMillis() + 1000));
+        assertEquals(Optional.of(compiled), MappedStringIndex.find(text.getPath()));
+        assertEquals(Optional.of(compiled), MappedStringIndex.find(compiled.toString()));
+
+        Vocabulary vocabulary = Vocabulary.read(text.getPath(), "<UNK>");
+        assertEquals(2, vocabulary.featToIndex("dog"));
+        assertEquals(1, vocabulary.featToIndex("cat"));
+        assertEquals("dog", vocabulary.indexToFeat(2));
+
+        // a stale compiled vocabulary is ignored in favor of the text vocabulary
+        Files.setLastModifiedTime(compiled, FileTime.fromMillis(Files.getLastModifiedTime(text.toPath()).toMillis() - 1000));
+        assertFalse(MappedStringIndex.find(text.getPath()).isPresent());
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.semlink.app.WordPieceTokenizer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link StringIndex} unit tests.
+ *
+ * @author jgung
+ */
+public class StringIndexTest {
+
+    @Test
+    public void lookup() {
+        StringIndex index = StringIndex.of(Arrays.asList("<PAD>", "<UNK>", "the", "dog", "barked"));
+        assertEquals(5, index.size());
+        assertEquals(0, index.get("<PAD>"));
+        assertEquals(3, index.get("dog"));
+        assertEquals(-1, index.get("cat"));
+        assertEquals(1, index.get("cat", 1));
+        assertEquals("barked", index.key(4));
+        assertNull(index.key(5));
+        assertNull(index.key(-1));
+        assertTrue(index.contains("the"));
+        assertFalse(index.contains("The"));
+        assertArrayEquals(new int[]{2, 3, 1}, index.get(Arrays.asList("the", "dog", "meowed"), 1));
+    }
+
+    @Test
+    public void sparseIds() {
+        Map<String, Integer> ids = new HashMap<>();
+        ids.put("a", 3);
+        ids.put("b", 10);
+        StringIndex index = StringIndex.of(ids);
+        assertEquals(2, index.size());
+        assertEquals(10, index.get("b"));
+        assertEquals("a", index.key(3));
+        assertNull(index.key(0));
+        Map<String, Integer> visited = new HashMap<>();
+        index.forEach(visited::put);
+        assertEquals(ids, visited);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKeys() {
+        StringIndex.of(Arrays.asList("a", "b", "a"));
+    }
+
+    @Test
+    public void bertVocabulary() {
+        Map<String, Integer> vocabulary = WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt");
+        StringIndex index = StringIndex.of(vocabulary);
+        assertEquals(vocabulary.size(), index.size());
+        vocabulary.forEach((token, id) -> {
+            assertEquals(token, (int) id, index.get(token));
+            assertEquals(token, index.key(id));
+        });
+    }
+
+}
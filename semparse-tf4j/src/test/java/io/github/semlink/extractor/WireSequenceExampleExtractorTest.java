@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.extractor;
+
+import org.tensorflow.example.SequenceExample;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.semlink.app.WordPieceTokenizer;
+import io.github.semlink.extractor.config.ExtractorSpec;
+import io.github.semlink.extractor.config.Extractors;
+import io.github.semlink.extractor.config.FeatureSpec;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Wire-format sequence example extraction tests, checking byte-for-byte compatibility with proto-based extractors.
+ *
+ * @author jgung
+ */
+public class WireSequenceExampleExtractorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SequenceExampleExtractor protoExtractor;
+    private SequenceExampleExtractor wireExtractor;
+
+    private static FeatureSpec feature(String name, String key, int rank, String... mappingFuncs) {
+        return new FeatureSpec()
+                .name(name)
+                .key(key)
+                .rank(rank)
+                .mappingFuncs(Arrays.asList(mappingFuncs));
+    }
+
+    private static HasFields sentence(String... words) {
+        return new Fields()
+                .add("word", Arrays.asList(words))
+                .add("marker", Collections.nCopies(words.length, "0"))
+                .add("predicate_index", Collections.singletonList("1"))
+                .add("gold", Collections.nCopies(words.length, "O"));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File vocab = folder.newFolder("vocab");
+        Files.write(vocab.toPath().resolve("word"), Arrays.asList("<PAD>", "<UNK>", "the", "dog", "##"),
+                StandardCharsets.UTF_8);
+        Files.write(vocab.toPath().resolve("char"), Arrays.asList("<PAD>", "<UNK>", "t", "h", "e"), StandardCharsets.UTF_8);
+        Files.write(vocab.toPath().resolve("marker"), Arrays.asList("<PAD>", "<UNK>", "0", "1"), StandardCharsets.UTF_8);
+        Files.write(vocab.toPath().resolve("gold"), Arrays.asList("<PAD>", "<UNK>", "O"), StandardCharsets.UTF_8);
+
+        FeatureSpec chars = feature("char", "word", 3, "chars")
+                .maxLen(6)
+                .leftPadding(1)
+                .rightPadding(1);
+        FeatureSpec predicateIndex = feature("predicate_index", "predicate_index", 1)
+                .numeric(true);
+        ExtractorSpec spec = new ExtractorSpec()
+                .features(Arrays.asList(
+                        feature("word", "word", 2, "lower", "digit_norm"),
+                        chars,
+                        feature("elmo", "word", 2),
+                        feature("marker", "marker", 2),
+                        predicateIndex))
+                .targets(Collections.singletonList(feature("gold", "gold", 2)));
+
+        protoExtractor = Extractors.createExtractor(spec, vocab.getPath(), true, false);
+        wireExtractor = Extractors.createExtractor(spec, vocab.getPath(), true, true);
+    }
+
+    private void assertSameBytes(HasFields sentence) throws Exception {
+        byte[] expected = protoExtractor.extractSequence(sentence).toByteArray();
+        byte[] bytes = wireExtractor.extractBytes(sentence);
+        assertArrayEquals(expected, bytes);
+        assertEquals(SequenceExample.parseFrom(expected), wireExtractor.extractSequence(sentence));
+        assertEquals(sentence.<List<String>>field("word").size(), WireSequenceExample.length(bytes, "len"));
+    }
+
+    @Test
+    public void sameBytes() throws Exception {
+        assertSameBytes(sentence("The", "dog", "barked", "."));
+        assertSameBytes(sentence("A"));
+        assertSameBytes(sentence("Extraordinarily", "long", "tokens", "are", "truncated", "in", "2019"));
+    }
+
+    @Test
+    public void sameBytesNonAscii() throws Exception {
+        assertSameBytes(sentence("Ça", "coûte", "€5", "日本語", "😀", "x\ud800y", ""));
+    }
+
+    @Test
+    public void sameBytesLongSequence() throws Exception {
+        // lengths above 127 bytes take multi-byte varint prefixes
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = "word" + i;
+        }
+        assertSameBytes(sentence(words));
+    }
+
+    @Test
+    public void lengthFallsBackToLongestFeatureList() {
+        byte[] example = new WireSequenceExample()
+                .feature("sentence_idx", WireSequenceExample.int64Feature(0))
+                .featureList("a", WireSequenceExample.stringFeatures(Arrays.asList("x", "y")))
+                .featureList("b", WireSequenceExample.int64Features(new int[]{1, 2, 3}))
+                .toByteArray();
+        assertEquals(3, WireSequenceExample.length(example, "len"));
+    }
+
+    @Test
+    public void sameBytesBert() throws Exception {
+        BertSrlExampleExtractor extractor = new BertSrlExampleExtractor(
+                new WordPieceTokenizer(WordPieceTokenizer.readVocabulary("wordpiece/bert-base.cased.txt")));
+        List<HasFields> sentences = Arrays.asList(
+                sentence("The", "dog", "barked", "unbelievably", "loudly", "."),
+                sentence("Ça", "coûte", "€5"));
+        for (HasFields sentence : sentences) {
+            BertSrlInput input = extractor.extractInput(sentence);
+            byte[] bytes = extractor.extractBytes(sentence);
+            assertArrayEquals(extractor.toSequenceExample(input).toByteArray(), bytes);
+            assertEquals(input.length(), WireSequenceExample.length(bytes, "len"));
+        }
+    }
+
+}
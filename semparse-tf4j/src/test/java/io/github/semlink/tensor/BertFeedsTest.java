@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.protobuf.CodedOutputStream;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.DataType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import io.github.semlink.extractor.BertSrlInput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Numeric BERT feed tests, checking padding and layout of batched inputs.
+ *
+ * @author jgung
+ */
+public class BertFeedsTest {
+
+    private static final BertSrlInput SHORT = new BertSrlInput(new int[]{101, 7, 102, 7, 102}, new int[]{0, 1, 0, 0, 0},
+            new int[]{0, 1, 0, 0, 0}, 1, 3);
+    private static final BertSrlInput LONG = new BertSrlInput(new int[]{101, 5, 6, 8, 102, 8, 102},
+            new int[]{0, 1, 0, 1, 0, 0, 0}, new int[]{0, 0, 0, 1, 0, 0, 0}, 3, 5);
+
+    private static long[] toArray(LongBuffer buffer) {
+        long[] values = new long[buffer.remaining()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    private interface Encoder {
+        void write(CodedOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        encoder.write(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] metaGraph(int dtype, String... keys) throws IOException {
+        byte[] signatureDef = encode(out -> {
+            for (String key : keys) {
+                byte[] info = encode(tensorInfo -> {
+                    tensorInfo.writeString(1, key + "_input:0");
+                    tensorInfo.writeEnum(2, dtype);
+                });
+                out.writeByteArray(1, encode(entry -> {
+                    entry.writeString(1, key);
+                    entry.writeByteArray(2, info);
+                }));
+            }
+        });
+        byte[] signature = encode(out -> {
+            out.writeString(1, "serving_default");
+            out.writeByteArray(2, signatureDef);
+        });
+        return encode(out -> out.writeByteArray(5, signature));
+    }
+
+    @Test
+    public void batchIsRowMajorAndZeroPadded() {
+        BertFeeds.Batch batch = new BertFeeds.Batch(Arrays.asList(SHORT, LONG));
+
+        assertArrayEquals(new long[]{2, 7}, batch.shape());
+        assertArrayEquals(new long[]{2}, batch.lengthShape());
+        assertArrayEquals(new long[]{
+                101, 7, 102, 7, 102, 0, 0,
+                101, 5, 6, 8, 102, 8, 102}, toArray(batch.ids()));
+        assertArrayEquals(new long[]{
+                0, 1, 0, 0, 0, 0, 0,
+                0, 1, 0, 1, 0, 0, 0}, toArray(batch.mask()));
+        assertArrayEquals(new long[]{
+                0, 1, 0, 0, 0, 0, 0,
+                0, 0, 0, 1, 0, 0, 0}, toArray(batch.markers()));
+        assertArrayEquals(new long[]{5, 7}, toArray(batch.lengths()));
+    }
+
+    @Test
+    public void emptyBatch() {
+        BertFeeds.Batch batch = new BertFeeds.Batch(Collections.emptyList());
+        assertArrayEquals(new long[]{0, 0}, batch.shape());
+        assertEquals(0, batch.ids().remaining());
+        assertEquals(0, batch.lengths().remaining());
+    }
+
+    @Test
+    public void createTensors() {
+        BertFeeds feeds = new BertFeeds("bert_input:0", "sequence_mask_input:0", "marker_input:0", "len_input:0");
+        try (TensorList tensors = feeds.createTensors(Arrays.asList(LONG, SHORT))) {
+            assertEquals(4, tensors.size());
+            for (int i = 0; i < 3; ++i) {
+                assertEquals(org.tensorflow.DataType.INT64, tensors.get(i).dataType());
+                assertArrayEquals(new long[]{2, 7}, tensors.get(i).shape());
+            }
+            assertArrayEquals(new long[]{2}, tensors.get(3).shape());
+
+            long[][] ids = new long[2][7];
+            tensors.get(0).expect(Long.class).copyTo(ids);
+            assertArrayEquals(new long[]{101, 5, 6, 8, 102, 8, 102}, ids[0]);
+            assertArrayEquals(new long[]{101, 7, 102, 7, 102, 0, 0}, ids[1]);
+
+            long[][] mask = new long[2][7];
+            tensors.get(1).expect(Long.class).copyTo(mask);
+            assertArrayEquals(new long[]{0, 1, 0, 0, 0, 0, 0}, mask[1]);
+
+            long[] lengths = new long[2];
+            tensors.get(3).expect(Long.class).copyTo(lengths);
+            assertArrayEquals(new long[]{7, 5}, lengths);
+        }
+    }
+
+    @Test
+    public void discoversNumericSignature() throws IOException {
+        Optional<BertFeeds> feeds = BertFeeds.discover(metaGraph(DataType.DT_INT64_VALUE, BertFeeds.IDS_KEY, BertFeeds.MASK_KEY,
+                BertFeeds.MARKER_KEY, BertFeeds.LENGTH_KEY));
+        assertTrue(feeds.isPresent());
+        assertEquals("bert_input:0", feeds.get().idsName());
+        assertEquals("sequence_mask_input:0", feeds.get().maskName());
+        assertEquals("marker_input:0", feeds.get().markerName());
+        assertEquals("len_input:0", feeds.get().lengthName());
+    }
+
+    @Test
+    public void ignoresIncompleteOrNonNumericSignatures() throws IOException {
+        assertFalse(BertFeeds.discover(metaGraph(DataType.DT_INT64_VALUE, BertFeeds.IDS_KEY, BertFeeds.MASK_KEY,
+                BertFeeds.MARKER_KEY)).isPresent());
+        assertFalse(BertFeeds.discover(metaGraph(DataType.DT_INT32_VALUE, BertFeeds.IDS_KEY, BertFeeds.MASK_KEY,
+                BertFeeds.MARKER_KEY, BertFeeds.LENGTH_KEY)).isPresent());
+        assertFalse(BertFeeds.discover(metaGraph(DataType.DT_STRING_VALUE, "examples")).isPresent());
+    }
+
+}
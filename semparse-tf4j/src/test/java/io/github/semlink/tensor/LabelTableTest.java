@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Label table tests.
+ *
+ * @author jgung
+ */
+public class LabelTableTest {
+
+    @Test
+    public void initialLabels() {
+        LabelTable labels = new LabelTable("X", "O");
+        assertEquals(2, labels.size());
+        assertEquals(0, labels.id("X"));
+        assertEquals(1, labels.id("O"));
+    }
+
+    @Test
+    public void internsLabelsFromBytes() {
+        LabelTable labels = new LabelTable("X");
+        int id = labels.id("B-ARG0".getBytes(StandardCharsets.UTF_8));
+        assertEquals(id, labels.id("xB-ARG0x".getBytes(StandardCharsets.UTF_8), 1, 6));
+        assertEquals(2, labels.size());
+        assertSame(labels.label(id), labels.label(labels.id("B-ARG0")));
+        assertEquals("B-ARG0", labels.label(id));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        LabelTable labels = new LabelTable();
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(i, labels.id("L" + i));
+        }
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(i, labels.id(("L" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        assertEquals(1000, labels.size());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.protobuf.CodedOutputStream;
+
+import org.junit.Test;
+import org.tensorflow.framework.DataType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Model signature tests, over meta graphs encoded by hand.
+ *
+ * @author jgung
+ */
+public class ModelSignatureTest {
+
+    private interface Encoder {
+        void write(CodedOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        encoder.write(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] tensorInfo(String key, String name, int dtype) throws IOException {
+        byte[] info = encode(out -> {
+            out.writeString(1, name);
+            out.writeEnum(2, dtype);
+            // tensor_shape, skipped
+            out.writeByteArray(3, encode(shape -> shape.writeBool(3, true)));
+        });
+        return encode(out -> {
+            out.writeString(1, key);
+            out.writeByteArray(2, info);
+        });
+    }
+
+    private static byte[] signature(String key, byte[]... fields) throws IOException {
+        byte[] signatureDef = encode(out -> {
+            for (byte[] field : fields) {
+                out.writeRawBytes(field);
+            }
+            // method_name, skipped
+            out.writeString(3, "tensorflow/serving/predict");
+        });
+        return encode(out -> {
+            out.writeString(1, key);
+            out.writeByteArray(2, signatureDef);
+        });
+    }
+
+    private static byte[] input(String key, String name, int dtype) throws IOException {
+        byte[] info = tensorInfo(key, name, dtype);
+        return encode(out -> out.writeByteArray(1, info));
+    }
+
+    private static byte[] output(String key, String name, int dtype) throws IOException {
+        byte[] info = tensorInfo(key, name, dtype);
+        return encode(out -> out.writeByteArray(2, info));
+    }
+
+    @Test
+    public void readsInputsAndOutputs() throws IOException {
+        byte[] metaGraph = encode(out -> {
+            // meta_info_def and graph_def, skipped
+            out.writeByteArray(1, encode(info -> info.writeString(1, "v1")));
+            out.writeByteArray(2, new byte[0]);
+            out.writeByteArray(5, signature("serving_default",
+                    input("examples", "input_example_tensor:0", DataType.DT_STRING_VALUE),
+                    output("output", "labels:0", DataType.DT_STRING_VALUE),
+                    output("scores", "scores:0", DataType.DT_FLOAT_VALUE)));
+            out.writeByteArray(5, signature("numeric",
+                    input("bert", "bert:0", DataType.DT_INT64_VALUE),
+                    input("len", "len:0", DataType.DT_INT64_VALUE),
+                    output("output", "labels:0", DataType.DT_STRING_VALUE)));
+        });
+
+        Map<String, ModelSignature> signatures = ModelSignature.read(metaGraph);
+        assertEquals(Arrays.asList("serving_default", "numeric"), new ArrayList<>(signatures.keySet()));
+
+        ModelSignature serving = signatures.get("serving_default");
+        assertEquals("serving_default", serving.name());
+        assertEquals(1, serving.inputs().size());
+        assertEquals("input_example_tensor:0", serving.inputs().get("examples").name());
+        assertEquals(DataType.DT_STRING_VALUE, serving.inputs().get("examples").dtype());
+        assertEquals(Arrays.asList("output", "scores"), new ArrayList<>(serving.outputs().keySet()));
+        assertEquals(DataType.DT_FLOAT_VALUE, serving.outputs().get("scores").dtype());
+
+        ModelSignature numeric = signatures.get("numeric");
+        assertEquals(Arrays.asList("bert", "len"), new ArrayList<>(numeric.inputs().keySet()));
+        assertEquals("len:0", numeric.inputs().get("len").name());
+        assertEquals(DataType.DT_INT64_VALUE, numeric.inputs().get("len").dtype());
+    }
+
+    @Test
+    public void defaultsMissingFields() throws IOException {
+        byte[] nameless = encode(out -> out.writeByteArray(1, encode(entry -> entry.writeString(1, "examples"))));
+        byte[] metaGraph = encode(out -> out.writeByteArray(5, signature("serving_default", nameless)));
+
+        ModelSignature.TensorInfo info = ModelSignature.read(metaGraph).get("serving_default").inputs().get("examples");
+        assertEquals("", info.name());
+        assertEquals(DataType.DT_INVALID_VALUE, info.dtype());
+    }
+
+    @Test
+    public void emptyMetaGraph() {
+        assertTrue(ModelSignature.read(new byte[0]).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedMetaGraph() throws IOException {
+        byte[] metaGraph = encode(out -> out.writeByteArray(5, signature("serving_default",
+                input("examples", "input_example_tensor:0", DataType.DT_STRING_VALUE))));
+        ModelSignature.read(Arrays.copyOf(metaGraph, metaGraph.length - 4));
+    }
+
+}
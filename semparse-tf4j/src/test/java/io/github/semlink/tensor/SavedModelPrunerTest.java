@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+
+import org.junit.Test;
+import org.tensorflow.framework.DataType;
+import org.tensorflow.framework.TensorProto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Saved model pruning tests, over a meta graph encoded by hand.
+ *
+ * @author jgung
+ */
+public class SavedModelPrunerTest {
+
+    private interface Encoder {
+        void write(CodedOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        encoder.write(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] node(String name, String op, String... inputs) throws IOException {
+        return encode(out -> {
+            out.writeString(1, name);
+            out.writeString(2, op);
+            for (String input : inputs) {
+                out.writeString(3, input);
+            }
+        });
+    }
+
+    private static byte[] tensorInfo(String key, String name) throws IOException {
+        byte[] info = encode(out -> out.writeString(1, name));
+        return encode(out -> {
+            out.writeString(1, key);
+            out.writeByteArray(2, info);
+        });
+    }
+
+    private static byte[] signature(String key, String input, String output) throws IOException {
+        byte[] signatureDef = encode(out -> {
+            out.writeByteArray(1, tensorInfo("examples", input));
+            out.writeByteArray(2, tensorInfo("output", output));
+        });
+        return encode(out -> {
+            out.writeString(1, key);
+            out.writeByteArray(2, signatureDef);
+        });
+    }
+
+    private static byte[] collection(String key, String... nodes) throws IOException {
+        byte[] nodeList = encode(out -> {
+            for (String node : nodes) {
+                out.writeString(1, node);
+            }
+        });
+        byte[] collectionDef = encode(out -> out.writeByteArray(1, nodeList));
+        return encode(out -> {
+            out.writeString(1, key);
+            out.writeByteArray(2, collectionDef);
+        });
+    }
+
+    private static byte[] metaGraph() throws IOException {
+        byte[] graphDef = encode(out -> {
+            for (byte[] node : Arrays.asList(
+                    node("input_example_tensor", "Placeholder"),
+                    node("gold", "Placeholder"),
+                    node("w", "VariableV2"),
+                    node("w/Initializer", "Const"),
+                    node("w/Assign", "Assign", "w", "w/Initializer"),
+                    node("w/read", "Identity", "w"),
+                    node("logits", "MatMul", "input_example_tensor", "w/read", "^w/Assign"),
+                    node("gold/labels", "ArgMax", "logits"),
+                    node("loss", "Sub", "logits", "gold"),
+                    node("train_op", "ApplyGradientDescent", "w", "loss"),
+                    node("table", "HashTableV2"),
+                    node("keys", "Const"),
+                    node("table_init", "InitializeTableV2", "table", "keys"))) {
+                out.writeByteArray(1, node);
+            }
+        });
+        return encode(out -> {
+            out.writeByteArray(2, graphDef);
+            out.writeByteArray(3, encode(saver -> saver.writeString(1, "save/Const:0")));
+            out.writeByteArray(4, collection("table_initializer", "table_init"));
+            out.writeByteArray(4, collection("train_op", "train_op"));
+            out.writeByteArray(5, signature("serving_default", "input_example_tensor:0", "gold/labels:0"));
+            out.writeByteArray(5, signature("train", "input_example_tensor:0", "loss:0"));
+        });
+    }
+
+    @Test
+    public void prunesAndFreezes() throws IOException {
+        SavedModelPruner pruner = new SavedModelPruner(Collections.singletonList(SavedModelPruner.DEFAULT_FETCH));
+        TensorProto value = TensorProto.newBuilder()
+                .setDtype(DataType.DT_FLOAT)
+                .setTensorContent(ByteString.copyFrom(new byte[8]))
+                .build();
+        byte[] pruned = pruner.pruneMetaGraph(metaGraph(), name -> value);
+
+        Map<String, String> ops = SavedModelPruner.ops(pruned);
+        assertEquals(Arrays.asList("input_example_tensor", "w", "w/read", "logits", "gold/labels", "table", "keys", "table_init"),
+                new ArrayList<>(ops.keySet()));
+        assertEquals("Const", ops.get("w"));
+        assertEquals(13, pruner.nodesBefore());
+        assertEquals(8, pruner.nodesAfter());
+        assertEquals(1, pruner.frozenVariables());
+        assertEquals(8, pruner.frozenBytes());
+        assertEquals(Collections.singleton("serving_default"), ModelSignature.read(pruned).keySet());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFetch() throws IOException {
+        new SavedModelPruner(Collections.singletonList("missing:0")).pruneMetaGraph(metaGraph(), name -> null);
+    }
+
+}
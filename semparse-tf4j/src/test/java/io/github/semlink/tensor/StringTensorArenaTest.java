@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import org.tensorflow.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link StringTensorArena} tests.
+ *
+ * @author jgung
+ */
+public class StringTensorArenaTest {
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode the TF_STRING encoding of an arena: a table of offsets relative to the data, then varint length-prefixed strings.
+     */
+    private static List<byte[]> decode(StringTensorArena arena) throws Exception {
+        ByteBuffer encoded = arena.encoded().order(ByteOrder.nativeOrder());
+        int dataStart = Long.BYTES * arena.size();
+        List<byte[]> result = new ArrayList<>();
+        for (int i = 0; i < arena.size(); ++i) {
+            int offset = dataStart + (int) encoded.getLong(Long.BYTES * i);
+            CodedInputStream input = CodedInputStream.newInstance(encoded.array(), offset, encoded.limit() - offset);
+            result.add(input.readByteArray());
+        }
+        return result;
+    }
+
+    @Test
+    public void encoding() throws Exception {
+        List<byte[]> values = Arrays.asList(bytes("a"), bytes(""), bytes("ünïcode"), new byte[300]);
+        StringTensorArena arena = new StringTensorArena().reset(values.size()).addAll(values);
+        assertEquals(4, arena.size());
+        // offsets, 1 + 1 + 1 + 2 length bytes, and contents
+        assertEquals(4 * Long.BYTES + 5 + 1 + 9 + 300, arena.bytes());
+        List<byte[]> decoded = decode(arena);
+        for (int i = 0; i < values.size(); ++i) {
+            assertArrayEquals(values.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void append() throws Exception {
+        StringTensorArena arena = new StringTensorArena().reset(2);
+        arena.add(bytes("first"));
+        CodedOutputStream output = arena.append(CodedOutputStream.computeStringSizeNoTag("second"));
+        output.writeStringNoTag("second");
+        output.checkNoSpaceLeft();
+        List<byte[]> decoded = decode(arena);
+        assertArrayEquals(bytes("first"), decoded.get(0));
+        assertEquals("second", CodedInputStream.newInstance(decoded.get(1)).readString());
+    }
+
+    @Test
+    public void byteStrings() throws Exception {
+        // a rope of two pieces, as produced by concatenation
+        ByteString rope = ByteString.copyFromUtf8("con").concat(ByteString.copyFromUtf8("cat"));
+        StringTensorArena arena = new StringTensorArena().reset(2).add(ByteString.copyFromUtf8("ünïcode")).add(rope);
+        List<byte[]> decoded = decode(arena);
+        assertArrayEquals(bytes("ünïcode"), decoded.get(0));
+        assertArrayEquals(bytes("concat"), decoded.get(1));
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        StringTensorArena arena = new StringTensorArena();
+        byte[] large = new byte[200 * 1024];
+        Arrays.fill(large, (byte) 'x');
+        arena.reset(3).add(large).add(large).add(bytes("end"));
+        assertEquals(3, decode(arena).size());
+
+        arena.reset(1).add(bytes("again"));
+        assertEquals(Long.BYTES + 1 + 5, arena.bytes());
+        assertArrayEquals(bytes("again"), decode(arena).get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void overflow() {
+        new StringTensorArena().reset(1).add(bytes("a")).add(bytes("b"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void incomplete() {
+        new StringTensorArena().reset(2).add(bytes("a")).toTensor();
+    }
+
+    @Test
+    public void toTensor() {
+        List<byte[]> values = Arrays.asList(bytes("a"), bytes(""), bytes("ünïcode"));
+        try (Tensor<String> tensor = StringTensorArena.local().reset(values.size()).addAll(values).toTensor()) {
+            assertArrayEquals(new long[]{3}, tensor.shape());
+            byte[][] copy = tensor.copyTo(new byte[3][]);
+            for (int i = 0; i < values.size(); ++i) {
+                assertArrayEquals(values.get(i), copy[i]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * TFRecord framing tests.
+ *
+ * @author jgung
+ */
+public class TFRecordTest {
+
+    private static byte[] write(byte[]... records) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TFRecordWriter writer = new TFRecordWriter(output)) {
+            for (byte[] record : records) {
+                writer.write(record);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void crc32c() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xE3069283, TFRecordWriter.crc32c(check, 0, check.length));
+    }
+
+    /**
+     * Records "hello" and "" in the TFRecord format read and written by {@code tf.io.TFRecordWriter}: little-endian uint64
+     * length, masked CRC32C of the length, data, masked CRC32C of the data. Computed with an independent reference CRC32C
+     * implementation rather than with {@link TFRecordWriter}.
+     */
+    private static final String GOLDEN = "0500000000000000" + "eab2043e" + "68656c6c6f" + "bb1f1c19"
+            + "0000000000000000" + "29039807" + "d8ea82a2";
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void maskedCrc32c() {
+        byte[] hello = "hello".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x191c1fbb, TFRecordWriter.maskedCrc32c(hello, 0, hello.length));
+        // the mask of an empty record is the masking delta alone
+        assertEquals(0xa282ead8, TFRecordWriter.maskedCrc32c(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void writesGoldenFraming() throws IOException {
+        assertArrayEquals(hex(GOLDEN), write("hello".getBytes(StandardCharsets.US_ASCII), new byte[0]));
+    }
+
+    @Test
+    public void readsGoldenFraming() throws IOException {
+        try (TFRecordReader reader = new TFRecordReader(new ByteArrayInputStream(hex(GOLDEN)))) {
+            assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), reader.read());
+            assertArrayEquals(new byte[0], reader.read());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] empty = new byte[0];
+        byte[] bytes = write(first, empty);
+        assertEquals(2 * 16 + first.length, bytes.length);
+
+        try (TFRecordReader reader = new TFRecordReader(new ByteArrayInputStream(bytes))) {
+            assertArrayEquals(first, reader.read());
+            assertArrayEquals(empty, reader.read());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsCorruptData() throws IOException {
+        byte[] bytes = write("record".getBytes(StandardCharsets.UTF_8));
+        bytes[12] ^= 1;
+        new TFRecordReader(new ByteArrayInputStream(bytes)).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsCorruptLength() throws IOException {
+        byte[] bytes = write("record".getBytes(StandardCharsets.UTF_8));
+        bytes[0] ^= 1;
+        new TFRecordReader(new ByteArrayInputStream(bytes)).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsTruncation() throws IOException {
+        byte[] bytes = write("record".getBytes(StandardCharsets.UTF_8));
+        new TFRecordReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))).read();
+    }
+
+}
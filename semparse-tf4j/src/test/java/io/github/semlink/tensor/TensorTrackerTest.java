@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tensor tracker tests, using plain objects in place of native tensors.
+ *
+ * @author jgung
+ */
+public class TensorTrackerTest {
+
+    @Test
+    public void countsLiveAllocations() {
+        TensorTracker tracker = new TensorTracker("test");
+        Object first = new Object();
+        Object second = new Object();
+        TensorTracker.Allocation firstAllocation = tracker.register(first, 100);
+        TensorTracker.Allocation secondAllocation = tracker.register(second, 50);
+        assertEquals(2, tracker.stats().liveTensors());
+        assertEquals(150, tracker.stats().liveBytes());
+
+        firstAllocation.release();
+        // releasing twice has no effect
+        firstAllocation.release();
+        assertEquals(1, tracker.stats().liveTensors());
+        assertEquals(50, tracker.stats().liveBytes());
+        assertEquals(150, tracker.stats().peakBytes());
+        assertEquals(2, tracker.stats().allocatedTensors());
+
+        secondAllocation.release();
+        assertEquals(0, tracker.stats().liveBytes());
+        assertEquals(0, tracker.stats().leakedTensors());
+    }
+
+    @Test
+    public void detectsLeaks() throws InterruptedException {
+        TensorTracker tracker = new TensorTracker("test").captureSites(true);
+        tracker.register(new Object(), 64);
+        int leaks = 0;
+        for (int i = 0; i < 50 && leaks == 0; ++i) {
+            System.gc();
+            Thread.sleep(20);
+            leaks = tracker.detectLeaks();
+        }
+        assertEquals(1, leaks);
+        TensorTracker.Stats stats = tracker.stats();
+        assertEquals(1, stats.leakedTensors());
+        assertEquals(64, stats.leakedBytes());
+        // native memory of leaked tensors is never freed
+        assertEquals(64, stats.liveBytes());
+    }
+
+    @Test
+    public void releasedAllocationsAreNotLeaks() throws InterruptedException {
+        TensorTracker tracker = new TensorTracker("test");
+        tracker.register(new Object(), 64).release();
+        System.gc();
+        Thread.sleep(20);
+        assertEquals(0, tracker.detectLeaks());
+        assertEquals(0, tracker.stats().liveTensors());
+    }
+
+    @Test
+    public void sharedTrackers() {
+        assertSame(TensorTracker.forModel("shared"), TensorTracker.forModel("shared"));
+        assertTrue(TensorTracker.allStats().stream().anyMatch(stats -> stats.name().equals("shared")));
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tensor;
+
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tensor decoding tests, over string tensors created from Java arrays.
+ *
+ * @author jgung
+ */
+public class TensorsTest {
+
+    private static byte[][] row(String... labels) {
+        return Arrays.stream(labels).map(label -> label.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    @Test
+    public void labelIdsDropIgnoredLabels() {
+        LabelTable labels = new LabelTable("X", "O");
+        try (Tensor<?> tensor = Tensor.create(new byte[][][]{row("B-A0", "I-A0", "O"), row("O", "X", "X")})) {
+            List<int[]> ids = Tensors.toLabelIds(tensor, labels, labels.id("X"));
+            assertEquals(2, ids.size());
+            assertArrayEquals(new int[]{labels.id("B-A0"), labels.id("I-A0"), labels.id("O")}, ids.get(0));
+            assertArrayEquals(new int[]{labels.id("O")}, ids.get(1));
+        }
+    }
+
+    @Test
+    public void labelIdsRankOne() {
+        LabelTable labels = new LabelTable("O");
+        try (Tensor<?> tensor = Tensor.create(row("O", "B-V", ""))) {
+            List<int[]> ids = Tensors.toLabelIds(tensor, labels, -1);
+            assertEquals(1, ids.size());
+            assertArrayEquals(new int[]{0, 1, 2}, ids.get(0));
+            assertEquals("", labels.label(2));
+        }
+    }
+
+    @Test
+    public void labelIdsLongAndNonAsciiLabels() {
+        // labels of 128 bytes or more take multi-byte length prefixes
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'a');
+        String longLabel = new String(chars);
+        LabelTable labels = new LabelTable();
+        try (Tensor<?> tensor = Tensor.create(new byte[][][]{row(longLabel, "B-ÄRG", longLabel)})) {
+            int[] ids = Tensors.toLabelIds(tensor, labels, -1).get(0);
+            assertArrayEquals(new int[]{0, 1, 0}, ids);
+            assertEquals(longLabel, labels.label(0));
+            assertEquals("B-ÄRG", labels.label(1));
+        }
+    }
+
+    @Test
+    public void scoredLabelIds() {
+        LabelTable labels = new LabelTable("X", "O");
+        try (Tensor<?> tensor = Tensor.create(new byte[][][]{row("O", "X", "B-A1")});
+             Tensor<?> confidences = Tensor.create(new float[][]{{0.9f, 0.1f, 0.6f}})) {
+            ScoredLabelIds scored = Tensors.toScoredLabelIds(tensor, confidences, labels, labels.id("X")).get(0);
+            assertArrayEquals(new int[]{labels.id("O"), labels.id("B-A1")}, scored.ids());
+            assertArrayEquals(new float[]{0.9f, 0.6f}, scored.confidences(), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void labelIdsRequireStrings() {
+        try (Tensor<?> tensor = Tensor.create(new int[]{1, 2})) {
+            Tensors.toLabelIds(tensor, new LabelTable(), -1);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.tfnlp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.semlink.app.BertSrlModel;
+import io.github.semlink.app.ExecutionProfile;
+import io.github.semlink.app.InferenceEngine;
+import io.github.semlink.type.Fields;
+import io.github.semlink.type.HasFields;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares labels predicted by the Tensorflow and ONNX Runtime engines on a BERT SRL model directory containing both a saved
+ * model and its ONNX export ({@code model.onnx}). The checked-in fixture (see {@code generate.py} in the fixture directory) has
+ * no weights, and labels the predicate {@code B-V}, other words {@code O} and remaining word pieces {@code X}.
+ *
+ * @author jgung
+ */
+public class InferenceEngineParityTest {
+
+    private static final String EXPORT_DIR = "src/test/resources/models/tiny-bert-srl/";
+
+    private static HasFields getExample(List<String> words, int predicateIndex) {
+        Fields seq = new Fields();
+        seq.add("word", words);
+        seq.add("predicate_index", Collections.singletonList("" + predicateIndex));
+        return seq;
+    }
+
+    @Test
+    public void sameLabels() {
+        List<HasFields> inputs = new ArrayList<>();
+        for (String sentence : Arrays.asList("The cat sat on the mat .", "John Smith went to the store",
+                "The committee approved the proposal after a long debate .")) {
+            List<String> words = Arrays.asList(sentence.split(" "));
+            for (int predicate = 0; predicate < words.size(); ++predicate) {
+                inputs.add(getExample(words, predicate));
+            }
+        }
+
+        ExecutionProfile profile = new ExecutionProfile();
+        try (BertSrlModel tensorflow = BertSrlModel.fromDirectory(EXPORT_DIR, InferenceEngine.Type.TENSORFLOW, profile);
+             BertSrlModel onnx = BertSrlModel.fromDirectory(EXPORT_DIR, InferenceEngine.Type.ONNX, profile)) {
+            List<List<String>> labels = tensorflow.predictBatch(inputs);
+            assertEquals(Arrays.asList("O", "O", "B-V", "O", "O", "O", "O"), labels.get(2));
+            assertEquals(labels, onnx.predictBatch(inputs));
+        }
+    }
+
+}
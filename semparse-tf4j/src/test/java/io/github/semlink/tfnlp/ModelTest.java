@@ -29,12 +29,17 @@ import org.tensorflow.framework.TensorShapeProto;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import io.github.semlink.app.SessionPool;
 import io.github.semlink.app.ShallowParserUtils;
 import io.github.semlink.app.Span;
 import io.github.semlink.app.TensorflowModel;
@@ -50,6 +55,8 @@ import tensorflow.serving.Model;
 import tensorflow.serving.Predict;
 import tensorflow.serving.PredictionServiceGrpc;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author jamesgung
  */
@@ -98,6 +105,69 @@ public class ModelTest {
 
     }
 
+    @Test
+    @Ignore
+    public void concurrentPredictions() throws Exception {
+        List<HasFields> inputs = new ArrayList<>();
+        for (String sentence : Arrays.asList("The cat sat on the mat .", "John Smith went to the store",
+                "The committee approved the proposal after a long debate .")) {
+            List<String> words = Arrays.asList(sentence.split(" "));
+            for (int predicate = 0; predicate < words.size(); ++predicate) {
+                inputs.add(getExample(words, predicate));
+            }
+        }
+
+        try (TensorflowModel model = TensorflowModel.fromDirectory(EXPORT_DIR, 2, SessionPool.Mode.SHARED)) {
+            List<List<String>> expected = model.predictBatch(inputs);
+
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            List<Future<List<List<String>>>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; ++i) {
+                futures.add(executor.submit(() -> model.predictBatch(inputs)));
+            }
+            for (Future<List<List<String>>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Ignore
+    public void pipelinedBenchmark() throws Exception {
+        List<HasFields> inputs = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            for (String sentence : Arrays.asList("The cat sat on the mat .", "John Smith went to the store",
+                    "The committee approved the proposal after a long debate .")) {
+                List<String> words = Arrays.asList(sentence.split(" "));
+                for (int predicate = 0; predicate < words.size(); ++predicate) {
+                    inputs.add(getExample(words, predicate));
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TensorflowModel model = TensorflowModel.fromDirectory(EXPORT_DIR)) {
+            List<List<String>> expected = model.predictBatch(inputs);
+            assertEquals(expected, model.predictBatchPipelined(inputs, 64, executor));
+
+            for (int trial = 0; trial < 5; ++trial) {
+                long start = System.nanoTime();
+                model.predictBatch(inputs);
+                long sequential = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                model.predictBatchPipelined(inputs, 64, executor);
+                long pipelined = System.nanoTime() - start;
+
+                System.out.println(String.format("%d inputs: sequential %.1f ms, pipelined %.1f ms", inputs.size(),
+                        sequential / 1e6, pipelined / 1e6));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     @Ignore
     public void testServing() throws IOException {
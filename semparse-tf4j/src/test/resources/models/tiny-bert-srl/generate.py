@@ -0,0 +1,178 @@
+#!/usr/bin/env python3
+"""
+Writes the tiny BERT SRL fixture used by InferenceEngineParityTest: a Tensorflow saved model (model/saved_model.pb) and an
+ONNX model (model.onnx) computing the same labels from the numeric BERT inputs (bert, sequence_mask, marker, len), without
+weights. Each position is labeled "B-V" at the predicate marker, "O" at the first subtoken of other words and "X" elsewhere:
+
+    labels = marker + 2 * (1 - sequence_mask)
+
+The protos are encoded directly in the protobuf wire format, so that the fixture can be regenerated with the standard library
+alone (python3 generate.py).
+"""
+import os
+
+# wire format
+
+def varint(value):
+    value &= (1 << 64) - 1
+    out = bytearray()
+    while True:
+        bits = value & 0x7f
+        value >>= 7
+        if value:
+            out.append(bits | 0x80)
+        else:
+            out.append(bits)
+            return bytes(out)
+
+
+def tag(field, wire_type):
+    return varint(field << 3 | wire_type)
+
+
+def int_field(field, value):
+    return tag(field, 0) + varint(value)
+
+
+def bytes_field(field, value):
+    if isinstance(value, str):
+        value = value.encode('utf-8')
+    return tag(field, 2) + varint(len(value)) + value
+
+
+def packed_int64(field, values):
+    return bytes_field(field, b''.join(varint(v) for v in values))
+
+
+def map_entry(field, key, value):
+    return bytes_field(field, bytes_field(1, key) + bytes_field(2, value))
+
+
+# tensorflow (tensorflow/core/framework/*.proto, tensorflow/core/protobuf/*.proto)
+
+DT_INT32 = 3
+DT_STRING = 7
+DT_INT64 = 9
+
+
+def tf_shape(*dims):
+    return b''.join(bytes_field(2, int_field(1, d)) for d in dims)
+
+
+def tf_tensor(dtype, dims, int64_vals=(), int_vals=(), string_vals=()):
+    tensor = int_field(1, dtype) + bytes_field(2, tf_shape(*dims))
+    for value in string_vals:
+        tensor += bytes_field(8, value)
+    if int_vals:
+        tensor += packed_int64(7, int_vals)
+    if int64_vals:
+        tensor += packed_int64(10, int64_vals)
+    return tensor
+
+
+def attr_type(dtype):
+    return int_field(6, dtype)
+
+
+def attr_shape(*dims):
+    return bytes_field(7, tf_shape(*dims))
+
+
+def attr_tensor(tensor):
+    return bytes_field(8, tensor)
+
+
+def node(name, op, inputs=(), **attrs):
+    result = bytes_field(1, name) + bytes_field(2, op)
+    for value in inputs:
+        result += bytes_field(3, value)
+    for key in sorted(attrs):
+        result += map_entry(5, key, attrs[key])
+    return result
+
+
+def placeholder(name, *dims):
+    return node(name, 'Placeholder', dtype=attr_type(DT_INT64), shape=attr_shape(*dims))
+
+
+def const(name, dtype, tensor):
+    return node(name, 'Const', dtype=attr_type(dtype), value=attr_tensor(tensor))
+
+
+def tensor_info(name, dtype):
+    return bytes_field(1, name) + int_field(2, dtype)
+
+
+def saved_model():
+    nodes = [
+        placeholder('bert', -1, -1),
+        placeholder('sequence_mask', -1, -1),
+        placeholder('marker', -1, -1),
+        placeholder('len', -1),
+        const('one', DT_INT64, tf_tensor(DT_INT64, (), int64_vals=[1])),
+        const('two', DT_INT64, tf_tensor(DT_INT64, (), int64_vals=[2])),
+        const('vocab', DT_STRING, tf_tensor(DT_STRING, (3,), string_vals=['O', 'B-V', 'X'])),
+        const('axis', DT_INT32, tf_tensor(DT_INT32, (), int_vals=[0])),
+        node('unmasked', 'Sub', ['one', 'sequence_mask'], T=attr_type(DT_INT64)),
+        node('ignored', 'Mul', ['unmasked', 'two'], T=attr_type(DT_INT64)),
+        node('label_ids', 'Add', ['marker', 'ignored'], T=attr_type(DT_INT64)),
+        node('gathered', 'GatherV2', ['vocab', 'label_ids', 'axis'],
+             Tparams=attr_type(DT_STRING), Tindices=attr_type(DT_INT64), Taxis=attr_type(DT_INT32)),
+        node('gold/labels', 'Identity', ['gathered'], T=attr_type(DT_STRING)),
+    ]
+    graph_def = b''.join(bytes_field(1, n) for n in nodes) + bytes_field(4, int_field(1, 27))
+
+    signature = b''
+    for key in ('bert', 'sequence_mask', 'marker', 'len'):
+        signature += map_entry(1, key, tensor_info(key + ':0', DT_INT64))
+    signature += map_entry(2, 'labels', tensor_info('gold/labels:0', DT_STRING))
+    signature += bytes_field(3, 'tensorflow/serving/predict')
+
+    meta_info_def = bytes_field(4, 'serve') + bytes_field(5, '1.13.1')
+    meta_graph_def = bytes_field(1, meta_info_def) + bytes_field(2, graph_def) \
+        + map_entry(5, 'serving_default', signature)
+    return int_field(1, 1) + bytes_field(2, meta_graph_def)
+
+
+# onnx (onnx/onnx.proto)
+
+ONNX_INT64 = 7
+
+
+def onnx_node(name, op_type, inputs, outputs):
+    result = b''.join(bytes_field(1, i) for i in inputs) + b''.join(bytes_field(2, o) for o in outputs)
+    return result + bytes_field(3, name) + bytes_field(4, op_type)
+
+
+def onnx_scalar(name, value):
+    return int_field(2, ONNX_INT64) + packed_int64(7, [value]) + bytes_field(8, name)
+
+
+def onnx_value_info(name, *dims):
+    shape = b''.join(bytes_field(1, bytes_field(2, d) if isinstance(d, str) else int_field(1, d)) for d in dims)
+    tensor_type = int_field(1, ONNX_INT64) + bytes_field(2, shape)
+    return bytes_field(1, name) + bytes_field(2, bytes_field(1, tensor_type))
+
+
+def onnx_model():
+    graph = b''.join(bytes_field(1, n) for n in [
+        onnx_node('unmasked', 'Sub', ['one', 'sequence_mask'], ['unmasked']),
+        onnx_node('ignored', 'Mul', ['unmasked', 'two'], ['ignored']),
+        onnx_node('labels', 'Add', ['marker', 'ignored'], ['labels']),
+    ])
+    graph += bytes_field(2, 'tiny-bert-srl')
+    graph += bytes_field(5, onnx_scalar('one', 1)) + bytes_field(5, onnx_scalar('two', 2))
+    for name in ('bert', 'sequence_mask', 'marker'):
+        graph += bytes_field(11, onnx_value_info(name, 'batch', 'length'))
+    graph += bytes_field(11, onnx_value_info('len', 'batch'))
+    graph += bytes_field(12, onnx_value_info('labels', 'batch', 'length'))
+    opset = bytes_field(1, '') + int_field(2, 13)
+    return int_field(1, 7) + bytes_field(2, 'generate.py') + bytes_field(7, graph) + bytes_field(8, opset)
+
+
+if __name__ == '__main__':
+    root = os.path.dirname(os.path.abspath(__file__))
+    with open(os.path.join(root, 'model', 'saved_model.pb'), 'wb') as out:
+        out.write(saved_model())
+    with open(os.path.join(root, 'model.onnx'), 'wb') as out:
+        out.write(onnx_model())
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.semlink.parser.VerbNetParser;
+import io.github.semlink.type.HasFields;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Waits for the initial SRL model to be loaded and warms up the parser in the background once the application has started, so
+ * that readiness is only reported after one-time costs of the first requests have been paid.
+ *
+ * @author jgung
+ */
+@Slf4j
+@Component
+public class ModelWarmupService {
+
+    private final ModelRegistry<HasFields> srlModel;
+    private final VerbNetParser parser;
+    private final boolean enabled;
+    private final AtomicBoolean ready = new AtomicBoolean();
+
+    @Autowired
+    public ModelWarmupService(ModelRegistry<HasFields> srlModel, VerbNetParser parser,
+                              @Value("${verbnet.demo.warmup-enabled:true}") boolean enabled) {
+        this.srlModel = srlModel;
+        this.parser = parser;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread thread = new Thread(() -> {
+            try {
+                // the initial SRL model version is loaded and warmed up in the background by the registry
+                log.info("SRL model {} loaded", srlModel.loaded().join());
+            } catch (CompletionException e) {
+                log.error("Initial SRL model failed to load, service will not become ready", e);
+                return;
+            }
+            try {
+                if (enabled) {
+                    log.info("Parser warm-up completed in {} ms", parser.warmUp());
+                }
+            } catch (RuntimeException e) {
+                // warm-up only reduces latency of the first requests, so failures should not keep the service out of rotation
+                log.error("Warm-up failed", e);
+            }
+            ready.set(true);
+        }, "model-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Return {@code true} once warm-up has finished.
+     */
+    public boolean ready() {
+        return ready.get();
+    }
+
+}
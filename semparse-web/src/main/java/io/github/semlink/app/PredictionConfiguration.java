@@ -21,12 +21,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import io.github.clearwsd.parser.Nlp4jDependencyParser;
 import io.github.clearwsd.parser.NlpParser;
 import io.github.clearwsd.type.FeatureType;
+import io.github.semlink.extractor.BertSrlExampleExtractor;
 import io.github.semlink.parser.DefaultVnPredicateDetector;
 import io.github.semlink.parser.FilteredPredicateMapper;
 import io.github.semlink.parser.LightVerbMapper;
+import io.github.semlink.parser.RoleLabelerUtils;
 import io.github.semlink.parser.SemanticRoleLabeler;
 import io.github.semlink.parser.VerbNetParser;
 import io.github.semlink.parser.VerbNetSemParser;
@@ -34,11 +40,14 @@ import io.github.semlink.parser.VerbNetSenseClassifier;
 import io.github.semlink.parser.VnPredicateDetector;
 import io.github.semlink.propbank.type.PropBankArg;
 import io.github.semlink.semlink.VerbNetAligner;
+import io.github.semlink.tensor.TensorTracker;
+import io.github.semlink.type.HasFields;
 import io.github.semlink.verbnet.DefaultVnIndex;
 import io.github.semlink.verbnet.VnIndex;
 
 import static io.github.semlink.app.util.JarExtractionUtil.resolveDirectory;
 import static io.github.semlink.app.util.JarExtractionUtil.resolveFile;
+import static io.github.semlink.parser.RoleLabelerUtils.cachingPredictor;
 import static io.github.semlink.parser.VerbNetParser.pbRoleLabeler;
 
 /**
@@ -57,6 +66,50 @@ public class PredictionConfiguration {
     private String wsdModel;
     @Value("${verbnet.demo.srl-model-path:propbank-srl}")
     private String srlModelDir;
+    @Value("${verbnet.demo.srl-sessions:1}")
+    private int srlSessions;
+    @Value("${verbnet.demo.srl-session-mode:EXCLUSIVE}")
+    private SessionPool.Mode srlSessionMode;
+    @Value("${verbnet.demo.srl-execution-profile:}")
+    private String srlExecutionProfile;
+    @Value("${verbnet.demo.srl-engine:TENSORFLOW}")
+    private InferenceEngine.Type srlEngine;
+    @Value("${verbnet.demo.srl-max-batch-size:64}")
+    private int srlMaxBatchSize;
+    @Value("${verbnet.demo.srl-max-batch-wait-ms:5}")
+    private long srlMaxBatchWaitMs;
+    @Value("${verbnet.demo.srl-max-batch-tokens:4096}")
+    private int srlMaxBatchTokens;
+    @Value("${verbnet.demo.srl-max-wordpieces:512}")
+    private int srlMaxWordPieces;
+    @Value("${verbnet.demo.srl-window-stride:16}")
+    private int srlWindowStride;
+    @Value("${verbnet.demo.srl-cascade-model-path:}")
+    private String srlCascadeModelPath;
+    @Value("${verbnet.demo.srl-cascade-confidence-output:gold/confidence}")
+    private String srlCascadeConfidenceOutput;
+    @Value("${verbnet.demo.srl-cascade-threshold:0.9}")
+    private float srlCascadeThreshold;
+    @Value("${verbnet.demo.srl-cascade-max-low-confidence-labels:0}")
+    private int srlCascadeMaxLowConfidenceLabels;
+    @Value("${verbnet.demo.srl-remote-target:}")
+    private String srlRemoteTarget;
+    @Value("${verbnet.demo.srl-remote-model:srl}")
+    private String srlRemoteModel;
+    @Value("${verbnet.demo.srl-remote-channels:2}")
+    private int srlRemoteChannels;
+    @Value("${verbnet.demo.srl-vocab-path:propbank-srl/model/assets/vocab.txt}")
+    private String srlVocabPath;
+    @Value("${verbnet.demo.srl-cache-max-labels:500000}")
+    private long srlCacheMaxLabels;
+    @Value("${verbnet.demo.srl-tokenizer-cache-words:65536}")
+    private long srlTokenizerCacheWords;
+    @Value("${verbnet.demo.warmup-enabled:true}")
+    private boolean warmupEnabled;
+    @Value("${verbnet.demo.srl-warmup-batch-sizes:1,8,32}")
+    private int[] srlWarmupBatchSizes;
+    @Value("${verbnet.demo.srl-warmup-lengths:8,16,32,64}")
+    private int[] srlWarmupLengths;
     @Value("${verbnet.demo.lvm-path:mappings/lvm.tsv}")
     private String lvmPath;
     @Value("${verbnet.demo.noun-mappings-path:mappings/nominal-mappings.tsv}")
@@ -79,17 +132,44 @@ public class PredictionConfiguration {
         return VerbNetSenseClassifier.fromModelPath(wsdModel, verbNet, nlpParser);
     }
 
+    /**
+     * Registry of SRL model versions, initially loading the configured model in the background. Closed through
+     * {@link #srlPredictionCache(ModelRegistry)}.
+     */
+    @Bean(destroyMethod = "")
+    public ModelRegistry<HasFields> srlModel() {
+        ModelRegistry<HasFields> registry = new ModelRegistry<>(this::loadSrlModel, this::warmUpSrlModel);
+        registry.load(srlRemoteTarget.isEmpty() ? resolveDirectory(srlModelDir) : srlRemoteTarget);
+        return registry;
+    }
+
+    @Bean
+    public CachingSequencePredictor<HasFields, List<Object>> srlPredictionCache(@Autowired ModelRegistry<HasFields> srlModel) {
+        SequencePredictor<HasFields> predictor = srlModel;
+        if (srlMaxBatchSize > 1) {
+            // coalesce predicates from concurrent requests into shared batches
+            predictor = new BatchingSequencePredictor<>(srlModel, srlMaxBatchSize, srlMaxBatchWaitMs, TimeUnit.MILLISECONDS,
+                    srlRemoteTarget.isEmpty() ? srlExecutionProfile().sessions() : srlRemoteChannels);
+        }
+        // keyed by model version, as entries of the previous version may still be read or stored while listeners run
+        CachingSequencePredictor<HasFields, List<Object>> cache = cachingPredictor(predictor, srlCacheMaxLabels,
+                srlModel::version);
+        // entries of a previous model version are unreachable after a swap, free them
+        srlModel.addListener(version -> cache.invalidateAll());
+        return cache;
+    }
+
     @Bean
     public VerbNetParser verbNetSemanticParser(@Autowired VerbNetSenseClassifier verbNetSenseClassifier,
-                                               @Autowired VnIndex verbNet) {
+                                               @Autowired VnIndex verbNet,
+                                               @Autowired CachingSequencePredictor<HasFields, List<Object>> srlPredictionCache) {
         String mappingsPath = resolveFile(this.mappingsPath);
-        String modelDir = resolveDirectory(this.srlModelDir);
         String lvmPath = resolveFile(this.lvmPath);
         String pbPath = resolveFile(this.pbPath);
         String nounsPath = resolveFile(this.nounsPath);
         String adjPath = resolveFile(this.adjectivesPath);
 
-        SemanticRoleLabeler<PropBankArg> roleLabeler = pbRoleLabeler(modelDir);
+        SemanticRoleLabeler<PropBankArg> roleLabeler = pbRoleLabeler(srlPredictionCache);
 
         VerbNetAligner aligner = VerbNetAligner.of(mappingsPath, pbPath);
 
@@ -110,4 +190,109 @@ public class PredictionConfiguration {
         return new VerbNetParser(predicateDetector, verbNetSenseClassifier, parser);
     }
 
+    /**
+     * Execution profile of the local SRL model, read from a file (e.g. as written by
+     * {@link io.github.semlink.parser.SrlProfileTuner}) when configured, or from session properties otherwise.
+     */
+    private ExecutionProfile srlExecutionProfile() {
+        if (!srlExecutionProfile.isEmpty()) {
+            return ExecutionProfile.read(new File(resolveFile(srlExecutionProfile)));
+        }
+        return new ExecutionProfile()
+                .sessions(srlSessions)
+                .mode(srlSessionMode);
+    }
+
+    /**
+     * Row counters of the SRL model cascade, shared across model versions.
+     */
+    @Bean
+    public CascadingSequencePredictor.Counters srlCascadeCounters() {
+        return new CascadingSequencePredictor.Counters();
+    }
+
+    /**
+     * Load an SRL model, either served remotely over gRPC when a remote target is configured, or from a local directory.
+     */
+    private SequencePredictor<HasFields> loadSrlModel(String location) {
+        if (!srlRemoteTarget.isEmpty()) {
+            WordPieceTokenizer tokenizer = new WordPieceTokenizer(resolveFile(srlVocabPath)).cacheSize(srlTokenizerCacheWords);
+            return windowed(RemoteSequencePredictor.forTarget(location, srlRemoteModel, new BertSrlExampleExtractor(tokenizer),
+                    srlRemoteChannels, srlRemoteChannels * 16), tokenizer);
+        }
+        // shared by feature extraction and windowing, so that both use the same memoized word pieces
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(BertSrlModel.vocabularyPath(location))
+                .cacheSize(srlTokenizerCacheWords);
+        BertSrlExampleExtractor extractor = new BertSrlExampleExtractor(tokenizer);
+        InferenceEngine engine = srlEngine == InferenceEngine.Type.ONNX
+                ? OnnxEngine.fromDirectory(location, srlExecutionProfile())
+                : TensorflowEngine.fromDirectory(location, srlExecutionProfile(), extractor)
+                        .tracker(TensorTracker.forModel("srl"));
+        BertSrlModel srlModel = new BertSrlModel(extractor, engine);
+        if (srlMaxBatchTokens > 0) {
+            // split batches into length buckets to limit padding and peak memory of a single engine call
+            srlModel.batchPlanner(new BatchPlanner(srlMaxBatchTokens));
+        }
+        SequencePredictor<HasFields> bertModel = warmedUp(srlModel, srlModel.warmup(RoleLabelerUtils::syntheticFeatures));
+        bertModel = windowed(bertModel, tokenizer);
+        if (srlCascadeModelPath.isEmpty()) {
+            return bertModel;
+        }
+        // label with a light feature-based model first, only sending low-confidence predicates to the BERT model
+        TensorflowModel lightModel;
+        try {
+            lightModel = TensorflowModel.fromDirectory(resolveDirectory(srlCascadeModelPath), srlExecutionProfile())
+                    .confidenceName(srlCascadeConfidenceOutput)
+                    .tracker(TensorTracker.forModel("srl-light"));
+            warmedUp(lightModel, lightModel.warmup(RoleLabelerUtils::syntheticFeatures));
+        } catch (RuntimeException e) {
+            bertModel.close();
+            throw e;
+        }
+        return new CascadingSequencePredictor<>(lightModel, bertModel, srlCascadeThreshold, srlCascadeCounters())
+                .maxLowConfidenceLabels(srlCascadeMaxLowConfidenceLabels);
+    }
+
+    /**
+     * Cap the WordPiece length of inputs to a BERT model, splitting overlong inputs into windows around the predicate.
+     */
+    private SequencePredictor<HasFields> windowed(SequencePredictor<HasFields> bertModel, WordPieceTokenizer tokenizer) {
+        if (srlMaxWordPieces <= 0) {
+            return bertModel;
+        }
+        return new WindowedSequencePredictor(bertModel, tokenizer::countWordPieces, srlMaxWordPieces, srlWindowStride);
+    }
+
+    /**
+     * Warm up every session of a local model before it is wrapped, closing the model if warm-up fails.
+     */
+    private <M extends SequencePredictor<HasFields>> M warmedUp(M model, ModelWarmup<HasFields> warmup) {
+        if (!warmupEnabled) {
+            return model;
+        }
+        try {
+            warmup.batchSizes(srlWarmupBatchSizes)
+                    .lengths(srlWarmupLengths)
+                    .run();
+        } catch (RuntimeException e) {
+            model.close();
+            throw e;
+        }
+        return model;
+    }
+
+    /**
+     * Warm up a remote SRL model through each channel. Local models are warmed up per session as they are loaded.
+     */
+    private void warmUpSrlModel(SequencePredictor<HasFields> srlModel) {
+        if (!warmupEnabled || srlRemoteTarget.isEmpty()) {
+            return;
+        }
+        new ModelWarmup<>(srlModel, RoleLabelerUtils::syntheticFeatures)
+                .concurrency(srlRemoteChannels)
+                .batchSizes(srlWarmupBatchSizes)
+                .lengths(srlWarmupLengths)
+                .run();
+    }
+
 }
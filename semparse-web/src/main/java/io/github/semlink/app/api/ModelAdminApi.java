@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import io.github.semlink.app.ModelRegistry;
+import io.github.semlink.type.HasFields;
+
+/**
+ * Model administration API, reporting the serving SRL model version and swapping in new versions without a restart.
+ *
+ * @author jgung
+ */
+@RestController
+public class ModelAdminApi {
+
+    private static final String VERSION = "version";
+
+    private final ModelRegistry<HasFields> srlModel;
+    private final boolean enabled;
+
+    @Autowired
+    public ModelAdminApi(ModelRegistry<HasFields> srlModel,
+                         @Value("${verbnet.demo.model-admin-enabled:false}") boolean enabled) {
+        this.srlModel = srlModel;
+        this.enabled = enabled;
+    }
+
+    @RequestMapping(value = "/admin/srl-model", method = RequestMethod.GET)
+    public Map<String, String> srlModelVersion() {
+        return Collections.singletonMap(VERSION, srlModel.version());
+    }
+
+    /**
+     * Load, warm up and swap in an SRL model from a given location, completing once the new version is serving requests.
+     */
+    @RequestMapping(value = "/admin/srl-model", method = RequestMethod.POST)
+    public CompletableFuture<Map<String, String>> loadSrlModel(@RequestParam(value = "location") String location) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Model administration is disabled");
+        }
+        return srlModel.load(location).thenApply(version -> Collections.singletonMap(VERSION, version));
+    }
+
+}
@@ -27,13 +27,16 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Objects;
 
+import io.github.semlink.app.ModelRegistry;
 import io.github.semlink.verbnet.VnIndex;
 import io.github.semlink.app.api.model.SentenceModel;
 import io.github.semlink.parser.DefaultSentenceNormalizer;
 import io.github.semlink.parser.VerbNetParse;
 import io.github.semlink.parser.VerbNetParser;
 import io.github.semlink.parser.VerbNetSenseClassifier;
+import io.github.semlink.type.HasFields;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -45,18 +48,47 @@ import lombok.extern.slf4j.Slf4j;
 @RestController
 public class PredictionApi {
 
+    private static final int MAX_PARSE_ATTEMPTS = 3;
+
     private final VerbNetSenseClassifier verbNetSenseClassifier;
     private final VnIndex verbNet;
+    private final ModelRegistry<HasFields> srlModel;
 
-    private LoadingCache<String, VerbNetParse> parseCache;
+    private final VerbNetParser parser;
+    private final LoadingCache<String, ModelRegistry.Versioned<VerbNetParse>> parseCache;
 
     @Autowired
-    public PredictionApi(VerbNetParser parser, VerbNetSenseClassifier verbNetSenseClassifier, VnIndex verbNet) {
+    public PredictionApi(VerbNetParser parser, VerbNetSenseClassifier verbNetSenseClassifier, VnIndex verbNet,
+                         ModelRegistry<HasFields> srlModel) {
         this.verbNetSenseClassifier = verbNetSenseClassifier;
         this.verbNet = verbNet;
+        this.srlModel = srlModel;
+        this.parser = parser;
         parseCache = CacheBuilder.newBuilder()
                 .maximumSize(1000)
-                .build(CacheLoader.from(parser::parse));
+                .build(CacheLoader.from(this::parse));
+        // cached parses of a previous SRL model version are stale after a swap
+        srlModel.addListener(version -> parseCache.invalidateAll());
+    }
+
+    /**
+     * Parse an utterance, along with the SRL model version that labeled all of its predicates. Parses spanning a model swap are
+     * repeated, so that each parse comes from a single version, failing if the model keeps changing.
+     */
+    private ModelRegistry.Versioned<VerbNetParse> parse(String utterance) {
+        for (int attempt = 1; ; ++attempt) {
+            String version = srlModel.version();
+            VerbNetParse parse = parser.parse(utterance);
+            String current = srlModel.version();
+            if (Objects.equals(version, current)) {
+                return new ModelRegistry.Versioned<>(version, parse);
+            }
+            if (attempt == MAX_PARSE_ATTEMPTS) {
+                throw new IllegalStateException(String.format("SRL model changed during each of %d attempts to parse \"%s\"",
+                        MAX_PARSE_ATTEMPTS, utterance));
+            }
+            log.warn("SRL model changed from {} to {} while parsing \"{}\", retrying", version, current, utterance);
+        }
     }
 
     @RequestMapping("/predict/semantics")
@@ -67,10 +99,15 @@ public class PredictionApi {
         utterance = sentences.size() > 0 ? sentences.get(0) : utterance;
         utterance = new DefaultSentenceNormalizer().normalize(utterance);
 
-        VerbNetParse verbNetSemanticParses = parseCache.getUnchecked(utterance);
-        log.info("Processed utterance \"{}\" in {}", utterance, sw.stop());
+        ModelRegistry.Versioned<VerbNetParse> parse = parseCache.getUnchecked(utterance);
+        if (!Objects.equals(parse.version(), srlModel.version())) {
+            // loaded by a previous version, but cached after the swap invalidated the cache
+            parseCache.invalidate(utterance);
+            parse = parseCache.getUnchecked(utterance);
+        }
+        log.info("Processed utterance \"{}\" with SRL model {} in {}", utterance, parse.version(), sw.stop());
 
-        return new SentenceModel(verbNetSemanticParses);
+        return new SentenceModel(parse.result());
     }
 
 }
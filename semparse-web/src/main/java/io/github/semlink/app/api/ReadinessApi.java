@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.github.semlink.app.ModelWarmupService;
+
+/**
+ * Readiness API, reporting the service as unavailable until model warm-up has finished.
+ *
+ * @author jgung
+ */
+@RestController
+public class ReadinessApi {
+
+    private final ModelWarmupService warmupService;
+
+    @Autowired
+    public ReadinessApi(ModelWarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    @RequestMapping("/readiness")
+    public ResponseEntity<String> readiness() {
+        if (warmupService.ready()) {
+            return ResponseEntity.ok("ready");
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("warming up");
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 James Gung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.semlink.app.api;
+
+import com.google.common.cache.CacheStats;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.semlink.app.CachingSequencePredictor;
+import io.github.semlink.app.CascadingSequencePredictor;
+import io.github.semlink.tensor.TensorTracker;
+import io.github.semlink.type.HasFields;
+
+/**
+ * Runtime statistics API.
+ *
+ * @author jgung
+ */
+@RestController
+public class StatsApi {
+
+    private final CachingSequencePredictor<HasFields, List<Object>> srlPredictionCache;
+    private final CascadingSequencePredictor.Counters srlCascadeCounters;
+
+    @Autowired
+    public StatsApi(CachingSequencePredictor<HasFields, List<Object>> srlPredictionCache,
+                    CascadingSequencePredictor.Counters srlCascadeCounters) {
+        this.srlPredictionCache = srlPredictionCache;
+        this.srlCascadeCounters = srlCascadeCounters;
+    }
+
+    @RequestMapping("/stats/srl-cache")
+    public Map<String, Object> srlCacheStats() {
+        CacheStats stats = srlPredictionCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", srlPredictionCache.size());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    @RequestMapping("/stats/srl-cascade")
+    public CascadingSequencePredictor.Stats srlCascadeStats() {
+        return srlCascadeCounters.stats();
+    }
+
+    @RequestMapping("/stats/tensors")
+    public List<TensorTracker.Stats> tensorStats() {
+        return TensorTracker.allStats();
+    }
+
+}